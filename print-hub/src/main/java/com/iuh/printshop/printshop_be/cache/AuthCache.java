@@ -0,0 +1,127 @@
+package com.iuh.printshop.printshop_be.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.iuh.printshop.printshop_be.dto.cache.CacheStatsResponse;
+import com.iuh.printshop.printshop_be.event.UserChangedEvent;
+import com.iuh.printshop.printshop_be.security.VerifiedToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache cho JwtAuthenticationFilter:
+ * - tokens: SHA-256(token) -> claims đã xác minh; entry hết hạn đúng lúc token hết hạn.
+ *   Chỉ token đã kiểm tra chữ ký thành công mới được cache, khóa là hash nên cache không giữ token gốc.
+ * - principals: email -> UserDetails (kèm roles), được bỏ khi UserChangedEvent phát ra sau commit.
+ * Request đã xác thực chỉ còn một phép băm và hai lần tra cache, không parse JWT và không truy vấn DB.
+ */
+@Slf4j
+@Component
+public class AuthCache {
+
+    private final Cache<String, VerifiedToken> tokens;
+    private final Cache<String, UserDetails> principals;
+
+    private final AtomicLong principalInvalidations = new AtomicLong();
+
+    public AuthCache(
+            @Value("${app.cache.auth.token-max-size:50000}") long tokenMaxSize,
+            @Value("${app.cache.auth.principal-max-size:10000}") long principalMaxSize,
+            @Value("${app.cache.auth.principal-ttl-seconds:600}") long principalTtlSeconds) {
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(tokenMaxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(principalMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(principalTtlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Token đã xác minh: lấy từ cache hoặc gọi verifier (ném exception nếu token sai chữ ký/hết hạn, không cache).
+     */
+    public VerifiedToken getVerifiedToken(String token, Function<String, VerifiedToken> verifier) {
+        VerifiedToken verified = tokens.get(sha256(token), key -> verifier.apply(token));
+        if (verified.isExpired()) {
+            throw new IllegalStateException("Token expired");
+        }
+        return verified;
+    }
+
+    public UserDetails getPrincipal(String email, Function<String, UserDetails> loader) {
+        return principals.get(email, loader);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        principals.invalidate(event.getEmail());
+        principalInvalidations.incrementAndGet();
+        log.debug("Principal cache invalidated: {}", event.getEmail());
+    }
+
+    public List<CacheStatsResponse> stats() {
+        return List.of(
+                toStats("auth.tokens", tokens, 0),
+                toStats("auth.principals", principals, principalInvalidations.get())
+        );
+    }
+
+    private static CacheStatsResponse toStats(String name, Cache<?, ?> cache, long invalidations) {
+        CacheStats stats = cache.stats();
+        return CacheStatsResponse.builder()
+                .name(name)
+                .size(cache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .invalidationCount(invalidations)
+                .build();
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class UntilTokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+            long remaining = token.expiresAtMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.iuh.printshop.printshop_be.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.iuh.printshop.printshop_be.dto.cache.CacheStatsResponse;
+import com.iuh.printshop.printshop_be.dto.cache.DiscountCacheStatsResponse;
+import com.iuh.printshop.printshop_be.entity.Discount;
+import com.iuh.printshop.printshop_be.event.DiscountChangedEvent;
+import com.iuh.printshop.printshop_be.repository.DiscountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache tra cứu mã giảm giá cho các API công khai /api/discounts/apply và /validate.
+ * - Bloom filter chứa mọi mã đã có: mã chắc chắn không tồn tại bị từ chối mà không truy vấn DB.
+ *   Mã mới từ instance khác hoặc ghi thẳng vào DB được đồng bộ tăng dần mỗi bloom-sync-ms; nếu lần đồng bộ
+ *   gần nhất đã quá cũ (DB lỗi) thì bỏ qua bloom filter và hỏi DB, nên không có âm tính giả kéo dài.
+ * - Negative cache cho mã không tồn tại lọt qua bloom filter (dương tính giả).
+ * - Positive cache với TTL không vượt quá endDate của mã.
+ * Mã được chuẩn hóa (trim + chữ hoa) vì cột code dùng collation không phân biệt hoa thường của MariaDB.
+ * Giá trị cache là entity tách khỏi persistence context, chỉ dùng để đọc: usedCount có thể cũ tối đa một TTL,
+ * giới hạn lượt dùng vẫn được đảm bảo chính xác bởi DiscountService.redeem.
+ */
+@Slf4j
+@Component
+public class DiscountCodeCache {
+
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+    private static final int BLOOM_MIN_CAPACITY = 1024;
+    // Lùi mốc đồng bộ: bù lệch đồng hồ giữa các instance và transaction commit sau thời điểm ghi updatedAt
+    private static final Duration BLOOM_SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final DiscountRepository discountRepository;
+    private final Cache<String, Discount> known;
+    private final Cache<String, Boolean> unknown;
+
+    private final long bloomMaxStalenessNanos;
+
+    private volatile BloomFilter bloomFilter;
+    private volatile LocalDateTime bloomSyncedAt;
+    private volatile long bloomSyncedAtNanos;
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong bloomRejections = new AtomicLong();
+    private final AtomicLong negativeRejections = new AtomicLong();
+    private final AtomicLong databaseLookups = new AtomicLong();
+    private final AtomicLong databaseMisses = new AtomicLong();
+
+    public DiscountCodeCache(
+            DiscountRepository discountRepository,
+            @Value("${app.cache.discount.max-size:5000}") long maxSize,
+            @Value("${app.cache.discount.ttl-seconds:60}") long ttlSeconds,
+            @Value("${app.cache.discount.negative-max-size:100000}") long negativeMaxSize,
+            @Value("${app.cache.discount.negative-ttl-seconds:300}") long negativeTtlSeconds,
+            @Value("${app.cache.discount.bloom-sync-ms:5000}") long bloomSyncMs) {
+        this.discountRepository = discountRepository;
+        this.bloomMaxStalenessNanos = Duration.ofMillis(bloomSyncMs * 3).toNanos();
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.known = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilEndDate(ttl))
+                .recordStats()
+                .build();
+        this.unknown = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(negativeTtlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildBloomFilter();
+    }
+
+    // Mã bị xóa/đổi vẫn nằm trong bloom filter (chỉ gây dương tính giả) -> dựng lại định kỳ
+    @Scheduled(fixedDelayString = "${app.cache.discount.bloom-rebuild-ms:3600000}",
+            initialDelayString = "${app.cache.discount.bloom-rebuild-ms:3600000}")
+    public synchronized void rebuildBloomFilter() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<String> codes = discountRepository.findAllCodes();
+        BloomFilter rebuilt = new BloomFilter(Math.max(codes.size() * 2, BLOOM_MIN_CAPACITY), BLOOM_FALSE_POSITIVE_RATE);
+        codes.forEach(code -> rebuilt.add(normalize(code)));
+        bloomFilter = rebuilt;
+        markSynced(startedAt);
+        log.info("Discount code bloom filter built: {} codes, {} bits", codes.size(), rebuilt.bitSize());
+    }
+
+    // Thêm mã được tạo/sửa từ lần đồng bộ trước (DiscountChangedEvent chỉ đến từ instance này)
+    @Scheduled(fixedDelayString = "${app.cache.discount.bloom-sync-ms:5000}",
+            initialDelayString = "${app.cache.discount.bloom-sync-ms:5000}")
+    public synchronized void syncBloomFilter() {
+        BloomFilter filter = bloomFilter;
+        LocalDateTime since = bloomSyncedAt;
+        if (filter == null || since == null) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<String> codes = discountRepository.findCodesChangedSince(since.minus(BLOOM_SYNC_OVERLAP));
+        for (String code : codes) {
+            String key = normalize(code);
+            filter.add(key);
+            unknown.invalidate(key);
+        }
+        markSynced(startedAt);
+    }
+
+    public Optional<Discount> findByCode(String code) {
+        if (code == null || code.isBlank()) {
+            return Optional.empty();
+        }
+        String key = normalize(code);
+
+        BloomFilter filter = bloomFilter;
+        if (filter != null && isBloomFresh() && !filter.mightContain(key)) {
+            bloomRejections.incrementAndGet();
+            return Optional.empty();
+        }
+        if (unknown.getIfPresent(key) != null) {
+            negativeRejections.incrementAndGet();
+            return Optional.empty();
+        }
+
+        Discount discount = known.get(key, this::load);
+        if (discount == null) {
+            unknown.put(key, Boolean.TRUE);
+        }
+        return Optional.ofNullable(discount);
+    }
+
+    // synchronized cùng rebuild: mã mới không bị mất khi bloom filter đang được dựng lại
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDiscountChanged(DiscountChangedEvent event) {
+        BloomFilter filter = bloomFilter;
+        for (String code : event.getCodes()) {
+            String key = normalize(code);
+            if (filter != null) {
+                filter.add(key);
+            }
+            known.invalidate(key);
+            unknown.invalidate(key);
+            invalidations.incrementAndGet();
+        }
+        log.debug("Discount cache invalidated: {}", event.getCodes());
+    }
+
+    public DiscountCacheStatsResponse stats() {
+        BloomFilter filter = bloomFilter;
+        return DiscountCacheStatsResponse.builder()
+                .caches(List.of(
+                        toStats("discounts.byCode", known),
+                        toStats("discounts.unknownCodes", unknown)))
+                .bloomFilterRejections(bloomRejections.get())
+                .negativeCacheRejections(negativeRejections.get())
+                .databaseLookups(databaseLookups.get())
+                .databaseMisses(databaseMisses.get())
+                .bloomFilterCodes(filter != null ? filter.insertions() : 0)
+                .bloomFilterBits(filter != null ? filter.bitSize() : 0)
+                .build();
+    }
+
+    private void markSynced(LocalDateTime startedAt) {
+        bloomSyncedAt = startedAt;
+        bloomSyncedAtNanos = System.nanoTime();
+    }
+
+    private boolean isBloomFresh() {
+        return System.nanoTime() - bloomSyncedAtNanos <= bloomMaxStalenessNanos;
+    }
+
+    private Discount load(String key) {
+        databaseLookups.incrementAndGet();
+        Discount discount = discountRepository.findByCode(key).orElse(null);
+        if (discount == null) {
+            databaseMisses.incrementAndGet();
+        }
+        return discount;
+    }
+
+    private CacheStatsResponse toStats(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return CacheStatsResponse.builder()
+                .name(name)
+                .size(cache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .invalidationCount(invalidations.get())
+                .build();
+    }
+
+    private static String normalize(String code) {
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * TTL = min(ttl, thời gian còn lại tới endDate): mã hết hạn không được phục vụ từ cache.
+     */
+    private record UntilEndDate(Duration ttl) implements Expiry<String, Discount> {
+
+        @Override
+        public long expireAfterCreate(String key, Discount discount, long currentTime) {
+            long untilEnd = Duration.between(LocalDateTime.now(), discount.getEndDate()).toNanos();
+            return Math.max(0, Math.min(ttl.toNanos(), untilEnd));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Discount discount, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, discount, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Discount discount, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * Bloom filter dùng double hashing trên các bit AtomicLongArray: thêm mã an toàn khi có luồng đang đọc.
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final long bitSize;
+        private final int hashCount;
+        private final AtomicLong insertions = new AtomicLong();
+
+        BloomFilter(int expectedInsertions, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+            this.bitSize = (long) words.length() * 64;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        }
+
+        void add(String value) {
+            long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+            long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+            boolean changed = false;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitSize);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                while (((current = words.get(word)) & mask) == 0) {
+                    if (words.compareAndSet(word, current, current | mask)) {
+                        changed = true;
+                        break;
+                    }
+                    // CAS thất bại do luồng khác vừa ghi cùng word: thử lại
+                }
+            }
+            // Mã đã có (đồng bộ lặp lại trong khoảng overlap) không được đếm thêm
+            if (changed) {
+                insertions.incrementAndGet();
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+            long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitSize);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long insertions() {
+            return insertions.get();
+        }
+
+        long bitSize() {
+            return bitSize;
+        }
+
+        // FNV-1a 64 bit với seed riêng, trộn thêm bước cuối của SplitMix64
+        private static long hash(String value, long seed) {
+            long h = 0xCBF29CE484222325L ^ seed;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001B3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
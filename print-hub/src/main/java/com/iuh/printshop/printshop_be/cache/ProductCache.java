@@ -0,0 +1,181 @@
+package com.iuh.printshop.printshop_be.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.iuh.printshop.printshop_be.dto.cache.CacheStatsResponse;
+import com.iuh.printshop.printshop_be.dto.product.ProductPageResponse;
+import com.iuh.printshop.printshop_be.dto.product.ProductResponse;
+import com.iuh.printshop.printshop_be.dto.product.ProductSearchRequest;
+import com.iuh.printshop.printshop_be.event.ProductChangedEvent;
+import com.iuh.printshop.printshop_be.event.TaxonomyChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache đọc (read-through) cho ProductResponse, giới hạn theo kích thước và TTL.
+ * Được làm mới theo ProductChangedEvent và TaxonomyChangedEvent sau khi transaction commit.
+ */
+@Slf4j
+@Component
+public class ProductCache {
+
+    private final Cache<Integer, ProductResponse> byId;
+    private final Cache<SearchKey, ProductPageResponse> searches;
+
+    // productId -> các trang tìm kiếm đang chứa sản phẩm đó (để chỉ xóa đúng trang khi đổi tồn kho)
+    private final Map<Integer, Set<SearchKey>> searchesByProduct = new ConcurrentHashMap<>();
+
+    private final AtomicLong byIdInvalidations = new AtomicLong();
+    private final AtomicLong searchInvalidations = new AtomicLong();
+
+    public ProductCache(
+            @Value("${app.cache.product.max-size:10000}") long maxSize,
+            @Value("${app.cache.product.search-max-size:2000}") long searchMaxSize,
+            @Value("${app.cache.product.ttl-seconds:300}") long ttlSeconds) {
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.searches = Caffeine.newBuilder()
+                .maximumSize(searchMaxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .executor(Runnable::run)
+                .removalListener((SearchKey key, ProductPageResponse page, RemovalCause cause) -> unlinkSearch(key, page))
+                .build();
+    }
+
+    public Optional<ProductResponse> getById(Integer id, Function<Integer, Optional<ProductResponse>> loader) {
+        return Optional.ofNullable(byId.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    public ProductPageResponse getSearch(ProductSearchRequest request, Supplier<ProductPageResponse> loader) {
+        return searches.get(SearchKey.of(request), key -> {
+            ProductPageResponse page = loader.get();
+            linkSearch(key, page);
+            return page;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() != ProductChangedEvent.Type.CREATED) {
+            byId.invalidateAll(event.getProductIds());
+            byIdInvalidations.addAndGet(event.getProductIds().size());
+        }
+
+        if (event.getType() == ProductChangedEvent.Type.STOCK_CHANGED) {
+            // Tồn kho không ảnh hưởng bộ lọc/sắp xếp -> chỉ xóa các trang có chứa sản phẩm
+            for (Integer productId : event.getProductIds()) {
+                Set<SearchKey> keys = searchesByProduct.remove(productId);
+                if (keys != null) {
+                    searches.invalidateAll(keys);
+                    searchInvalidations.addAndGet(keys.size());
+                }
+            }
+        } else {
+            // Tên/giá/danh mục thay đổi có thể làm sản phẩm chuyển trang -> xóa toàn bộ kết quả tìm kiếm
+            searchInvalidations.addAndGet(searches.estimatedSize());
+            searches.invalidateAll();
+        }
+        log.debug("Product cache invalidated: {} {}", event.getType(), event.getProductIds());
+    }
+
+    // categoryName/brandName được chép vào ProductResponse -> xóa các sản phẩm thuộc danh mục/thương hiệu và mọi trang tìm kiếm
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaxonomyChanged(TaxonomyChangedEvent event) {
+        byId.invalidateAll(event.getProductIds());
+        byIdInvalidations.addAndGet(event.getProductIds().size());
+        searchInvalidations.addAndGet(searches.estimatedSize());
+        searches.invalidateAll();
+        log.debug("Product cache invalidated: {} {} ({} products)", event.getType(), event.getId(), event.getProductIds().size());
+    }
+
+    public List<CacheStatsResponse> stats() {
+        return List.of(
+                toStats("products.byId", byId, byIdInvalidations),
+                toStats("products.search", searches, searchInvalidations)
+        );
+    }
+
+    private void linkSearch(SearchKey key, ProductPageResponse page) {
+        if (page == null || page.getContent() == null) {
+            return;
+        }
+        for (ProductResponse product : page.getContent()) {
+            searchesByProduct.computeIfAbsent(product.getId(), id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void unlinkSearch(SearchKey key, ProductPageResponse page) {
+        if (key == null || page == null || page.getContent() == null || searches.asMap().containsKey(key)) {
+            return;
+        }
+        for (ProductResponse product : page.getContent()) {
+            searchesByProduct.computeIfPresent(product.getId(), (id, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static CacheStatsResponse toStats(String name, Cache<?, ?> cache, AtomicLong invalidations) {
+        CacheStats stats = cache.stats();
+        return CacheStatsResponse.builder()
+                .name(name)
+                .size(cache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .invalidationCount(invalidations.get())
+                .build();
+    }
+
+    /**
+     * Khóa bất biến cho kết quả tìm kiếm (ProductSearchRequest là DTO có thể bị sửa).
+     */
+    private record SearchKey(
+            String keyword,
+            Integer categoryId,
+            Integer brandId,
+            BigDecimal minPrice,
+            BigDecimal maxPrice,
+            String sortBy,
+            Integer page,
+            Integer size,
+            String cursor,
+            Boolean countTotal) {
+
+        static SearchKey of(ProductSearchRequest request) {
+            return new SearchKey(
+                    request.getKeyword(),
+                    request.getCategoryId(),
+                    request.getBrandId(),
+                    request.getMinPrice(),
+                    request.getMaxPrice(),
+                    request.getSortBy(),
+                    request.getPage(),
+                    request.getSize(),
+                    request.getCursor(),
+                    request.getCountTotal());
+        }
+    }
+}
@@ -2,9 +2,12 @@ package com.iuh.printshop.printshop_be.config;
 
 import com.iuh.printshop.printshop_be.entity.Role;
 import com.iuh.printshop.printshop_be.entity.User;
+import com.iuh.printshop.printshop_be.repository.ProductRepository;
 import com.iuh.printshop.printshop_be.repository.RoleRepository;
 import com.iuh.printshop.printshop_be.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
@@ -12,6 +15,7 @@ import org.springframework.stereotype.Component;
 import java.util.HashSet;
 import java.util.Set;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class DataInitializer implements CommandLineRunner {
@@ -19,6 +23,11 @@ public class DataInitializer implements CommandLineRunner {
     private final RoleRepository roleRepository;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ProductRepository productRepository;
+
+    // Buộc tính lại thống kê đánh giá lúc khởi động (sửa sai lệch); mặc định chỉ backfill một lần
+    @Value("${app.rating.recalculate-on-startup:false}")
+    private boolean recalculateRatingsOnStartup;
 
     @Override
     public void run(String... args) throws Exception {
@@ -57,5 +66,12 @@ public class DataInitializer implements CommandLineRunner {
             System.out.println("Password: admin123");
             System.out.println("=========================================");
         }
+
+        // Backfill thống kê đánh giá từ bảng reviews: chỉ khi còn sản phẩm chưa có thống kê hoặc được yêu cầu,
+        // không UPDATE toàn bảng products ở mỗi lần khởi động
+        if (recalculateRatingsOnStartup || productRepository.existsByRatingStatsReviewCountIsNull()) {
+            int updated = productRepository.recalculateRatingStats();
+            log.info("Recalculated rating stats for {} products", updated);
+        }
     }
 }
@@ -1,6 +1,8 @@
 package com.iuh.printshop.printshop_be.config;
 
+import com.iuh.printshop.printshop_be.cache.AuthCache;
 import com.iuh.printshop.printshop_be.security.JwtAuthenticationFilter;
+import com.iuh.printshop.printshop_be.security.TokenVersionRegistry;
 import com.iuh.printshop.printshop_be.service.JwtService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
@@ -33,10 +35,13 @@ public class    SecurityConfig {
     private final UserDetailsService userDetailsService;
     private final JwtService jwtService;
     private final PasswordEncoder passwordEncoder; // Inject từ ApplicationConfig
+    private final AuthCache authCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
 
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(jwtService, (com.iuh.printshop.printshop_be.service.UserService) userDetailsService);
+        return new JwtAuthenticationFilter(jwtService, (com.iuh.printshop.printshop_be.service.UserService) userDetailsService,
+                authCache, tokenVersionRegistry);
     }
 
     @Bean
@@ -50,6 +55,7 @@ public class    SecurityConfig {
                         .requestMatchers("/api/products/**").permitAll()
                         .requestMatchers("/api/categories/**").permitAll()
                         .requestMatchers("/api/brands/**").permitAll()
+                        .requestMatchers("/api/cart/reorder/**").authenticated() // Re-order đọc đơn hàng của user đăng nhập
                         .requestMatchers("/api/cart/**").permitAll()
                         .requestMatchers("/chat/**").permitAll() // AI Chat API - public access
                         .requestMatchers("/api/reviews/product/**").permitAll() // Get reviews by product - public
@@ -64,6 +70,7 @@ public class    SecurityConfig {
                         // Promotion APIs - public endpoints first (must be before /** pattern)
                         .requestMatchers("/api/promotions/calculate").permitAll()
                         .requestMatchers("/api/promotions/active").permitAll()
+                        .requestMatchers("/api/promotions/evaluate").permitAll()
                         // Promotion APIs - admin only for CRUD
                         .requestMatchers("/api/promotions/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
@@ -0,0 +1,57 @@
+package com.iuh.printshop.printshop_be.controller;
+
+import com.iuh.printshop.printshop_be.cache.AuthCache;
+import com.iuh.printshop.printshop_be.cache.DiscountCodeCache;
+import com.iuh.printshop.printshop_be.cache.ProductCache;
+import com.iuh.printshop.printshop_be.dto.cache.CacheStatsResponse;
+import com.iuh.printshop.printshop_be.dto.cache.DiscountCacheStatsResponse;
+import com.iuh.printshop.printshop_be.dto.email.EmailOutboxStatsResponse;
+import com.iuh.printshop.printshop_be.service.EmailOutboxWorker;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/metrics")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Admin Metrics", description = "Runtime metrics for caches and background pipelines (Admin only)")
+public class AdminMetricsController {
+
+    private final ProductCache productCache;
+    private final DiscountCodeCache discountCodeCache;
+    private final AuthCache authCache;
+    private final EmailOutboxWorker emailOutboxWorker;
+
+    @GetMapping("/product-cache")
+    @Operation(summary = "Product cache stats", description = "Hit/miss/eviction counters of the product catalog cache")
+    public ResponseEntity<List<CacheStatsResponse>> getProductCacheStats() {
+        return ResponseEntity.ok(productCache.stats());
+    }
+
+    @GetMapping("/discount-cache")
+    @Operation(summary = "Discount code cache stats",
+            description = "Cache counters and lookups rejected by the bloom filter or negative cache without querying the database")
+    public ResponseEntity<DiscountCacheStatsResponse> getDiscountCacheStats() {
+        return ResponseEntity.ok(discountCodeCache.stats());
+    }
+
+    @GetMapping("/auth-cache")
+    @Operation(summary = "Authentication cache stats", description = "Hit/miss counters of the verified token and principal caches")
+    public ResponseEntity<List<CacheStatsResponse>> getAuthCacheStats() {
+        return ResponseEntity.ok(authCache.stats());
+    }
+
+    @GetMapping("/email-outbox")
+    @Operation(summary = "Email outbox stats", description = "Queue depth, retries and delivery latency of the email outbox")
+    public ResponseEntity<EmailOutboxStatsResponse> getEmailOutboxStats() {
+        return ResponseEntity.ok(emailOutboxWorker.stats());
+    }
+}
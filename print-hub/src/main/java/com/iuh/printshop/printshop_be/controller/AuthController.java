@@ -2,11 +2,13 @@ package com.iuh.printshop.printshop_be.controller;
 
 import com.iuh.printshop.printshop_be.dto.auth.AuthResponse;
 import com.iuh.printshop.printshop_be.dto.auth.LoginRequest;
+import com.iuh.printshop.printshop_be.dto.auth.RefreshTokenRequest;
 import com.iuh.printshop.printshop_be.dto.auth.RegisterRequest;
 import com.iuh.printshop.printshop_be.dto.auth.RegisterResponse;
 import com.iuh.printshop.printshop_be.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -51,16 +53,23 @@ public class AuthController {
     }
 
     @PostMapping("/refresh")
-    @Operation(summary = "Refresh token", description = "Generate new JWT token for authenticated user")
-    public ResponseEntity<AuthResponse> refreshToken(@RequestParam String email) {
+    @Operation(summary = "Refresh token", description = "Exchange a refresh token for a new access token and a rotated refresh token")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshTokenRequest request) {
         try {
-            AuthResponse response = authService.refreshToken(email);
+            AuthResponse response = authService.refreshToken(request.getRefreshToken());
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
-            return ResponseEntity.badRequest().build();
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
+    @PostMapping("/logout")
+    @Operation(summary = "Logout", description = "Revoke the refresh token and every token rotated from the same login")
+    public ResponseEntity<String> logout(@Valid @RequestBody RefreshTokenRequest request) {
+        authService.logout(request.getRefreshToken());
+        return ResponseEntity.ok("Đăng xuất thành công");
+    }
+
     @PostMapping("/verify-email")
     @Operation(summary = "Verify email", description = "Verify user email with verification token")
     public ResponseEntity<String> verifyEmail(@RequestParam String token) {
@@ -77,9 +86,10 @@ public class AuthController {
     
     @PostMapping("/verify-email-otp")
     @Operation(summary = "Verify email with OTP", description = "Verify user email with OTP code and activate account")
-    public ResponseEntity<String> verifyEmailWithOtp(@RequestParam String email, @RequestParam String otpCode) {
+    public ResponseEntity<String> verifyEmailWithOtp(@RequestParam String email, @RequestParam String otpCode,
+                                                     HttpServletRequest request) {
         try {
-            boolean verified = authService.verifyEmailWithOtp(email, otpCode);
+            boolean verified = authService.verifyEmailWithOtp(email, otpCode, request.getRemoteAddr());
             if (verified) {
                 return ResponseEntity.ok("Tài khoản đã được kích hoạt thành công! Bạn có thể đăng nhập ngay bây giờ.");
             }
@@ -1,9 +1,11 @@
 package com.iuh.printshop.printshop_be.controller;
 
 import com.iuh.printshop.printshop_be.dto.cart.AddToCartRequest;
+import com.iuh.printshop.printshop_be.dto.cart.CartBatchRequest;
 import com.iuh.printshop.printshop_be.dto.cart.CartResponse;
 import com.iuh.printshop.printshop_be.dto.cart.UpdateCartItemRequest;
 import com.iuh.printshop.printshop_be.service.CartService;
+import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springdoc.core.annotations.ParameterObject;
@@ -43,6 +45,19 @@ public class CartController {
         return ResponseEntity.ok(cartService.removeItem(userId, itemId));
     }
 
+    @PostMapping("/{userId}/batch")
+    @Operation(summary = "Batch cart operations", description = "Apply ADD/UPDATE/REMOVE operations in order, all or nothing")
+    public ResponseEntity<CartResponse> applyBatch(@PathVariable Integer userId,
+                                                   @Valid @RequestBody CartBatchRequest req) {
+        return ResponseEntity.ok(cartService.applyBatch(userId, req));
+    }
+
+    @PostMapping("/reorder/{orderId}")
+    @Operation(summary = "Re-order", description = "Add every item of a past order of the authenticated user to their cart")
+    public ResponseEntity<CartResponse> reorder(@PathVariable Long orderId) {
+        return ResponseEntity.ok(cartService.reorder(orderId));
+    }
+
     @DeleteMapping("/{userId}")
     public ResponseEntity<CartResponse> clear(@PathVariable Integer userId) {
         return ResponseEntity.ok(cartService.clear(userId));
@@ -73,15 +73,19 @@ public class DiscountController {
 
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete discount code", description = "Delete a discount code by its ID")
-    public ResponseEntity<Void> deleteDiscount(@PathVariable Integer id) {
-        if (discountService.deleteDiscount(id)) {
-            return ResponseEntity.noContent().build();
+    public ResponseEntity<?> deleteDiscount(@PathVariable Integer id) {
+        try {
+            if (discountService.deleteDiscount(id)) {
+                return ResponseEntity.noContent().build();
+            }
+            return ResponseEntity.notFound().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
-        return ResponseEntity.notFound().build();
     }
 
     @PostMapping("/apply")
-    @Operation(summary = "Apply discount code", description = "Calculate discount for an order using a discount code")
+    @Operation(summary = "Apply discount code", description = "Calculate discount for an order using a discount code (usage is only consumed when the order is placed)")
     public ResponseEntity<?> applyDiscount(
             @RequestParam BigDecimal orderTotal,
             @Valid @RequestBody DiscountApplyRequest request) {
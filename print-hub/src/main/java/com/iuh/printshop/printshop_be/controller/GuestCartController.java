@@ -0,0 +1,65 @@
+package com.iuh.printshop.printshop_be.controller;
+
+import com.iuh.printshop.printshop_be.dto.cart.AddToCartRequest;
+import com.iuh.printshop.printshop_be.dto.cart.CartBatchRequest;
+import com.iuh.printshop.printshop_be.dto.cart.CartResponse;
+import com.iuh.printshop.printshop_be.dto.cart.UpdateCartItemRequest;
+import com.iuh.printshop.printshop_be.service.CartService;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Giỏ hàng khách vãng lai: định danh bằng cartToken trả về từ POST /api/cart/guest.
+ */
+@RestController
+@RequestMapping("/api/cart/guest")
+@RequiredArgsConstructor
+public class GuestCartController {
+
+    private final CartService cartService;
+
+    @PostMapping
+    @Operation(summary = "Create guest cart", description = "Create an anonymous cart and return its cart token")
+    public ResponseEntity<CartResponse> createCart() {
+        return ResponseEntity.ok(cartService.createGuestCart());
+    }
+
+    @GetMapping("/{cartToken}")
+    public ResponseEntity<CartResponse> getCart(@PathVariable String cartToken) {
+        return ResponseEntity.ok(cartService.getGuestCart(cartToken));
+    }
+
+    @PostMapping("/{cartToken}/items")
+    public ResponseEntity<CartResponse> addItem(@PathVariable String cartToken,
+                                                @Valid @RequestBody AddToCartRequest req) {
+        return ResponseEntity.ok(cartService.addGuestItem(cartToken, req));
+    }
+
+    @PutMapping("/{cartToken}/items/{itemId}")
+    public ResponseEntity<CartResponse> updateItem(@PathVariable String cartToken,
+                                                   @PathVariable Integer itemId,
+                                                   @Valid @RequestBody UpdateCartItemRequest req) {
+        return ResponseEntity.ok(cartService.updateGuestItem(cartToken, itemId, req));
+    }
+
+    @DeleteMapping("/{cartToken}/items/{itemId}")
+    public ResponseEntity<CartResponse> removeItem(@PathVariable String cartToken,
+                                                   @PathVariable Integer itemId) {
+        return ResponseEntity.ok(cartService.removeGuestItem(cartToken, itemId));
+    }
+
+    @PostMapping("/{cartToken}/batch")
+    public ResponseEntity<CartResponse> applyBatch(@PathVariable String cartToken,
+                                                   @Valid @RequestBody CartBatchRequest req) {
+        return ResponseEntity.ok(cartService.applyGuestBatch(cartToken, req));
+    }
+
+    @DeleteMapping("/{cartToken}")
+    public ResponseEntity<Void> discard(@PathVariable String cartToken) {
+        cartService.discardGuestCart(cartToken);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,17 +1,26 @@
 package com.iuh.printshop.printshop_be.controller;
 
+import com.iuh.printshop.printshop_be.dto.order.OrderPageResponse;
 import com.iuh.printshop.printshop_be.dto.order.OrderRequest;
 import com.iuh.printshop.printshop_be.dto.order.OrderResponse;
+import com.iuh.printshop.printshop_be.entity.Order;
+import com.iuh.printshop.printshop_be.service.OrderExportService;
 import com.iuh.printshop.printshop_be.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -21,6 +30,7 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
 
     @PostMapping
     @Operation(summary = "Create order", description = "Create a new order from cart items")
@@ -50,6 +60,16 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    @GetMapping("/me/paged")
+    @Operation(summary = "Get my orders (paged)", description = "Paginated orders of current user, optionally filtered by created date range [from, to]")
+    public ResponseEntity<OrderPageResponse> getMyOrdersPaged(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(orderService.getMyOrders(page, size, from, to));
+    }
+
     @GetMapping("/search")
     @Operation(summary = "Search orders", description = "Search orders by code or phone number")
     public ResponseEntity<List<OrderResponse>> searchOrders(
@@ -81,10 +101,54 @@ public class OrderController {
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    @Operation(summary = "Get all orders", description = "Get all orders (Admin only)")
-    public ResponseEntity<List<OrderResponse>> getAllOrders() {
-        List<OrderResponse> orders = orderService.getAllOrders();
-        return ResponseEntity.ok(orders);
+    @Operation(summary = "Get all orders (deprecated)", deprecated = true,
+            description = "Returns at most `limit` (max 100) newest orders. Use GET /api/orders/paged for pagination (Admin only)")
+    public ResponseEntity<List<OrderResponse>> getAllOrders(@RequestParam(defaultValue = "100") int limit) {
+        List<OrderResponse> orders = orderService.getAllOrders(limit);
+        return ResponseEntity.ok()
+                .header("Deprecation", "true")
+                .body(orders);
+    }
+
+    @GetMapping("/paged")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get orders (paged)", description = "Paginated orders, newest first, optionally filtered by created date range [from, to] (Admin only)")
+    public ResponseEntity<OrderPageResponse> getOrdersPaged(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(orderService.searchOrders(null, page, size, from, to));
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Export orders",
+            description = "Stream orders as CSV (one row per item) or NDJSON (one line per order), ordered by id. "
+                    + "Resume an interrupted download with afterId = last fully received order id (Admin only)")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long afterId) {
+        OrderExportService.Format exportFormat;
+        Order.OrderStatus orderStatus;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.toUpperCase());
+            orderStatus = status != null ? Order.OrderStatus.valueOf(status.toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        boolean csv = exportFormat == OrderExportService.Format.CSV;
+        String fileName = "orders-" + LocalDate.now() + (csv ? ".csv" : ".ndjson");
+        StreamingResponseBody body = outputStream ->
+                orderExportService.export(outputStream, exportFormat, from, to, orderStatus, afterId);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 }
 
@@ -1,11 +1,15 @@
 package com.iuh.printshop.printshop_be.controller;
 
+import com.iuh.printshop.printshop_be.dto.product.ProductPageResponse;
 import com.iuh.printshop.printshop_be.dto.product.ProductRequest;
 import com.iuh.printshop.printshop_be.dto.product.ProductResponse;
+import com.iuh.printshop.printshop_be.dto.product.ProductSearchRequest;
 import com.iuh.printshop.printshop_be.service.ProductService;
+import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -34,9 +38,31 @@ public class ProductController {
     }
 
     @GetMapping
-    public ResponseEntity<List<ProductResponse>> getAllProducts() {
-        List<ProductResponse> products = productService.getAllProducts();
-        return ResponseEntity.ok(products);
+    @Operation(summary = "List products (deprecated)", deprecated = true,
+            description = "Returns at most `limit` newest products. Use GET /api/products/search for pagination")
+    public ResponseEntity<List<ProductResponse>> getAllProducts(@RequestParam(defaultValue = "100") int limit) {
+        ProductSearchRequest request = ProductSearchRequest.builder()
+                .page(0)
+                .size(limit)
+                .countTotal(false)
+                .build();
+        List<ProductResponse> products = productService.searchProducts(request).getContent();
+        return ResponseEntity.ok()
+                .header("Deprecation", "true")
+                .body(products);
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search products",
+            description = "Filter, sort and paginate products. Pass nextCursor back as cursor for keyset pagination; "
+                    + "the total count is skipped on cursor pages unless countTotal=true, and countTotal=false skips it everywhere")
+    public ResponseEntity<?> searchProducts(@ParameterObject ProductSearchRequest request) {
+        try {
+            ProductPageResponse response = productService.searchProducts(request);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/{id}")
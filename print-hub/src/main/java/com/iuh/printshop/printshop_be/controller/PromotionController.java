@@ -1,6 +1,7 @@
 package com.iuh.printshop.printshop_be.controller;
 
 import com.iuh.printshop.printshop_be.dto.promotion.PromotionCalculateResponse;
+import com.iuh.printshop.printshop_be.dto.promotion.PromotionEvaluateRequest;
 import com.iuh.printshop.printshop_be.dto.promotion.PromotionRequest;
 import com.iuh.printshop.printshop_be.dto.promotion.PromotionResponse;
 import com.iuh.printshop.printshop_be.service.PromotionService;
@@ -107,6 +108,15 @@ public class PromotionController {
                 orderTotal, productIdList, categoryIdList);
         return ResponseEntity.ok(response);
     }
-}
-
 
+    @PostMapping("/evaluate")
+    @Operation(summary = "Evaluate promotions for cart lines",
+            description = "Apply the best combination of promotions per line: one promotion per stack group, exclusive promotions alone")
+    public ResponseEntity<?> evaluatePromotions(@Valid @RequestBody PromotionEvaluateRequest request) {
+        try {
+            return ResponseEntity.ok(promotionService.evaluate(request));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
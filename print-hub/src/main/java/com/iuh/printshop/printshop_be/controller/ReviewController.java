@@ -1,5 +1,6 @@
 package com.iuh.printshop.printshop_be.controller;
 
+import com.iuh.printshop.printshop_be.dto.review.ReviewPageResponse;
 import com.iuh.printshop.printshop_be.dto.review.ReviewRequest;
 import com.iuh.printshop.printshop_be.dto.review.ReviewResponse;
 import com.iuh.printshop.printshop_be.service.ReviewService;
@@ -28,6 +29,23 @@ public class ReviewController {
         return ResponseEntity.ok(reviews);
     }
 
+    @GetMapping("/product/{productId}/paged")
+    @Operation(summary = "Get reviews by product ID (paged)",
+            description = "Newest first. Pass nextCursor back as cursor for the next page; filter by exact rating or minRating")
+    public ResponseEntity<?> getReviewsByProductIdPaged(
+            @PathVariable Integer productId,
+            @RequestParam(required = false) Integer rating,
+            @RequestParam(required = false) Integer minRating,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            ReviewPageResponse page = reviewService.getReviewsByProductId(productId, rating, minRating, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping
     @Operation(summary = "Create review", description = "Create a new review (requires authentication)")
     public ResponseEntity<ReviewResponse> createReview(@Valid @RequestBody ReviewRequest request) {
@@ -57,5 +75,20 @@ public class ReviewController {
         List<ReviewResponse> reviews = reviewService.getMyReviews();
         return ResponseEntity.ok(reviews);
     }
+
+    @GetMapping("/me/paged")
+    @Operation(summary = "Get my reviews (paged)", description = "Reviews created by current user, newest first, cursor paginated")
+    public ResponseEntity<?> getMyReviewsPaged(
+            @RequestParam(required = false) Integer rating,
+            @RequestParam(required = false) Integer minRating,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            ReviewPageResponse page = reviewService.getMyReviews(rating, minRating, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 }
 
@@ -12,4 +12,7 @@ public class LoginRequest {
 
     @NotBlank(message = "Mật khẩu không được để trống")
     private String password;
+
+    // Token giỏ hàng khách (nếu có): được gộp vào giỏ của tài khoản sau khi đăng nhập
+    private String cartToken;
 }
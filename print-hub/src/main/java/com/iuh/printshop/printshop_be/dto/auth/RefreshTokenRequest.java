@@ -0,0 +1,10 @@
+package com.iuh.printshop.printshop_be.dto.auth;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class RefreshTokenRequest {
+    @NotBlank(message = "Refresh token không được để trống")
+    private String refreshToken;
+}
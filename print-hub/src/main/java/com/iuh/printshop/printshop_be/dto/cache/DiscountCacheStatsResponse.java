@@ -0,0 +1,24 @@
+package com.iuh.printshop.printshop_be.dto.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiscountCacheStatsResponse {
+    private List<CacheStatsResponse> caches;
+    // Tra cứu bị từ chối mà không chạm tới DB
+    private long bloomFilterRejections;
+    private long negativeCacheRejections;
+    // Tra cứu phải xuống DB và số lần DB không tìm thấy mã
+    private long databaseLookups;
+    private long databaseMisses;
+    private long bloomFilterCodes;
+    private long bloomFilterBits;
+}
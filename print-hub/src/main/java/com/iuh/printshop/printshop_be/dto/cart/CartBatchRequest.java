@@ -0,0 +1,19 @@
+package com.iuh.printshop.printshop_be.dto.cart;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchRequest {
+    @NotEmpty
+    @Size(max = 200)
+    private List<@Valid CartOperationRequest> operations;
+}
@@ -14,4 +14,9 @@ public class CartItemResponse {
     private BigDecimal unitPrice;
     private Integer quantity;
     private BigDecimal subtotal;
+    // Chỉ có khi đọc giỏ (GET): giá/tồn kho hiện tại để báo giá đã đổi so với lúc thêm
+    private BigDecimal currentPrice;
+    private Integer stockQuantity;
+    private Boolean priceChanged;
+    private Boolean outOfStock;
 }
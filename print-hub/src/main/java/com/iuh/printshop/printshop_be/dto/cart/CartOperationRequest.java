@@ -0,0 +1,29 @@
+package com.iuh.printshop.printshop_be.dto.cart;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationRequest {
+
+    public enum Type {
+        ADD,    // cộng thêm quantity (quantity >= 1)
+        UPDATE, // đặt số lượng, quantity <= 0 thì xóa dòng
+        REMOVE
+    }
+
+    @NotNull
+    private Type type;
+
+    // Dòng giỏ hàng được định danh bằng productId (itemId trong CartItemResponse)
+    @NotNull
+    private Integer productId;
+
+    @Min(0)
+    private Integer quantity;
+}
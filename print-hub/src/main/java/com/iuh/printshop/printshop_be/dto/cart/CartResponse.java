@@ -10,6 +10,11 @@ import java.util.List;
 @Builder
 public class CartResponse {
     private Integer cartId;
+    private String cartToken; // Chỉ có với giỏ khách vãng lai
     private List<CartItemResponse> items;
     private BigDecimal total;
+    // Chỉ có khi đọc giỏ (GET): tổng theo giá hiện tại và cờ báo có dòng đổi giá/thiếu hàng
+    private BigDecimal currentTotal;
+    private Boolean priceChanged;
+    private Boolean outOfStock;
 }
@@ -12,6 +12,7 @@ import java.math.BigDecimal;
 @NoArgsConstructor
 @AllArgsConstructor
 public class DiscountApplyResponse {
+    private Integer discountId;
     private BigDecimal originalTotal;
     private BigDecimal discountAmount;
     private BigDecimal finalTotal;
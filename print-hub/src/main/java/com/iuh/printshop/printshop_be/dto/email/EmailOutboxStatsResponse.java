@@ -0,0 +1,26 @@
+package com.iuh.printshop.printshop_be.dto.email;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutboxStatsResponse {
+    // Hàng đợi hiện tại (đọc từ DB)
+    private long pending;
+    private long sending;
+    private long failed;
+    private Long oldestPendingAgeSeconds;
+    // Bộ đếm của instance này kể từ khi khởi động
+    private long sent;
+    private long failedAttempts;
+    private long deadLettered;
+    private long smtpBatches;
+    private double averageSmtpBatchMillis;
+    private double averageDeliveryLatencyMillis;
+    private long maxDeliveryLatencyMillis;
+}
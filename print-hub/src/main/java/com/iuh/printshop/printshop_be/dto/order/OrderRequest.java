@@ -35,5 +35,7 @@ public class OrderRequest {
     private String discountCode; // Optional
 
     private BigDecimal shippingFee; // Optional, default 0
+
+    private String cartToken; // Optional: giỏ khách vãng lai được bỏ sau khi đặt hàng
 }
 
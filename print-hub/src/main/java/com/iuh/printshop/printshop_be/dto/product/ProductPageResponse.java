@@ -13,11 +13,12 @@ import java.util.List;
 @AllArgsConstructor
 public class ProductPageResponse {
     private List<ProductResponse> content;
-    private int page;
+    private Integer page; // null khi phân trang theo cursor
     private int size;
-    private long totalElements;
-    private int totalPages;
+    private Long totalElements; // null khi countTotal = false
+    private Integer totalPages;
     private boolean first;
     private boolean last;
+    private String nextCursor; // null khi đã hết dữ liệu
 }
 
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -23,6 +24,9 @@ public class ProductResponse {
     private String categoryName;
     private Integer brandId;
     private String brandName;
+    private Double averageRating;
+    private Integer reviewCount;
+    private List<Integer> ratingDistribution; // Số review theo 1..5 sao
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
@@ -17,8 +17,10 @@ public class ProductSearchRequest {
     private Integer brandId;
     private BigDecimal minPrice;
     private BigDecimal maxPrice;
-    private String sortBy; // price_asc, price_desc, name_asc, name_desc, newest
+    private String sortBy; // price_asc, price_desc, name_asc, name_desc, newest, rating_desc, relevance (default khi có keyword)
     private Integer page = 0;
     private Integer size = 20;
+    private String cursor; // nextCursor của trang trước; khi có cursor thì bỏ qua page (keyset pagination)
+    private Boolean countTotal; // false: bỏ qua COUNT(*), chỉ trả về nextCursor/last; mặc định chỉ đếm khi không có cursor
 }
 
@@ -0,0 +1,21 @@
+package com.iuh.printshop.printshop_be.dto.promotion;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppliedPromotionResponse {
+    private Integer promotionId;
+    private String name;
+    private String description;
+    private String stackGroup;
+    private Boolean exclusive;
+    private BigDecimal discountAmount;
+}
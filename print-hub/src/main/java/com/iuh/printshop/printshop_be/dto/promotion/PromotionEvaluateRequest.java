@@ -0,0 +1,21 @@
+package com.iuh.printshop.printshop_be.dto.promotion;
+
+import com.iuh.printshop.printshop_be.dto.order.OrderItemRequest;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromotionEvaluateRequest {
+    @NotEmpty(message = "Items are required")
+    @Valid
+    private List<OrderItemRequest> items;
+}
@@ -0,0 +1,21 @@
+package com.iuh.printshop.printshop_be.dto.promotion;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromotionEvaluateResponse {
+    private BigDecimal originalTotal;
+    private BigDecimal discountAmount;
+    private BigDecimal finalTotal;
+    private List<AppliedPromotionResponse> appliedPromotions;
+    private List<PromotionLineResponse> lines;
+}
@@ -0,0 +1,22 @@
+package com.iuh.printshop.printshop_be.dto.promotion;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromotionLineResponse {
+    private Integer productId;
+    private String productName;
+    private Integer quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal lineTotal;
+    private BigDecimal discountAmount;
+    private BigDecimal finalTotal;
+}
@@ -45,6 +45,8 @@ public class PromotionRequest {
     private LocalDateTime endDate;
 
     private Boolean isActive;
+    private Boolean exclusive;
+    private String stackGroup;
 }
 
 
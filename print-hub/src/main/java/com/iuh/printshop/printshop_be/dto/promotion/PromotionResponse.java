@@ -29,6 +29,8 @@ public class PromotionResponse {
     private LocalDateTime startDate;
     private LocalDateTime endDate;
     private Boolean isActive;
+    private Boolean exclusive;
+    private String stackGroup;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
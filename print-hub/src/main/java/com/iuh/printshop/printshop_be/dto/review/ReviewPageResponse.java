@@ -0,0 +1,19 @@
+package com.iuh.printshop.printshop_be.dto.review;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewPageResponse {
+    private List<ReviewResponse> content;
+    private int size;
+    private boolean last;
+    private String nextCursor; // null khi đã hết dữ liệu
+}
@@ -43,10 +43,4 @@ public class Cart {
         this.items = items != null ? items : new ArrayList<>();
         this.total = total != null ? total : BigDecimal.ZERO;
     }
-
-    public void recalcTotal() {
-        this.total = items.stream()
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
 }
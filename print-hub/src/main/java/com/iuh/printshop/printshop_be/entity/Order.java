@@ -15,7 +15,10 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_created_at", columnList = "created_at"),
+        @Index(name = "idx_orders_user_created_at", columnList = "user_id, created_at")
+})
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -49,6 +52,12 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private PaymentStatus paymentStatus = PaymentStatus.UNPAID;
 
+    // Trạng thái giữ hàng; null với đơn cũ được coi như RESERVED.
+    // Chỉ đổi qua OrderRepository.transitionReservation (UPDATE có điều kiện), save() không ghi đè cột này
+    @Column(name = "reservation_status", length = 20, updatable = false)
+    @Enumerated(EnumType.STRING)
+    private ReservationStatus reservationStatus;
+
     @Column(nullable = false, precision = 12, scale = 2)
     private BigDecimal subtotal;
 
@@ -64,24 +73,10 @@ public class Order {
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<OrderItem> orderItems;
 
+    // Mã đơn hàng do OrderCodeGenerator sinh trước khi lưu
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
-        if (code == null || code.isEmpty()) {
-            code = generateOrderCode();
-        }
-    }
-
-    private String generateOrderCode() {
-        // Format: PS-YYYY-MMDD-HHMMSS
-        LocalDateTime now = LocalDateTime.now();
-        return String.format("PS-%04d-%02d%02d-%02d%02d%02d",
-                now.getYear(),
-                now.getMonthValue(),
-                now.getDayOfMonth(),
-                now.getHour(),
-                now.getMinute(),
-                now.getSecond());
     }
 
     public enum OrderStatus {
@@ -103,5 +98,11 @@ public class Order {
         PAID,
         FAILED
     }
+
+    public enum ReservationStatus {
+        RESERVED,   // Đã trừ tồn kho khi đặt hàng
+        COMMITTED,  // Đơn hoàn tất, hàng đã xuất kho
+        RELEASED    // Đơn bị hủy, tồn kho đã được hoàn lại
+    }
 }
 
@@ -14,7 +14,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        // Sắp xếp rating_desc và keyset theo (rating_average, id) đọc thẳng từ index
+        @Index(name = "idx_products_rating_average", columnList = "rating_average, id")
+})
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -40,6 +43,10 @@ public class Product {
     @JoinColumn(name = "brand_id")
     private Brand brand;
 
+    @Embedded
+    @Builder.Default
+    private RatingStats ratingStats = new RatingStats();
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -65,6 +65,15 @@ public class Promotion {
     @Column(name = "end_date", nullable = false)
     private LocalDateTime endDate;
 
+    // Khuyến mãi độc quyền không được cộng dồn với bất kỳ khuyến mãi nào khác
+    @Column(name = "is_exclusive")
+    @Builder.Default
+    private Boolean exclusive = false;
+
+    // Mỗi nhóm chỉ áp dụng tối đa một khuyến mãi; các nhóm khác nhau được cộng dồn (null = nhóm mặc định)
+    @Column(name = "stack_group", length = 50)
+    private String stackGroup;
+
     @Column(name = "is_active", nullable = false)
     @Builder.Default
     private Boolean isActive = true;
@@ -0,0 +1,61 @@
+package com.iuh.printshop.printshop_be.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Thống kê đánh giá của sản phẩm, cập nhật tăng dần khi review được tạo/sửa/xóa
+ * (ProductRepository.applyRatingDelta) để trang danh sách không phải đọc bảng reviews.
+ * Các cột là updatable = false: lưu Product qua JPA không ghi đè delta của review đang chạy song song.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class RatingStats {
+    @Builder.Default
+    @Column(name = "review_count", updatable = false)
+    private Integer reviewCount = 0;
+
+    @Builder.Default
+    @Column(name = "rating_sum", updatable = false)
+    private Integer ratingSum = 0;
+
+    // Lưu sẵn để sắp xếp/phân trang theo đánh giá bằng index (idx_products_rating_average) thay vì tính sum / count mỗi truy vấn
+    @Builder.Default
+    @Column(name = "rating_average", updatable = false)
+    private Double ratingAverage = 0.0;
+
+    @Builder.Default
+    @Column(name = "rating_1", updatable = false)
+    private Integer oneStar = 0;
+
+    @Builder.Default
+    @Column(name = "rating_2", updatable = false)
+    private Integer twoStar = 0;
+
+    @Builder.Default
+    @Column(name = "rating_3", updatable = false)
+    private Integer threeStar = 0;
+
+    @Builder.Default
+    @Column(name = "rating_4", updatable = false)
+    private Integer fourStar = 0;
+
+    @Builder.Default
+    @Column(name = "rating_5", updatable = false)
+    private Integer fiveStar = 0;
+
+    // Số review theo số sao, phần tử 0 là 1 sao
+    public List<Integer> distribution() {
+        return Arrays.asList(oneStar, twoStar, threeStar, fourStar, fiveStar);
+    }
+}
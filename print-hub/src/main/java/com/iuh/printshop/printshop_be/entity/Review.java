@@ -15,6 +15,9 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "reviews", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"product_id", "user_id"})
+}, indexes = {
+    @Index(name = "idx_reviews_product_created_at", columnList = "product_id, created_at"),
+    @Index(name = "idx_reviews_user_created_at", columnList = "user_id, created_at")
 })
 public class Review {
     @Id
@@ -15,7 +15,9 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_updated_at", columnList = "updated_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -43,6 +45,11 @@ public class User implements UserDetails {
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
+    // Tăng khi roles/mật khẩu/trạng thái thay đổi: token mang version cũ bị từ chối
+    @Column(name = "token_version", nullable = false)
+    @Builder.Default
+    private Integer tokenVersion = 0;
+
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
@@ -57,6 +64,10 @@ public class User implements UserDetails {
     )
     private Set<Role> roles;
 
+    public void bumpTokenVersion() {
+        tokenVersion = (tokenVersion != null ? tokenVersion : 0) + 1;
+    }
+
     @PreUpdate
     public void preUpdate() {
         this.updatedAt = LocalDateTime.now();
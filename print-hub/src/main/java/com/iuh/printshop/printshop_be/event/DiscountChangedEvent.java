@@ -0,0 +1,16 @@
+package com.iuh.printshop.printshop_be.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Phát ra sau khi mã giảm giá được tạo/sửa/xóa hoặc hết lượt dùng để DiscountCodeCache làm mới.
+ * codes gồm cả mã cũ và mã mới khi mã bị đổi.
+ */
+@Getter
+@RequiredArgsConstructor
+public class DiscountChangedEvent {
+    private final Set<String> codes;
+}
@@ -0,0 +1,13 @@
+package com.iuh.printshop.printshop_be.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Phát ra khi email được ghi vào outbox; sau khi transaction commit worker được đánh thức để gửi ngay.
+ */
+@Getter
+@RequiredArgsConstructor
+public class EmailQueuedEvent {
+    private final Long emailId;
+}
@@ -0,0 +1,46 @@
+package com.iuh.printshop.printshop_be.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Phát ra sau mỗi thay đổi dữ liệu sản phẩm để các thành phần đọc (cache, index...) tự cập nhật.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProductChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        STOCK_CHANGED,
+        RATING_CHANGED
+    }
+
+    private final Type type;
+    private final Collection<Integer> productIds;
+
+    public static ProductChangedEvent created(Integer productId) {
+        return new ProductChangedEvent(Type.CREATED, List.of(productId));
+    }
+
+    public static ProductChangedEvent updated(Integer productId) {
+        return new ProductChangedEvent(Type.UPDATED, List.of(productId));
+    }
+
+    public static ProductChangedEvent deleted(Integer productId) {
+        return new ProductChangedEvent(Type.DELETED, List.of(productId));
+    }
+
+    public static ProductChangedEvent stockChanged(Collection<Integer> productIds) {
+        return new ProductChangedEvent(Type.STOCK_CHANGED, List.copyOf(productIds));
+    }
+
+    public static ProductChangedEvent ratingChanged(Integer productId) {
+        return new ProductChangedEvent(Type.RATING_CHANGED, List.of(productId));
+    }
+}
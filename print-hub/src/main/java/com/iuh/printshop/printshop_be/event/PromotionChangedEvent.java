@@ -0,0 +1,13 @@
+package com.iuh.printshop.printshop_be.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Phát ra sau khi khuyến mãi được tạo/sửa/xóa để PromotionIndex biên dịch lại.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PromotionChangedEvent {
+    private final Integer promotionId;
+}
@@ -0,0 +1,33 @@
+package com.iuh.printshop.printshop_be.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Phát ra sau khi danh mục/thương hiệu được sửa hoặc xóa; productIds là các sản phẩm đang thuộc về nó
+ * (tên danh mục/thương hiệu nằm trong chỉ mục tìm kiếm và ProductResponse đã cache).
+ */
+@Getter
+@RequiredArgsConstructor
+public class TaxonomyChangedEvent {
+
+    public enum Type {
+        CATEGORY,
+        BRAND
+    }
+
+    private final Type type;
+    private final Integer id;
+    private final Collection<Integer> productIds;
+
+    public static TaxonomyChangedEvent category(Integer categoryId, Collection<Integer> productIds) {
+        return new TaxonomyChangedEvent(Type.CATEGORY, categoryId, List.copyOf(productIds));
+    }
+
+    public static TaxonomyChangedEvent brand(Integer brandId, Collection<Integer> productIds) {
+        return new TaxonomyChangedEvent(Type.BRAND, brandId, List.copyOf(productIds));
+    }
+}
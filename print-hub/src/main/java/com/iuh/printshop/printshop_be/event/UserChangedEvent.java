@@ -0,0 +1,15 @@
+package com.iuh.printshop.printshop_be.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Phát ra sau khi thông tin đăng nhập của user thay đổi (roles, trạng thái, profile, mật khẩu, bị xóa)
+ * để AuthCache bỏ principal đã cache và TokenVersionRegistry cập nhật version.
+ */
+@Getter
+@RequiredArgsConstructor
+public class UserChangedEvent {
+    private final Integer userId;
+    private final String email;
+}
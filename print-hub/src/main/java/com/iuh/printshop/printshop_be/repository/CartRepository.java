@@ -3,10 +3,15 @@ package com.iuh.printshop.printshop_be.repository;
 import com.iuh.printshop.printshop_be.entity.Cart;
 import com.iuh.printshop.printshop_be.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Integer> {
     Optional<Cart> findByUser(User user);
     boolean existsByUser(User user);
+
+    @Query("SELECT DISTINCT c FROM Cart c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.product WHERE c.user.id = :userId")
+    Optional<Cart> findByUserIdWithItems(@Param("userId") Integer userId);
 }
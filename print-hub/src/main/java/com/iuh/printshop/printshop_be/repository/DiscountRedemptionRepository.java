@@ -0,0 +1,26 @@
+package com.iuh.printshop.printshop_be.repository;
+
+import com.iuh.printshop.printshop_be.entity.DiscountRedemption;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface DiscountRedemptionRepository extends JpaRepository<DiscountRedemption, Long> {
+    Optional<DiscountRedemption> findByOrderId(Long orderId);
+
+    boolean existsByDiscountId(Integer discountId);
+
+    // Chuyển trạng thái có điều kiện: hai lần hủy đồng thời chỉ một lần cập nhật được dòng này
+    @Modifying
+    @Query("UPDATE DiscountRedemption r SET r.status = :to, r.releasedAt = :at WHERE r.id = :id AND r.status = :from")
+    int transition(@Param("id") Long id,
+                   @Param("from") DiscountRedemption.Status from,
+                   @Param("to") DiscountRedemption.Status to,
+                   @Param("at") LocalDateTime at);
+}
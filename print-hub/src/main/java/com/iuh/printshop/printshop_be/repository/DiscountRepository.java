@@ -2,6 +2,9 @@ package com.iuh.printshop.printshop_be.repository;
 
 import com.iuh.printshop.printshop_be.entity.Discount;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -11,12 +14,31 @@ import java.util.Optional;
 @Repository
 public interface DiscountRepository extends JpaRepository<Discount, Integer> {
     Optional<Discount> findByCode(String code);
+
+    @Query("SELECT d.code FROM Discount d")
+    List<String> findAllCodes();
+
+    // Mã được tạo/sửa từ thời điểm since (kể cả bởi instance khác hoặc ghi thẳng vào DB)
+    @Query("SELECT d.code FROM Discount d WHERE d.createdAt >= :since OR d.updatedAt >= :since")
+    List<String> findCodesChangedSince(@Param("since") LocalDateTime since);
     
     List<Discount> findByIsActiveTrue();
     
     List<Discount> findByIsActiveTrueAndStartDateLessThanEqualAndEndDateGreaterThanEqual(
         LocalDateTime now, LocalDateTime now2
     );
-}
 
+    /**
+     * Chiếm một lượt dùng bằng UPDATE có điều kiện (không đọc-rồi-ghi): trả về 0 nếu mã đã hết lượt,
+     * bị tắt hoặc hết hạn. Khóa dòng được giữ tới khi transaction commit nên nên gọi ở cuối transaction.
+     */
+    @Modifying
+    @Query("UPDATE Discount d SET d.usedCount = d.usedCount + 1 WHERE d.id = :id AND d.isActive = true " +
+           "AND d.startDate <= :now AND d.endDate >= :now " +
+           "AND (d.usageLimit IS NULL OR d.usedCount < d.usageLimit)")
+    int tryConsumeUsage(@Param("id") Integer id, @Param("now") LocalDateTime now);
 
+    @Modifying
+    @Query("UPDATE Discount d SET d.usedCount = d.usedCount - 1 WHERE d.id = :id AND d.usedCount > 0")
+    int releaseUsage(@Param("id") Integer id);
+}
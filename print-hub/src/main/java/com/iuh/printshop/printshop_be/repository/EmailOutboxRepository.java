@@ -0,0 +1,69 @@
+package com.iuh.printshop.printshop_be.repository;
+
+import com.iuh.printshop.printshop_be.entity.EmailOutbox;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.status = :status AND e.nextAttemptAt <= :now ORDER BY e.id")
+    List<Long> findDueIds(@Param("status") EmailOutbox.Status status, @Param("now") LocalDateTime now, Limit limit);
+
+    List<EmailOutbox> findByIdIn(Collection<Long> ids);
+
+    // Giữ email để gửi: instance khác (hoặc lần quét sau) nhận 0 và bỏ qua
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :sending, e.lockedUntil = :lockedUntil " +
+           "WHERE e.id = :id AND e.status = :pending")
+    int claim(@Param("id") Long id,
+              @Param("pending") EmailOutbox.Status pending,
+              @Param("sending") EmailOutbox.Status sending,
+              @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :sent, e.sentAt = :now, e.attempts = e.attempts + 1, " +
+           "e.lockedUntil = null, e.lastError = null WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids,
+                 @Param("sent") EmailOutbox.Status sent,
+                 @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :status, e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt, " +
+           "e.lockedUntil = null, e.lastError = :error WHERE e.id = :id")
+    int markAttemptFailed(@Param("id") Long id,
+                          @Param("status") EmailOutbox.Status status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("error") String error);
+
+    // Email bị giữ bởi worker đã dừng (hết locked_until) được trả lại hàng đợi
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :pending, e.lockedUntil = null " +
+           "WHERE e.status = :sending AND e.lockedUntil < :now")
+    int releaseExpiredClaims(@Param("pending") EmailOutbox.Status pending,
+                             @Param("sending") EmailOutbox.Status sending,
+                             @Param("now") LocalDateTime now);
+
+    long countByStatus(EmailOutbox.Status status);
+
+    @Query("SELECT MIN(e.createdAt) FROM EmailOutbox e WHERE e.status = :status")
+    LocalDateTime findOldestCreatedAt(@Param("status") EmailOutbox.Status status);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM EmailOutbox e WHERE e.status = :sent AND e.sentAt < :before")
+    int deleteSentBefore(@Param("sent") EmailOutbox.Status sent, @Param("before") LocalDateTime before);
+}
@@ -3,12 +3,23 @@ package com.iuh.printshop.printshop_be.repository;
 import com.iuh.printshop.printshop_be.entity.OrderItem;
 import com.iuh.printshop.printshop_be.entity.OrderItemId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, OrderItemId> {
     List<OrderItem> findByOrderId(Long orderId);
+
+    // Một truy vấn cho items + product của cả trang đơn hàng (tránh N+1 khi map sang OrderResponse)
+    @Query("SELECT oi FROM OrderItem oi JOIN FETCH oi.product WHERE oi.order.id IN :orderIds")
+    List<OrderItem> findWithProductByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    // Items + product của một đơn thuộc user (đặt lại đơn cũ): kiểm tra quyền sở hữu trong cùng truy vấn
+    @Query("SELECT oi FROM OrderItem oi JOIN FETCH oi.product WHERE oi.order.id = :orderId AND oi.order.user.id = :userId")
+    List<OrderItem> findWithProductByOrderIdAndUserId(@Param("orderId") Long orderId, @Param("userId") Integer userId);
 }
 
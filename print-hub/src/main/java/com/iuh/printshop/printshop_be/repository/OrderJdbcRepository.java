@@ -0,0 +1,80 @@
+package com.iuh.printshop.printshop_be.repository;
+
+import com.iuh.printshop.printshop_be.entity.OrderItem;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Các thao tác ghi theo lô cho luồng đặt hàng, chạy bằng JDBC trong cùng transaction với JPA.
+ * Mỗi phương thức là một round-trip bất kể số dòng của đơn hàng.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderJdbcRepository {
+
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO order_items (order_id, product_id, price, quantity) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insertItems(Long orderId, List<OrderItem> items) {
+        jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, items, items.size(), (ps, item) -> {
+            ps.setLong(1, orderId);
+            ps.setInt(2, item.getProduct().getId());
+            ps.setBigDecimal(3, item.getPrice());
+            ps.setInt(4, item.getQuantity());
+        });
+    }
+
+    /**
+     * Khóa các dòng products theo id tăng dần (quét khóa chính theo thứ tự ORDER BY id).
+     * Thứ tự khóa của UPDATE ... JOIN do kế hoạch join của optimizer quyết định, nên cần khóa trước
+     * để các checkout/hủy đơn đồng thời luôn chờ nhau theo cùng thứ tự thay vì deadlock.
+     */
+    public void lockProducts(Collection<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        StringJoiner placeholders = new StringJoiner(", ");
+        productIds.forEach(id -> placeholders.add("?"));
+        jdbcTemplate.queryForList("SELECT id FROM products WHERE id IN (" + placeholders + ") ORDER BY id FOR UPDATE",
+                Integer.class, productIds.toArray());
+    }
+
+    /**
+     * Trừ tồn kho cho nhiều sản phẩm bằng một câu UPDATE có điều kiện stock_quantity >= qty.
+     * Trả về số sản phẩm được trừ; nhỏ hơn quantities.size() nghĩa là có sản phẩm không đủ hàng.
+     */
+    public int decrementStock(Map<Integer, Integer> quantities) {
+        return adjustStock(quantities, "-", " AND p.stock_quantity >= d.qty");
+    }
+
+    public int incrementStock(Map<Integer, Integer> quantities) {
+        return adjustStock(quantities, "+", "");
+    }
+
+    // UPDATE products JOIN (SELECT ? id, ? qty UNION ALL ...) d: một câu lệnh cho toàn bộ đơn hàng
+    private int adjustStock(Map<Integer, Integer> quantities, String operator, String condition) {
+        if (quantities.isEmpty()) {
+            return 0;
+        }
+        StringJoiner rows = new StringJoiner(" UNION ALL ");
+        List<Object> params = new ArrayList<>(quantities.size() * 2);
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            rows.add(params.isEmpty() ? "SELECT ? AS id, ? AS qty" : "SELECT ?, ?");
+            params.add(entry.getKey());
+            params.add(entry.getValue());
+        }
+        String sql = "UPDATE products p JOIN (" + rows + ") d ON p.id = d.id"
+                + " SET p.stock_quantity = p.stock_quantity " + operator + " d.qty, p.updated_at = NOW()"
+                + " WHERE p.stock_quantity IS NOT NULL" + condition;
+        return jdbcTemplate.update(sql, params.toArray());
+    }
+}
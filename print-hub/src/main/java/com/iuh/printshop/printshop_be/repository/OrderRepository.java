@@ -1,11 +1,18 @@
 package com.iuh.printshop.printshop_be.repository;
 
 import com.iuh.printshop.printshop_be.entity.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +25,33 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     @Query("SELECT o FROM Order o WHERE o.code = :code OR o.phone = :phone")
     List<Order> findByCodeOrPhone(@Param("code") String code, @Param("phone") String phone);
     
-    List<Order> findAllByOrderByCreatedAtDesc();
+    // Danh sách cũ không phân trang: luôn có giới hạn số dòng
+    List<Order> findAllByOrderByCreatedAtDescIdDesc(Limit limit);
+
+    // Mã lớn nhất theo định dạng PS-yyMMdd-XXXXXXXX (sắp xếp theo thời gian), đọc từ unique index của cột code
+    @Query("SELECT MAX(o.code) FROM Order o WHERE o.code LIKE 'PS-%'")
+    Optional<String> findLatestCode();
+
+    // SELECT ... FOR UPDATE: các thay đổi trạng thái đồng thời trên cùng đơn hàng chạy tuần tự
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdForUpdate(@Param("id") Long id);
+
+    // Lọc theo khoảng thời gian [from, to) và user (tham số null = bỏ qua điều kiện)
+    @Query("SELECT o FROM Order o WHERE (:userId IS NULL OR o.user.id = :userId) " +
+           "AND (:from IS NULL OR o.createdAt >= :from) AND (:to IS NULL OR o.createdAt < :to)")
+    Page<Order> search(@Param("userId") Integer userId,
+                       @Param("from") LocalDateTime from,
+                       @Param("to") LocalDateTime to,
+                       Pageable pageable);
+
+    // Chuyển trạng thái giữ hàng có điều kiện: chỉ một transaction thắng khi hủy/hoàn tất đồng thời.
+    // Đơn cũ (reservation_status null) được coi như đang RESERVED
+    @Modifying
+    @Query("UPDATE Order o SET o.reservationStatus = :to WHERE o.id = :id " +
+           "AND (o.reservationStatus = :from OR o.reservationStatus IS NULL)")
+    int transitionReservation(@Param("id") Long id,
+                              @Param("from") Order.ReservationStatus from,
+                              @Param("to") Order.ReservationStatus to);
 }
 
@@ -1,6 +1,7 @@
 package com.iuh.printshop.printshop_be.repository;
 
 import com.iuh.printshop.printshop_be.entity.OtpVerification;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -25,5 +27,23 @@ public interface OtpVerificationRepository extends JpaRepository<OtpVerification
     @Modifying
     @Query("DELETE FROM OtpVerification o WHERE o.expiresAt < :now")
     void deleteExpiredOtps(@Param("now") LocalDateTime now);
+
+    @Query("SELECT o FROM OtpVerification o WHERE o.email = :email AND o.isUsed = false ORDER BY o.createdAt DESC, o.id DESC")
+    List<OtpVerification> findLatestUnusedOtp(@Param("email") String email, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM OtpVerification o WHERE o.email = :email")
+    void deleteByEmail(@Param("email") String email);
+
+    /**
+     * Đánh dấu đã dùng nếu chưa dùng; 0 khi request khác đã dùng mã này trước.
+     */
+    @Modifying
+    @Query("UPDATE OtpVerification o SET o.isUsed = true WHERE o.id = :id AND o.isUsed = false")
+    int markUsed(@Param("id") Integer id);
+
+    @Modifying
+    @Query("DELETE FROM OtpVerification o WHERE o.expiresAt < :now OR o.isUsed = true")
+    int deleteExpiredOrUsed(@Param("now") LocalDateTime now);
 }
 
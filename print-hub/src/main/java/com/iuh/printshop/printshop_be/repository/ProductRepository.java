@@ -1,12 +1,81 @@
 package com.iuh.printshop.printshop_be.repository;
 
 import com.iuh.printshop.printshop_be.entity.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Integer>, JpaSpecificationExecutor<Product> {
     boolean existsByName(String name);
+
+    List<Product> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit);
+
+    // Id sản phẩm thuộc một danh mục/thương hiệu (cập nhật chỉ mục và cache khi đổi tên)
+    @Query("SELECT p.id FROM Product p WHERE p.category.id = :categoryId")
+    List<Integer> findIdsByCategoryId(@Param("categoryId") Integer categoryId);
+
+    @Query("SELECT p.id FROM Product p WHERE p.brand.id = :brandId")
+    List<Integer> findIdsByBrandId(@Param("brandId") Integer brandId);
+
+    // Sản phẩm kèm category/brand trong một truy vấn (ngữ cảnh cho trợ lý AI)
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category LEFT JOIN FETCH p.brand WHERE p.id IN :ids")
+    List<Product> findWithCategoryAndBrandByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Giá và tồn kho hiện tại (id, price, stockQuantity) cho read model giỏ hàng, không tải entity.
+     */
+    @Query("SELECT p.id, p.price, p.stockQuantity FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findPriceAndStockByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Cập nhật tăng dần thống kê đánh giá: addedRating/removedRating = số sao được thêm/bớt (0 = không có).
+     * rating_average đứng đầu để được tính từ giá trị cũ dù MariaDB gán các cột theo thứ tự trái sang phải.
+     * Xóa persistence context sau khi cập nhật: Product đang được quản lý sẽ không còn giữ thống kê cũ
+     * khi listener RATING_CHANGED (chạy sau commit, cùng EntityManager) tải lại sản phẩm để cập nhật chỉ mục.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query(value = "UPDATE products SET " +
+            "rating_average = CASE WHEN COALESCE(review_count, 0) + :countDelta > 0 " +
+            "    THEN (COALESCE(rating_sum, 0) + :sumDelta) / (COALESCE(review_count, 0) + :countDelta) ELSE 0 END, " +
+            "review_count = COALESCE(review_count, 0) + :countDelta, " +
+            "rating_sum = COALESCE(rating_sum, 0) + :sumDelta, " +
+            "rating_1 = COALESCE(rating_1, 0) + (:addedRating = 1) - (:removedRating = 1), " +
+            "rating_2 = COALESCE(rating_2, 0) + (:addedRating = 2) - (:removedRating = 2), " +
+            "rating_3 = COALESCE(rating_3, 0) + (:addedRating = 3) - (:removedRating = 3), " +
+            "rating_4 = COALESCE(rating_4, 0) + (:addedRating = 4) - (:removedRating = 4), " +
+            "rating_5 = COALESCE(rating_5, 0) + (:addedRating = 5) - (:removedRating = 5) " +
+            "WHERE id = :productId", nativeQuery = true)
+    int applyRatingDelta(@Param("productId") Integer productId,
+                         @Param("countDelta") int countDelta,
+                         @Param("sumDelta") int sumDelta,
+                         @Param("addedRating") int addedRating,
+                         @Param("removedRating") int removedRating);
+
+    // Có sản phẩm chưa được backfill thống kê (cột vừa được thêm bởi ddl-auto nên còn NULL)
+    boolean existsByRatingStatsReviewCountIsNull();
+
+    // Tính lại toàn bộ thống kê từ bảng reviews (backfill lúc khởi động, sửa sai lệch nếu có)
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE products p LEFT JOIN (" +
+            "    SELECT product_id, COUNT(*) AS cnt, SUM(rating) AS total, " +
+            "           SUM(rating = 1) AS r1, SUM(rating = 2) AS r2, SUM(rating = 3) AS r3, " +
+            "           SUM(rating = 4) AS r4, SUM(rating = 5) AS r5 " +
+            "    FROM reviews GROUP BY product_id) r ON r.product_id = p.id " +
+            "SET p.review_count = COALESCE(r.cnt, 0), p.rating_sum = COALESCE(r.total, 0), " +
+            "p.rating_average = COALESCE(r.total / r.cnt, 0), " +
+            "p.rating_1 = COALESCE(r.r1, 0), p.rating_2 = COALESCE(r.r2, 0), p.rating_3 = COALESCE(r.r3, 0), " +
+            "p.rating_4 = COALESCE(r.r4, 0), p.rating_5 = COALESCE(r.r5, 0)", nativeQuery = true)
+    int recalculateRatingStats();
 }
 
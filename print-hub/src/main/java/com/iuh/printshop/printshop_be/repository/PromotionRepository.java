@@ -16,6 +16,20 @@ public interface PromotionRepository extends JpaRepository<Promotion, Integer> {
     List<Promotion> findActivePromotions(@Param("now") LocalDateTime now);
     
     List<Promotion> findByIsActiveTrue();
+
+    // Dữ liệu để biên dịch PromotionIndex: khuyến mãi còn hiệu lực hoặc sắp bắt đầu
+    @Query("SELECT p FROM Promotion p WHERE p.isActive = true AND p.endDate >= :now")
+    List<Promotion> findUnexpiredPromotions(@Param("now") LocalDateTime now);
+
+    // [promotionId, categoryId]
+    @Query("SELECT p.id, c.id FROM Promotion p JOIN p.applicableCategories c " +
+           "WHERE p.isActive = true AND p.endDate >= :now")
+    List<Object[]> findUnexpiredCategoryLinks(@Param("now") LocalDateTime now);
+
+    // [promotionId, productId]
+    @Query("SELECT p.id, pr.id FROM Promotion p JOIN p.applicableProducts pr " +
+           "WHERE p.isActive = true AND p.endDate >= :now")
+    List<Object[]> findUnexpiredProductLinks(@Param("now") LocalDateTime now);
 }
 
 
@@ -0,0 +1,52 @@
+package com.iuh.printshop.printshop_be.repository;
+
+import com.iuh.printshop.printshop_be.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    @Query("SELECT r FROM RefreshToken r JOIN FETCH r.user WHERE r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHashWithUser(@Param("tokenHash") String tokenHash);
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Chỉ một request đổi được token ACTIVE: request đồng thời thứ hai nhận 0 và bị coi là dùng lại
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.status = :rotated, r.rotatedAt = :now WHERE r.id = :id AND r.status = :active")
+    int markRotated(@Param("id") Long id,
+                    @Param("active") RefreshToken.Status active,
+                    @Param("rotated") RefreshToken.Status rotated,
+                    @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.status = :revoked, r.revokedAt = :now " +
+           "WHERE r.familyId = :familyId AND r.status <> :revoked")
+    int revokeFamily(@Param("familyId") String familyId,
+                     @Param("revoked") RefreshToken.Status revoked,
+                     @Param("now") LocalDateTime now);
+
+    @Query("SELECT DISTINCT r.familyId FROM RefreshToken r WHERE r.user.id = :userId AND r.status = :active")
+    List<String> findActiveFamilies(@Param("userId") Integer userId, @Param("active") RefreshToken.Status active);
+
+    // (familyId, hạn cuối cùng của family) cho các family đã thu hồi và chưa hết hạn
+    @Query("SELECT r.familyId, MAX(r.expiresAt) FROM RefreshToken r " +
+           "WHERE r.status = :revoked AND r.expiresAt > :now GROUP BY r.familyId")
+    List<Object[]> findRevokedFamilies(@Param("revoked") RefreshToken.Status revoked, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt < :before")
+    int deleteExpired(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.user.id = :userId")
+    int deleteByUserId(@Param("userId") Integer userId);
+}
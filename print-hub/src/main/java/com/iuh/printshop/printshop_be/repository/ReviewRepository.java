@@ -1,9 +1,14 @@
 package com.iuh.printshop.printshop_be.repository;
 
+import com.iuh.printshop.printshop_be.dto.review.ReviewResponse;
 import com.iuh.printshop.printshop_be.entity.Review;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,5 +21,27 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     List<Review> findByUserId(Integer userId);
     
     boolean existsByProductIdAndUserId(Integer productId, Integer userId);
+
+    /**
+     * Review kèm tên sản phẩm và người dùng trong một truy vấn (constructor expression, không lazy load).
+     * Mới nhất trước; cursor (createdAt, id) thay cho OFFSET. Tham số null = bỏ qua điều kiện.
+     */
+    @Query("SELECT new com.iuh.printshop.printshop_be.dto.review.ReviewResponse(" +
+           "r.id, p.id, p.name, u.id, u.fullName, u.email, r.rating, r.title, r.content, r.createdAt) " +
+           "FROM Review r JOIN r.product p JOIN r.user u " +
+           "WHERE (:productId IS NULL OR p.id = :productId) " +
+           "AND (:userId IS NULL OR u.id = :userId) " +
+           "AND (:rating IS NULL OR r.rating = :rating) " +
+           "AND (:minRating IS NULL OR r.rating >= :minRating) " +
+           "AND (:cursorCreatedAt IS NULL OR r.createdAt < :cursorCreatedAt " +
+           "     OR (r.createdAt = :cursorCreatedAt AND r.id < :cursorId)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ReviewResponse> findResponses(@Param("productId") Integer productId,
+                                       @Param("userId") Integer userId,
+                                       @Param("rating") Integer rating,
+                                       @Param("minRating") Integer minRating,
+                                       @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                       @Param("cursorId") Long cursorId,
+                                       Limit limit);
 }
 
@@ -6,6 +6,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,4 +18,14 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     
     @Query("SELECT u FROM User u JOIN FETCH u.roles WHERE u.email = :email")
     Optional<User> findByEmailWithRoles(@Param("email") String email);
+
+    // (id, tokenVersion, isActive) của user thay đổi từ thời điểm since, cho TokenVersionRegistry
+    @Query("SELECT u.id, u.tokenVersion, u.isActive FROM User u WHERE u.updatedAt >= :since")
+    List<Object[]> findTokenStatesUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT u.id, u.tokenVersion, u.isActive FROM User u WHERE u.id = :id")
+    List<Object[]> findTokenState(@Param("id") Integer id);
 }
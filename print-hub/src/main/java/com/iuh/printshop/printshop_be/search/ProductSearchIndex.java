@@ -0,0 +1,443 @@
+package com.iuh.printshop.printshop_be.search;
+
+import com.iuh.printshop.printshop_be.dto.product.ProductSearchRequest;
+import com.iuh.printshop.printshop_be.entity.Product;
+import com.iuh.printshop.printshop_be.event.ProductChangedEvent;
+import com.iuh.printshop.printshop_be.event.TaxonomyChangedEvent;
+import com.iuh.printshop.printshop_be.repository.ProductRepository;
+import com.iuh.printshop.printshop_be.specification.ProductCursor;
+import com.iuh.printshop.printshop_be.specification.ProductSortOption;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục đảo ngược (inverted index) trong bộ nhớ cho tìm kiếm sản phẩm theo từ khóa.
+ * Hỗ trợ bỏ dấu tiếng Việt, khớp tiền tố và chấm điểm BM25; được cập nhật tăng dần theo ProductChangedEvent
+ * và TaxonomyChangedEvent.
+ * Khi chỉ mục chưa sẵn sàng, ProductService quay về truy vấn JPA.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float BRAND_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+
+    @Value("${app.search.max-prefix-expansions:64}")
+    private int maxPrefixExpansions;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private IndexState state = new IndexState();
+
+    private volatile boolean ready;
+    private volatile boolean building;
+    private final Set<Integer> pendingIds = ConcurrentHashMap.newKeySet();
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread.ofVirtual().name("product-search-index").start(this::rebuild);
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục (duyệt products theo id, không dùng OFFSET) rồi hoán đổi.
+     */
+    public void rebuild() {
+        building = true;
+        pendingIds.clear();
+        try {
+            long startedAt = System.currentTimeMillis();
+            IndexState fresh = new IndexState();
+            int lastId = 0;
+            List<Product> batch;
+            do {
+                batch = productRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(BUILD_BATCH_SIZE));
+                for (Product product : batch) {
+                    fresh.add(toDocument(product));
+                    lastId = product.getId();
+                }
+            } while (batch.size() == BUILD_BATCH_SIZE);
+
+            lock.writeLock().lock();
+            try {
+                state = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            log.info("Product search index built: {} products in {} ms",
+                    fresh.documents.size(), System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("Failed to build product search index, keyword search falls back to JPA: {}", e.getMessage(), e);
+        } finally {
+            building = false;
+            // Thay đổi xảy ra trong lúc dựng chỉ mục được áp dụng lại sau khi hoán đổi
+            Set<Integer> replay = new HashSet<>(pendingIds);
+            pendingIds.clear();
+            if (!replay.isEmpty()) {
+                reindex(replay);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.STOCK_CHANGED) {
+            return;
+        }
+        if (building) {
+            pendingIds.addAll(event.getProductIds());
+        }
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            lock.writeLock().lock();
+            try {
+                event.getProductIds().forEach(state::remove);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } else {
+            reindex(event.getProductIds());
+        }
+    }
+
+    // Tên danh mục/thương hiệu là một trường được chấm điểm -> đánh chỉ mục lại các sản phẩm liên quan
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaxonomyChanged(TaxonomyChangedEvent event) {
+        if (event.getProductIds().isEmpty()) {
+            return;
+        }
+        if (building) {
+            pendingIds.addAll(event.getProductIds());
+        }
+        reindex(event.getProductIds());
+    }
+
+    /**
+     * Tìm kiếm theo từ khóa với bộ lọc, sắp xếp và phân trang (offset hoặc cursor) trong bộ nhớ.
+     * Trả về Optional.empty() nếu chỉ mục chưa sẵn sàng hoặc từ khóa rỗng.
+     */
+    public Optional<SearchResult> search(ProductSearchRequest request, ProductSortOption sort,
+                                         ProductCursor cursor, int offset, int limit) {
+        List<String> tokens = TextAnalyzer.tokenize(request.getKeyword());
+        if (!ready || tokens.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Comparator<Hit> order = resolveOrder(sort);
+        Hit cursorHit = cursor != null ? toCursorHit(cursor) : null;
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Float> scores = null;
+            for (int i = 0; i < tokens.size(); i++) {
+                Map<Integer, Float> tokenScores = state.score(tokens.get(i), i == tokens.size() - 1, maxPrefixExpansions);
+                scores = scores == null ? tokenScores : intersect(scores, tokenScores);
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+
+            // Giữ top (offset + limit) kết quả bằng heap thay vì sắp xếp toàn bộ
+            int needed = offset + limit;
+            PriorityQueue<Hit> top = new PriorityQueue<>(Math.max(1, Math.min(needed, scores.size())), order.reversed());
+            long total = 0;
+            for (Map.Entry<Integer, Float> entry : scores.entrySet()) {
+                IndexedProduct doc = state.documents.get(entry.getKey());
+                if (!matchesFilters(doc, request)) {
+                    continue;
+                }
+                total++;
+                Hit hit = new Hit(doc, entry.getValue());
+                if (cursorHit != null && order.compare(hit, cursorHit) <= 0) {
+                    continue;
+                }
+                top.offer(hit);
+                if (top.size() > needed) {
+                    top.poll();
+                }
+            }
+
+            List<Hit> ordered = new ArrayList<>(top);
+            ordered.sort(order);
+            List<ScoredProduct> products = new ArrayList<>();
+            for (int i = offset; i < ordered.size(); i++) {
+                Hit hit = ordered.get(i);
+                products.add(new ScoredProduct(hit.doc().id(), sortValue(hit, sort)));
+            }
+            return Optional.of(new SearchResult(products, total));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Top-k sản phẩm liên quan nhất tới một câu hỏi tự do (ngữ cảnh cho trợ lý AI).
+     * Khác search(): điểm các từ được cộng dồn (OR thay vì AND) và không khớp tiền tố, để câu hỏi dài vẫn có kết quả;
+     * từ phổ biến ("may", "in") tự có trọng số thấp nhờ IDF. Rỗng nếu chỉ mục chưa sẵn sàng hoặc không từ nào khớp.
+     */
+    public List<Integer> retrieve(String text, int k) {
+        List<String> tokens = TextAnalyzer.tokenize(text);
+        if (!ready || tokens.isEmpty() || k <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Float> scores = new HashMap<>();
+            for (String token : new HashSet<>(tokens)) {
+                state.score(token, false, 0).forEach((id, score) -> scores.merge(id, score, Float::sum));
+            }
+
+            PriorityQueue<Map.Entry<Integer, Float>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<Integer, Float> entry : scores.entrySet()) {
+                top.offer(entry);
+                if (top.size() > k) {
+                    top.poll();
+                }
+            }
+            List<Map.Entry<Integer, Float>> ordered = new ArrayList<>(top);
+            ordered.sort(Map.Entry.<Integer, Float>comparingByValue().reversed());
+            return ordered.stream().map(Map.Entry::getKey).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void reindex(Collection<Integer> productIds) {
+        List<Product> products = productRepository.findAllById(productIds);
+        Set<Integer> missing = new HashSet<>(productIds);
+        lock.writeLock().lock();
+        try {
+            for (Product product : products) {
+                state.add(toDocument(product));
+                missing.remove(product.getId());
+            }
+            missing.forEach(state::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean matchesFilters(IndexedProduct doc, ProductSearchRequest request) {
+        if (request.getCategoryId() != null && !request.getCategoryId().equals(doc.categoryId())) {
+            return false;
+        }
+        if (request.getBrandId() != null && !request.getBrandId().equals(doc.brandId())) {
+            return false;
+        }
+        if (request.getMinPrice() != null && doc.price().compareTo(request.getMinPrice()) < 0) {
+            return false;
+        }
+        return request.getMaxPrice() == null || doc.price().compareTo(request.getMaxPrice()) <= 0;
+    }
+
+    private static Map<Integer, Float> intersect(Map<Integer, Float> left, Map<Integer, Float> right) {
+        Map<Integer, Float> smaller = left.size() <= right.size() ? left : right;
+        Map<Integer, Float> larger = smaller == left ? right : left;
+        Map<Integer, Float> result = new HashMap<>();
+        for (Map.Entry<Integer, Float> entry : smaller.entrySet()) {
+            Float other = larger.get(entry.getKey());
+            if (other != null) {
+                result.put(entry.getKey(), entry.getValue() + other);
+            }
+        }
+        return result;
+    }
+
+    // Cùng thứ tự với ProductSortOption.toSort(): khóa sắp xếp rồi id theo cùng chiều
+    private static Comparator<Hit> resolveOrder(ProductSortOption sort) {
+        Comparator<Hit> key = switch (sort) {
+            case PRICE_ASC, PRICE_DESC -> Comparator.comparing(hit -> hit.doc().price());
+            case NAME_ASC, NAME_DESC -> Comparator.comparing(hit -> hit.doc().sortName());
+            case NEWEST, OLDEST -> Comparator.comparing(hit -> hit.doc().createdAt());
+            case RATING_DESC -> Comparator.comparingDouble(hit -> hit.doc().rating());
+            case RELEVANCE -> Comparator.comparingDouble(Hit::score);
+        };
+        Comparator<Hit> order = key.thenComparing(hit -> hit.doc().id());
+        return sort.getDirection() == Sort.Direction.ASC ? order : order.reversed();
+    }
+
+    private static String sortValue(Hit hit, ProductSortOption sort) {
+        return switch (sort) {
+            case PRICE_ASC, PRICE_DESC -> hit.doc().price().toPlainString();
+            case NAME_ASC, NAME_DESC -> hit.doc().sortName();
+            case NEWEST, OLDEST -> hit.doc().createdAt().toString();
+            case RATING_DESC -> Double.toString(hit.doc().rating());
+            case RELEVANCE -> Float.toString(hit.score());
+        };
+    }
+
+    // Bản ghi giả mang giá trị của cursor để so sánh bằng cùng comparator với kết quả thật
+    private static Hit toCursorHit(ProductCursor cursor) {
+        ProductSortOption sort = cursor.sort();
+        Object value = sort.parseValue(cursor.value());
+        IndexedProduct doc = new IndexedProduct(
+                cursor.id(),
+                null,
+                null,
+                value instanceof BigDecimal price ? price : BigDecimal.ZERO,
+                sort == ProductSortOption.NAME_ASC || sort == ProductSortOption.NAME_DESC
+                        ? TextAnalyzer.fold(cursor.value()) : "",
+                value instanceof LocalDateTime createdAt ? createdAt : LocalDateTime.MIN,
+                value instanceof Double rating ? rating : 0.0,
+                Map.of(),
+                0);
+        return new Hit(doc, value instanceof Float score ? score : 0);
+    }
+
+    private static IndexedProduct toDocument(Product product) {
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, product.getName(), NAME_WEIGHT);
+        addField(terms, product.getBrand() != null ? product.getBrand().getName() : null, BRAND_WEIGHT);
+        addField(terms, product.getCategory() != null ? product.getCategory().getName() : null, CATEGORY_WEIGHT);
+        addField(terms, product.getDescription(), DESCRIPTION_WEIGHT);
+
+        float length = 0;
+        for (float weight : terms.values()) {
+            length += weight;
+        }
+        return new IndexedProduct(
+                product.getId(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getBrand() != null ? product.getBrand().getId() : null,
+                product.getPrice() != null ? product.getPrice() : BigDecimal.ZERO,
+                TextAnalyzer.fold(product.getName()),
+                product.getCreatedAt() != null ? product.getCreatedAt() : LocalDateTime.MIN,
+                ProductSortOption.ratingOf(product),
+                terms,
+                length);
+    }
+
+    private static void addField(Map<String, Float> terms, String text, float weight) {
+        for (String token : TextAnalyzer.tokenize(text)) {
+            terms.merge(token, weight, Float::sum);
+        }
+    }
+
+    public record SearchResult(List<ScoredProduct> products, long totalElements) {
+    }
+
+    public record ScoredProduct(Integer productId, String sortValue) {
+    }
+
+    private record IndexedProduct(
+            Integer id,
+            Integer categoryId,
+            Integer brandId,
+            BigDecimal price,
+            String sortName,
+            LocalDateTime createdAt,
+            double rating,
+            Map<String, Float> terms,
+            float length) {
+    }
+
+    private record Hit(IndexedProduct doc, float score) {
+    }
+
+    /**
+     * Dữ liệu chỉ mục; mọi truy cập đều nằm trong khóa đọc/ghi của ProductSearchIndex.
+     */
+    private static final class IndexState {
+        private final TreeMap<String, Map<Integer, Float>> postings = new TreeMap<>();
+        private final Map<Integer, IndexedProduct> documents = new HashMap<>();
+        private double totalLength;
+
+        void add(IndexedProduct doc) {
+            remove(doc.id());
+            for (Map.Entry<String, Float> term : doc.terms().entrySet()) {
+                postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(doc.id(), term.getValue());
+            }
+            documents.put(doc.id(), doc);
+            totalLength += doc.length();
+        }
+
+        void remove(Integer productId) {
+            IndexedProduct doc = documents.remove(productId);
+            if (doc == null) {
+                return;
+            }
+            for (String term : doc.terms().keySet()) {
+                Map<Integer, Float> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(productId);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= doc.length();
+        }
+
+        /**
+         * Điểm BM25 của một từ; từ cuối (đang gõ dở) hoặc từ không có trong chỉ mục được khớp theo tiền tố.
+         */
+        Map<Integer, Float> score(String token, boolean allowPrefix, int maxExpansions) {
+            Map<Integer, Float> scores = new HashMap<>();
+            Map<Integer, Float> exact = postings.get(token);
+            if (exact != null) {
+                accumulate(scores, exact, 1.0f);
+            }
+            if (allowPrefix || exact == null) {
+                int expansions = 0;
+                for (Map.Entry<String, Map<Integer, Float>> entry
+                        : postings.subMap(token, false, token + Character.MAX_VALUE, false).entrySet()) {
+                    if (expansions++ >= maxExpansions) {
+                        break;
+                    }
+                    accumulate(scores, entry.getValue(), PREFIX_MATCH_FACTOR);
+                }
+            }
+            return scores;
+        }
+
+        private void accumulate(Map<Integer, Float> scores, Map<Integer, Float> posting, float factor) {
+            int documentCount = documents.size();
+            double averageLength = documentCount == 0 ? 1 : totalLength / documentCount;
+            double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+            for (Map.Entry<Integer, Float> entry : posting.entrySet()) {
+                IndexedProduct doc = documents.get(entry.getKey());
+                float tf = entry.getValue();
+                double norm = tf + K1 * (1 - B + B * doc.length() / averageLength);
+                float score = (float) (factor * idf * (tf * (K1 + 1)) / norm);
+                // Một từ chỉ tính điểm cao nhất trong các biến thể khớp
+                scores.merge(entry.getKey(), score, Math::max);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.iuh.printshop.printshop_be.security;
 
+import com.iuh.printshop.printshop_be.cache.AuthCache;
 import com.iuh.printshop.printshop_be.service.JwtService;
 import com.iuh.printshop.printshop_be.service.UserService;
 import jakarta.servlet.FilterChain;
@@ -23,6 +24,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserService userService;
+    private final AuthCache authCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
 
     // Danh sách các đường dẫn public sẽ được bỏ qua bởi filter này
     private final List<String> publicPaths = Arrays.asList(
@@ -66,12 +69,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             final String jwt = authHeader.substring(7);
-            final String userEmail = jwtService.extractUsername(jwt);
+            // Parse + kiểm tra chữ ký một lần cho mỗi token, các request sau chỉ tra cache theo hash
+            final VerifiedToken verified = authCache.getVerifiedToken(jwt, jwtService::verify);
+            final String userEmail = verified.subject();
 
-            if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userService.loadUserByUsername(userEmail);
+            if (userEmail != null && verified.hasClaims()
+                    && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Token mang roles: dựng Authentication từ claims, chỉ kiểm tra version trong bộ nhớ
+                if (tokenVersionRegistry.isCurrent(verified.userId(), verified.version())) {
+                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                            userEmail,
+                            null,
+                            verified.authorities()
+                    );
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                }
+            } else if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Token cũ chỉ có subject: tải user (qua cache) để lấy roles
+                UserDetails userDetails = authCache.getPrincipal(userEmail, userService::loadUserByUsername);
 
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (userEmail.equals(userDetails.getUsername())) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
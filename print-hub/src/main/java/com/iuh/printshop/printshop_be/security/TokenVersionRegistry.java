@@ -0,0 +1,117 @@
+package com.iuh.printshop.printshop_be.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iuh.printshop.printshop_be.event.UserChangedEvent;
+import com.iuh.printshop.printshop_be.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bản sao trong bộ nhớ của (token_version, is_active) theo userId, dùng để thu hồi token mang claims
+ * mà không truy vấn DB ở mỗi request.
+ * token_version tăng ở mọi thay đổi roles/mật khẩu/trạng thái, nên token cũ bị từ chối ngay trên instance xử lý thay đổi
+ * (qua UserChangedEvent) và trên các instance khác sau tối đa một chu kỳ làm mới.
+ * Chỉ giữ user có request gần đây (tải lười khi gặp lần đầu, bỏ khi không dùng): kích thước theo số phiên hoạt động,
+ * không theo bảng users. Mỗi chu kỳ chỉ đọc các user có updated_at mới và kiểm tra user đang giữ còn tồn tại.
+ * Version chỉ tăng: khi gộp dữ liệu làm mới với cập nhật đồng thời luôn giữ version lớn hơn.
+ */
+@Slf4j
+@Component
+public class TokenVersionRegistry {
+
+    // User đã bị xóa: mọi version đều không hợp lệ
+    private static final TokenState DELETED = new TokenState(Integer.MAX_VALUE, false);
+    // Lùi mốc đồng bộ: bù lệch đồng hồ giữa các instance và transaction commit sau thời điểm ghi updated_at
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+    private static final int EXISTS_CHUNK_SIZE = 1000;
+
+    private final UserRepository userRepository;
+    private final Cache<Integer, TokenState> states;
+
+    private volatile LocalDateTime syncedAt = LocalDateTime.now();
+
+    public TokenVersionRegistry(
+            UserRepository userRepository,
+            @Value("${jwt.claims.version-cache-max-size:100000}") long maxSize,
+            @Value("${jwt.claims.version-idle-seconds:3600}") long idleSeconds) {
+        this.userRepository = userRepository;
+        this.states = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.claims.version-refresh-ms:30000}",
+            initialDelayString = "${jwt.claims.version-refresh-ms:30000}")
+    public void refresh() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<Object[]> rows = userRepository.findTokenStatesUpdatedSince(syncedAt.minus(SYNC_OVERLAP));
+        for (Object[] row : rows) {
+            TokenState loaded = new TokenState((Integer) row[1], Boolean.TRUE.equals(row[2]));
+            // User chưa được giữ sẽ được tải khi có request
+            states.asMap().computeIfPresent((Integer) row[0], (userId, current) -> newer(current, loaded));
+        }
+        int deleted = markDeleted();
+        syncedAt = startedAt;
+        log.debug("Token version registry refreshed: {} changed, {} deleted, {} cached",
+                rows.size(), deleted, states.estimatedSize());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUserId() != null) {
+            states.put(event.getUserId(), load(event.getUserId()));
+        }
+    }
+
+    /**
+     * Token có version đúng bằng version hiện tại của một user đang hoạt động.
+     */
+    public boolean isCurrent(Integer userId, Integer version) {
+        TokenState state = states.get(userId, this::load);
+        return state.active() && state.version() == version;
+    }
+
+    // User bị xóa không còn dòng để đọc theo updated_at: kiểm tra sự tồn tại của các user đang giữ
+    private int markDeleted() {
+        List<Integer> cached = new ArrayList<>(states.asMap().keySet());
+        int deleted = 0;
+        for (int from = 0; from < cached.size(); from += EXISTS_CHUNK_SIZE) {
+            List<Integer> chunk = cached.subList(from, Math.min(from + EXISTS_CHUNK_SIZE, cached.size()));
+            Set<Integer> existing = new HashSet<>(userRepository.findExistingIds(chunk));
+            for (Integer userId : chunk) {
+                if (!existing.contains(userId) && states.asMap().replace(userId, DELETED) != null) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private TokenState load(Integer userId) {
+        List<Object[]> rows = userRepository.findTokenState(userId);
+        if (rows.isEmpty()) {
+            return DELETED;
+        }
+        Object[] row = rows.get(0);
+        return new TokenState((Integer) row[1], Boolean.TRUE.equals(row[2]));
+    }
+
+    private static TokenState newer(TokenState current, TokenState loaded) {
+        return loaded.version() >= current.version() ? loaded : current;
+    }
+
+    private record TokenState(int version, boolean active) {
+    }
+}
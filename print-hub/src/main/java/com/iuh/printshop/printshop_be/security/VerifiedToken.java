@@ -0,0 +1,25 @@
+package com.iuh.printshop.printshop_be.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+
+/**
+ * Nội dung của một access token đã kiểm tra chữ ký.
+ * userId/version/authorities chỉ có với token mang claims (jwt.claims.enabled); token cũ chỉ có subject.
+ */
+public record VerifiedToken(
+        String subject,
+        long expiresAtMillis,
+        Integer userId,
+        Integer version,
+        List<GrantedAuthority> authorities) {
+
+    public boolean hasClaims() {
+        return userId != null && version != null && authorities != null;
+    }
+
+    public boolean isExpired() {
+        return expiresAtMillis <= System.currentTimeMillis();
+    }
+}
@@ -3,13 +3,19 @@ package com.iuh.printshop.printshop_be.service;
 import com.iuh.printshop.printshop_be.dto.ai.ChatResponse;
 import com.iuh.printshop.printshop_be.entity.Product;
 import com.iuh.printshop.printshop_be.repository.ProductRepository;
+import com.iuh.printshop.printshop_be.search.ProductSearchIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -19,43 +25,51 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AiService {
 
+    private static final Pattern PRODUCT_ID_PATTERN = Pattern.compile("\\[PRODUCT_ID:(\\d+)\\]");
+    private static final String SYSTEM_PROMPT = "Bạn là một chuyên gia tư vấn máy in và máy scan chuyên nghiệp. " +
+            "Nhiệm vụ của bạn:\n" +
+            "1. TRẢ LỜI TRỰC TIẾP câu hỏi của khách hàng dựa trên danh sách sản phẩm có sẵn\n" +
+            "2. Đưa ra các sản phẩm phù hợp nhất với nhu cầu\n" +
+            "3. Trong câu trả lời, nếu đề cập đến sản phẩm cụ thể, hãy ghi rõ ID sản phẩm trong format: [PRODUCT_ID:xxx]\n" +
+            "4. Trả lời bằng tiếng Việt, thân thiện và chuyên nghiệp\n" +
+            "5. Ở cuối câu trả lời, nếu cần thêm thông tin để tư vấn tốt hơn, bạn có thể đặt câu hỏi (nhưng không bắt buộc)\n" +
+            "6. Ưu tiên trả lời trực tiếp và đưa ra sản phẩm gợi ý trước, câu hỏi tư vấn để sau";
+    // Mô tả dài được cắt bớt để kích thước prompt không phụ thuộc vào nội dung mô tả
+    private static final int MAX_DESCRIPTION_LENGTH = 300;
+
     private final ChatClient chatClient;
     private final ProductRepository productRepository;
+    private final ProductSearchIndex productSearchIndex;
+
+    // Số sản phẩm liên quan nhất đưa vào prompt (thay vì toàn bộ catalog)
+    @Value("${app.ai.context-products:8}")
+    private int contextProducts;
 
     /**
      * Xử lý input từ người dùng, phân tích và trả về response + sản phẩm gợi ý
      */
     public ChatResponse processUserInput(String input) {
         try {
-            // 1. Lấy tất cả sản phẩm từ database
-            List<Product> allProducts = productRepository.findAll();
-
-            // 2. Xây dựng context về sản phẩm
-            String productContext = buildProductContext(allProducts);
-
-            // 3. Xây dựng system prompt
-            String systemPrompt = "Bạn là một chuyên gia tư vấn máy in và máy scan chuyên nghiệp. " +
-                    "Nhiệm vụ của bạn:\n" +
-                    "1. TRẢ LỜI TRỰC TIẾP câu hỏi của khách hàng dựa trên danh sách sản phẩm có sẵn\n" +
-                    "2. Đưa ra các sản phẩm phù hợp nhất với nhu cầu\n" +
-                    "3. Trong câu trả lời, nếu đề cập đến sản phẩm cụ thể, hãy ghi rõ ID sản phẩm trong format: [PRODUCT_ID:xxx]\n" +
-                    "4. Trả lời bằng tiếng Việt, thân thiện và chuyên nghiệp\n" +
-                    "5. Ở cuối câu trả lời, nếu cần thêm thông tin để tư vấn tốt hơn, bạn có thể đặt câu hỏi (nhưng không bắt buộc)\n" +
-                    "6. Ưu tiên trả lời trực tiếp và đưa ra sản phẩm gợi ý trước, câu hỏi tư vấn để sau";
-
-            // 4. Gọi AI với context
-            String fullPrompt = systemPrompt + "\n\n" + productContext + "\n\n" +
-                    "CÂU HỎI CỦA KHÁCH HÀNG: " + input + "\n\n" +
-                    "Hãy phân tích và đưa ra lời khuyên phù hợp cùng với các sản phẩm gợi ý.";
+            // 1. Chọn top-k sản phẩm liên quan tới câu hỏi từ chỉ mục BM25 (prompt không lớn dần theo catalog)
+            long startedAt = System.nanoTime();
+            List<Product> products = retrieveProducts(input);
+            long retrievalMs = (System.nanoTime() - startedAt) / 1_000_000;
 
+            // 2. Xây dựng prompt: system prompt + context sản phẩm + câu hỏi
+            String fullPrompt = buildPrompt(input, products);
+
+            // 3. Gọi AI với context
+            long modelStartedAt = System.nanoTime();
             String aiResponse = chatClient
                     .prompt()
                     .user(fullPrompt)
                     .call()
                     .content();
+            log.debug("AI chat: {} context products, prompt {} chars, retrieval {} ms, model {} ms",
+                    products.size(), fullPrompt.length(), retrievalMs, (System.nanoTime() - modelStartedAt) / 1_000_000);
 
-            // 5. Parse response để lấy product IDs
-            List<Integer> recommendedIds = extractProductIds(aiResponse, allProducts);
+            // 4. Parse response để lấy product IDs
+            List<Integer> recommendedIds = extractProductIds(aiResponse, products);
 
             return ChatResponse.builder()
                     .reply(aiResponse)
@@ -76,16 +90,46 @@ public class AiService {
         }
     }
 
+    /**
+     * Sản phẩm đưa vào prompt, theo thứ tự liên quan giảm dần. Câu hỏi không khớp sản phẩm nào
+     * (hoặc chỉ mục chưa sẵn sàng) thì dùng một nhóm sản phẩm mặc định cùng kích thước.
+     */
+    private List<Product> retrieveProducts(String input) {
+        List<Integer> ids = productSearchIndex.retrieve(input, contextProducts);
+        if (ids.isEmpty()) {
+            ids = productRepository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(contextProducts)).stream()
+                    .map(Product::getId)
+                    .toList();
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Integer> rank = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            rank.put(ids.get(i), i);
+        }
+        return productRepository.findWithCategoryAndBrandByIdIn(ids).stream()
+                .sorted(Comparator.comparing(product -> rank.get(product.getId())))
+                .toList();
+    }
+
+    static String buildPrompt(String input, List<Product> products) {
+        return SYSTEM_PROMPT + "\n\n" + buildProductContext(products) + "\n\n" +
+                "CÂU HỎI CỦA KHÁCH HÀNG: " + input + "\n\n" +
+                "Hãy phân tích và đưa ra lời khuyên phù hợp cùng với các sản phẩm gợi ý.";
+    }
+
     /**
      * Xây dựng context string từ danh sách sản phẩm
      */
-    private String buildProductContext(List<Product> products) {
+    private static String buildProductContext(List<Product> products) {
         if (products.isEmpty()) {
             return "Hiện tại không có sản phẩm nào trong hệ thống.";
         }
 
         StringBuilder context = new StringBuilder();
-        context.append("DANH SÁCH SẢN PHẨM HIỆN CÓ:\n\n");
+        context.append("CÁC SẢN PHẨM LIÊN QUAN NHẤT TỚI CÂU HỎI:\n\n");
 
         for (Product product : products) {
             context.append(String.format(
@@ -99,7 +143,7 @@ public class AiService {
                             "---\n",
                     product.getId(),
                     product.getName(),
-                    product.getDescription() != null ? product.getDescription() : "Không có mô tả",
+                    product.getDescription() != null ? truncate(product.getDescription()) : "Không có mô tả",
                     product.getPrice().toString(),
                     product.getCategory() != null ? product.getCategory().getName() : "N/A",
                     product.getBrand() != null ? product.getBrand().getName() : "N/A",
@@ -110,16 +154,19 @@ public class AiService {
         return context.toString();
     }
 
+    private static String truncate(String text) {
+        return text.length() <= MAX_DESCRIPTION_LENGTH ? text : text.substring(0, MAX_DESCRIPTION_LENGTH) + "...";
+    }
+
     /**
      * Extract product IDs từ AI response
      * Format: [PRODUCT_ID:123] hoặc tìm tên sản phẩm trong response
      */
-    private List<Integer> extractProductIds(String aiResponse, List<Product> allProducts) {
+    private List<Integer> extractProductIds(String aiResponse, List<Product> products) {
         List<Integer> ids = new ArrayList<>();
 
         // Pattern 1: [PRODUCT_ID:123]
-        Pattern pattern = Pattern.compile("\\[PRODUCT_ID:(\\d+)\\]");
-        Matcher matcher = pattern.matcher(aiResponse);
+        Matcher matcher = PRODUCT_ID_PATTERN.matcher(aiResponse);
         while (matcher.find()) {
             try {
                 int id = Integer.parseInt(matcher.group(1));
@@ -132,7 +179,7 @@ public class AiService {
         }
 
         // Pattern 2: Tìm tên sản phẩm trong response và match với database
-        for (Product product : allProducts) {
+        for (Product product : products) {
             if (aiResponse.contains(product.getName()) && !ids.contains(product.getId())) {
                 ids.add(product.getId());
             }
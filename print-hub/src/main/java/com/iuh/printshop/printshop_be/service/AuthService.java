@@ -3,13 +3,17 @@ package com.iuh.printshop.printshop_be.service;
 import com.iuh.printshop.printshop_be.dto.auth.AuthResponse;
 import com.iuh.printshop.printshop_be.dto.auth.LoginRequest;
 import com.iuh.printshop.printshop_be.dto.auth.RegisterRequest;
-import com.iuh.printshop.printshop_be.entity.OtpVerification;
 import com.iuh.printshop.printshop_be.entity.Role;
 import com.iuh.printshop.printshop_be.entity.User;
-import com.iuh.printshop.printshop_be.repository.OtpVerificationRepository;
+import com.iuh.printshop.printshop_be.event.UserChangedEvent;
 import com.iuh.printshop.printshop_be.repository.RoleRepository;
 import com.iuh.printshop.printshop_be.repository.UserRepository;
+import com.iuh.printshop.printshop_be.service.otp.OtpEntry;
+import com.iuh.printshop.printshop_be.service.otp.OtpRateLimiter;
+import com.iuh.printshop.printshop_be.service.otp.OtpStore;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -18,25 +22,32 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.util.HashSet;
-import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuthService {
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final OtpVerificationRepository otpVerificationRepository;
+    private final OtpStore otpStore;
+    private final OtpRateLimiter otpRateLimiter;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
     private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RefreshTokenService refreshTokenService;
+    private final CartService cartService;
     
-    private final Random random = new Random();
+    private final SecureRandom random = new SecureRandom();
     private static final int OTP_EXPIRATION_MINUTES = 10;
     
     private String generateOtpCode() {
@@ -44,18 +55,8 @@ public class AuthService {
     }
     
     private void saveOtpVerification(String email, String otpCode) {
-        // Invalidate all previous OTPs for this email
-        otpVerificationRepository.invalidateAllOtpsForEmail(email);
-        
-        // Create new OTP verification
-        OtpVerification otpVerification = OtpVerification.builder()
-                .email(email)
-                .otpCode(otpCode)
-                .expiresAt(LocalDateTime.now().plusMinutes(OTP_EXPIRATION_MINUTES))
-                .isUsed(false)
-                .build();
-        
-        otpVerificationRepository.save(otpVerification);
+        // Mã mới thay thế mã cũ của email này
+        otpStore.save(email, otpCode, LocalDateTime.now().plusMinutes(OTP_EXPIRATION_MINUTES));
     }
 
     @Transactional
@@ -83,7 +84,7 @@ public class AuthService {
 
         User savedUser = userRepository.save(user);
 
-        // Generate OTP, lưu vào database và gửi email
+        // Generate OTP, lưu vào database và xếp email vào outbox (gửi sau khi commit)
         String otpCode = generateOtpCode();
         saveOtpVerification(request.getEmail(), otpCode);
         emailService.sendVerificationEmail(request.getEmail(), otpCode);
@@ -101,7 +102,7 @@ public class AuthService {
         );
     }
 
-    @Transactional(readOnly = true)
+    @Transactional
     public AuthResponse login(LoginRequest request) {
         try {
             // Authenticate user
@@ -122,10 +123,10 @@ public class AuthService {
                 throw new RuntimeException("Tài khoản chưa được kích hoạt. Vui lòng xác thực email trước.");
             }
 
-            // Generate JWT token
-            String token = jwtService.generateToken(userDetails);
+            // Generate JWT token (từ user vừa tải: roles và token version mới nhất)
+            String token = jwtService.generateToken(user);
 
-            return new AuthResponse(
+            AuthResponse response = new AuthResponse(
                     token,
                     user.getId(),
                     user.getEmail(),
@@ -136,6 +137,17 @@ public class AuthService {
                             .map(Role::getName)
                             .collect(Collectors.toSet())
             );
+            response.setRefreshToken(refreshTokenService.issue(user));
+
+            // Gộp giỏ hàng khách vào giỏ của tài khoản (giỏ khách chưa từng được ghi DB)
+            if (request.getCartToken() != null && !request.getCartToken().isBlank()) {
+                try {
+                    cartService.mergeGuestCart(request.getCartToken(), user.getId());
+                } catch (Exception e) {
+                    log.warn("Guest cart merge failed for user {}", user.getId(), e);
+                }
+            }
+            return response;
         } catch (Exception e) {
             // Log the actual error for debugging
             System.err.println("Login error: " + e.getMessage());
@@ -143,14 +155,23 @@ public class AuthService {
         }
     }
 
-    @Transactional(readOnly = true)
-    public AuthResponse refreshToken(String email) {
-        User user = userRepository.findByEmailWithRoles(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    /**
+     * Đổi refresh token lấy access token mới (không cần BCrypt); refresh token cũ hết hiệu lực.
+     */
+    public AuthResponse refreshToken(String refreshToken) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+        switch (rotation.result()) {
+            case INVALID -> throw new RuntimeException("Refresh token không hợp lệ");
+            case EXPIRED -> throw new RuntimeException("Refresh token đã hết hạn. Vui lòng đăng nhập lại.");
+            case REUSED -> throw new RuntimeException("Refresh token đã được sử dụng. Vui lòng đăng nhập lại.");
+            default -> {
+            }
+        }
 
+        User user = rotation.user();
         String token = jwtService.generateToken(user);
 
-        return new AuthResponse(
+        AuthResponse response = new AuthResponse(
                 token,
                 user.getId(),
                 user.getEmail(),
@@ -161,6 +182,12 @@ public class AuthService {
                         .map(Role::getName)
                         .collect(Collectors.toSet())
         );
+        response.setRefreshToken(rotation.refreshToken());
+        return response;
+    }
+
+    public void logout(String refreshToken) {
+        refreshTokenService.revoke(refreshToken);
     }
 
     @Transactional
@@ -170,7 +197,12 @@ public class AuthService {
     }
     
     @Transactional
-    public boolean verifyEmailWithOtp(String email, String otpCode) {
+    public boolean verifyEmailWithOtp(String email, String otpCode, String clientIp) {
+        // Giới hạn số lần thử theo email và IP trước mọi truy vấn: chặn dò mã 6 chữ số
+        if (!otpRateLimiter.tryVerify(email, clientIp)) {
+            throw new RuntimeException("Bạn đã thử quá nhiều lần. Vui lòng thử lại sau.");
+        }
+
         // Find user by email
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng với email: " + email));
@@ -185,28 +217,29 @@ public class AuthService {
             throw new RuntimeException("Mã OTP không hợp lệ. Mã OTP phải có 6 chữ số.");
         }
 
-        // Find OTP verification
-        OtpVerification otpVerification = otpVerificationRepository
-                .findByEmailAndOtpCodeAndIsUsedFalse(email, otpCode)
+        // Tra mã hiệu lực theo email rồi so sánh thời gian hằng định (không lộ số ký tự khớp qua thời gian phản hồi)
+        OtpEntry otp = otpStore.find(email)
+                .filter(entry -> MessageDigest.isEqual(
+                        entry.otpCode().getBytes(StandardCharsets.UTF_8),
+                        otpCode.getBytes(StandardCharsets.UTF_8)))
                 .orElseThrow(() -> new RuntimeException("Mã OTP không đúng hoặc đã được sử dụng"));
 
         // Check if OTP is expired
-        if (otpVerification.isExpired()) {
+        if (otp.isExpired(LocalDateTime.now())) {
             throw new RuntimeException("Mã OTP đã hết hạn. Vui lòng yêu cầu mã mới.");
         }
 
-        // Check if OTP is already used
-        if (otpVerification.getIsUsed()) {
+        // Mark OTP as used: chỉ một request dùng được mỗi mã
+        if (!otpStore.consume(otp)) {
             throw new RuntimeException("Mã OTP đã được sử dụng");
         }
-
-        // Mark OTP as used
-        otpVerification.setIsUsed(true);
-        otpVerificationRepository.save(otpVerification);
+        otpRateLimiter.reset(email);
 
         // Activate user account
         user.setIsActive(true);
+        user.bumpTokenVersion();
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), user.getEmail()));
 
         return true;
     }
@@ -220,7 +253,11 @@ public class AuthService {
             throw new RuntimeException("Tài khoản đã được kích hoạt");
         }
 
-        // Generate new OTP, save to database and send email
+        if (!otpRateLimiter.trySend(email)) {
+            throw new RuntimeException("Bạn đã yêu cầu gửi lại mã quá nhiều lần. Vui lòng thử lại sau.");
+        }
+
+        // Generate new OTP, save to OTP store and send email
         String otpCode = generateOtpCode();
         saveOtpVerification(email, otpCode);
         emailService.sendVerificationEmail(email, otpCode);
@@ -1,9 +1,13 @@
 package com.iuh.printshop.printshop_be.service;
 
 import com.iuh.printshop.printshop_be.entity.Brand;
+import com.iuh.printshop.printshop_be.event.TaxonomyChangedEvent;
 import com.iuh.printshop.printshop_be.repository.BrandRepository;
+import com.iuh.printshop.printshop_be.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,6 +16,8 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class BrandService {
     private final BrandRepository brandRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Brand createBrand(Brand brand) {
         return brandRepository.save(brand);
@@ -25,17 +31,23 @@ public class BrandService {
         return brandRepository.findById(id);
     }
 
+    @Transactional
     public Optional<Brand> updateBrand(Integer id, Brand updatedBrand) {
         return brandRepository.findById(id).map(brand -> {
             brand.setName(updatedBrand.getName());
             brand.setDescription(updatedBrand.getDescription());
-            return brandRepository.save(brand);
+            Brand saved = brandRepository.save(brand);
+            eventPublisher.publishEvent(TaxonomyChangedEvent.brand(id, productRepository.findIdsByBrandId(id)));
+            return saved;
         });
     }
 
+    @Transactional
     public boolean deleteBrand(Integer id) {
         if (brandRepository.existsById(id)) {
+            List<Integer> productIds = productRepository.findIdsByBrandId(id);
             brandRepository.deleteById(id);
+            eventPublisher.publishEvent(TaxonomyChangedEvent.brand(id, productIds));
             return true;
         }
         return false;
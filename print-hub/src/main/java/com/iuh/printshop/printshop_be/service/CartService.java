@@ -1,6 +1,7 @@
 package com.iuh.printshop.printshop_be.service;
 
 import com.iuh.printshop.printshop_be.dto.cart.AddToCartRequest;
+import com.iuh.printshop.printshop_be.dto.cart.CartBatchRequest;
 import com.iuh.printshop.printshop_be.dto.cart.CartResponse;
 import com.iuh.printshop.printshop_be.dto.cart.UpdateCartItemRequest;
 
@@ -10,5 +11,29 @@ public interface CartService {
     CartResponse updateItem(Integer userId, Integer itemId, UpdateCartItemRequest req);
     CartResponse removeItem(Integer userId, Integer itemId);
     CartResponse clear(Integer userId);
+
+    /**
+     * Áp dụng nhiều thao tác thêm/sửa/xóa theo thứ tự: tất cả hoặc không thao tác nào (một lần tra sản phẩm).
+     */
+    CartResponse applyBatch(Integer userId, CartBatchRequest req);
+
+    /**
+     * Thêm toàn bộ sản phẩm của một đơn hàng cũ của user đang đăng nhập vào giỏ của họ (theo giá hiện tại).
+     */
+    CartResponse reorder(Long orderId);
+
+    // Giỏ hàng khách vãng lai (theo cart token, chỉ trong bộ nhớ)
+    CartResponse createGuestCart();
+    CartResponse getGuestCart(String token);
+    CartResponse addGuestItem(String token, AddToCartRequest req);
+    CartResponse updateGuestItem(String token, Integer itemId, UpdateCartItemRequest req);
+    CartResponse removeGuestItem(String token, Integer itemId);
+    CartResponse applyGuestBatch(String token, CartBatchRequest req);
+    void discardGuestCart(String token);
+
+    /**
+     * Gộp giỏ khách vào giỏ của user (cộng số lượng sản phẩm trùng) rồi bỏ giỏ khách; chỉ gọi khi đăng nhập (LoginRequest.cartToken).
+     */
+    CartResponse mergeGuestCart(String token, Integer userId);
 }
 
@@ -1,9 +1,13 @@
 package com.iuh.printshop.printshop_be.service;
 
 import com.iuh.printshop.printshop_be.entity.Category;
+import com.iuh.printshop.printshop_be.event.TaxonomyChangedEvent;
 import com.iuh.printshop.printshop_be.repository.CategoryRepository;
+import com.iuh.printshop.printshop_be.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,6 +16,8 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class CategoryService {
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Category createCategory(Category category) {
         return categoryRepository.save(category);
@@ -25,17 +31,23 @@ public class CategoryService {
         return categoryRepository.findById(id);
     }
 
+    @Transactional
     public Optional<Category> updateCategory(Integer id, Category updatedCategory) {
         return categoryRepository.findById(id).map(category -> {
             category.setName(updatedCategory.getName());
             category.setDescription(updatedCategory.getDescription());
-            return categoryRepository.save(category);
+            Category saved = categoryRepository.save(category);
+            eventPublisher.publishEvent(TaxonomyChangedEvent.category(id, productRepository.findIdsByCategoryId(id)));
+            return saved;
         });
     }
 
+    @Transactional
     public boolean deleteCategory(Integer id) {
         if (categoryRepository.existsById(id)) {
+            List<Integer> productIds = productRepository.findIdsByCategoryId(id);
             categoryRepository.deleteById(id);
+            eventPublisher.publishEvent(TaxonomyChangedEvent.category(id, productIds));
             return true;
         }
         return false;
@@ -1,13 +1,21 @@
 package com.iuh.printshop.printshop_be.service;
 
+import com.iuh.printshop.printshop_be.cache.DiscountCodeCache;
 import com.iuh.printshop.printshop_be.dto.discount.DiscountApplyRequest;
 import com.iuh.printshop.printshop_be.dto.discount.DiscountApplyResponse;
 import com.iuh.printshop.printshop_be.dto.discount.DiscountRequest;
 import com.iuh.printshop.printshop_be.dto.discount.DiscountResponse;
 import com.iuh.printshop.printshop_be.entity.Discount;
+import com.iuh.printshop.printshop_be.entity.DiscountRedemption;
+import com.iuh.printshop.printshop_be.entity.Order;
+import com.iuh.printshop.printshop_be.event.DiscountChangedEvent;
+import com.iuh.printshop.printshop_be.repository.DiscountRedemptionRepository;
 import com.iuh.printshop.printshop_be.repository.DiscountRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -15,12 +23,17 @@ import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class DiscountService {
     private final DiscountRepository discountRepository;
+    private final DiscountRedemptionRepository discountRedemptionRepository;
+    private final DiscountCodeCache discountCodeCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     public DiscountResponse createDiscount(DiscountRequest request) {
         // Check if code already exists
@@ -42,7 +55,9 @@ public class DiscountService {
                 .isActive(request.getIsActive() != null ? request.getIsActive() : true)
                 .build();
 
-        return convertToDto(discountRepository.save(discount));
+        Discount saved = discountRepository.save(discount);
+        eventPublisher.publishEvent(new DiscountChangedEvent(Set.of(saved.getCode())));
+        return convertToDto(saved);
     }
 
     public List<DiscountResponse> getAllDiscounts() {
@@ -67,6 +82,7 @@ public class DiscountService {
                     throw new RuntimeException("Discount code already exists: " + request.getCode());
                 }
             }
+            String previousCode = discount.getCode();
 
             discount.setCode(request.getCode());
             discount.setDescription(request.getDescription());
@@ -81,21 +97,29 @@ public class DiscountService {
                 discount.setIsActive(request.getIsActive());
             }
 
-            return convertToDto(discountRepository.save(discount));
+            Discount saved = discountRepository.save(discount);
+            eventPublisher.publishEvent(new DiscountChangedEvent(Set.of(previousCode, saved.getCode())));
+            return convertToDto(saved);
         });
     }
 
     public boolean deleteDiscount(Integer id) {
-        if (discountRepository.existsById(id)) {
-            discountRepository.deleteById(id);
-            return true;
+        if (discountRedemptionRepository.existsByDiscountId(id)) {
+            throw new RuntimeException("Discount code has been used by orders, deactivate it instead");
         }
-        return false;
+        return discountRepository.findById(id).map(discount -> {
+            discountRepository.delete(discount);
+            eventPublisher.publishEvent(new DiscountChangedEvent(Set.of(discount.getCode())));
+            return true;
+        }).orElse(false);
     }
 
-    @Transactional
+    /**
+     * Tính số tiền giảm cho đơn hàng (báo giá): không chiếm lượt dùng.
+     * Lượt dùng chỉ bị trừ khi đơn hàng được tạo, qua {@link #redeem}.
+     */
     public DiscountApplyResponse applyDiscount(DiscountApplyRequest request, BigDecimal orderTotal) {
-        Discount discount = discountRepository.findByCode(request.getCode())
+        Discount discount = discountCodeCache.findByCode(request.getCode())
                 .orElseThrow(() -> new RuntimeException("Discount code not found: " + request.getCode()));
 
         // Validate discount
@@ -104,13 +128,10 @@ public class DiscountService {
         // Calculate discount amount
         BigDecimal discountAmount = calculateDiscountAmount(discount, orderTotal);
 
-        // Update used count
-        discount.setUsedCount(discount.getUsedCount() + 1);
-        discountRepository.save(discount);
-
         BigDecimal finalTotal = orderTotal.subtract(discountAmount);
 
         return DiscountApplyResponse.builder()
+                .discountId(discount.getId())
                 .originalTotal(orderTotal)
                 .discountAmount(discountAmount)
                 .finalTotal(finalTotal)
@@ -119,8 +140,48 @@ public class DiscountService {
                 .build();
     }
 
+    /**
+     * Chiếm một lượt dùng của mã đã báo giá cho đơn hàng và ghi lại lượt dùng.
+     * usageLimit được đảm bảo bởi UPDATE có điều kiện nên không thể vượt giới hạn dù nhiều đơn đặt đồng thời.
+     * Trả về false nếu mã vừa hết lượt/hết hạn giữa lúc báo giá và lúc đặt hàng.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean redeem(Order order, DiscountApplyResponse quote) {
+        if (discountRepository.tryConsumeUsage(quote.getDiscountId(), LocalDateTime.now()) == 0) {
+            log.info("Discount code {} is no longer available for order {}", quote.getDiscountCode(), order.getCode());
+            // usedCount trong cache đã cũ: làm mới để các lần báo giá sau thấy mã đã hết lượt
+            eventPublisher.publishEvent(new DiscountChangedEvent(Set.of(quote.getDiscountCode())));
+            return false;
+        }
+        discountRedemptionRepository.save(DiscountRedemption.builder()
+                .discount(discountRepository.getReferenceById(quote.getDiscountId()))
+                .order(order)
+                .discountAmount(quote.getDiscountAmount())
+                .build());
+        return true;
+    }
+
+    /**
+     * Trả lại lượt dùng mã của đơn hàng bị hủy. Trả về false nếu đơn không dùng mã hoặc đã được trả trước đó.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean releaseRedemption(Order order) {
+        return discountRedemptionRepository.findByOrderId(order.getId())
+                .filter(redemption -> discountRedemptionRepository.transition(redemption.getId(),
+                        DiscountRedemption.Status.REDEEMED, DiscountRedemption.Status.RELEASED,
+                        LocalDateTime.now()) == 1)
+                .map(redemption -> {
+                    Discount discount = redemption.getDiscount();
+                    discountRepository.releaseUsage(discount.getId());
+                    // Mã vừa hết lượt có thể dùng lại: bỏ usedCount cũ trong cache
+                    eventPublisher.publishEvent(new DiscountChangedEvent(Set.of(discount.getCode())));
+                    return true;
+                })
+                .orElse(false);
+    }
+
     public boolean validateDiscount(String code, BigDecimal orderTotal) {
-        Optional<Discount> discountOpt = discountRepository.findByCode(code);
+        Optional<Discount> discountOpt = discountCodeCache.findByCode(code);
         if (discountOpt.isEmpty()) {
             return false;
         }
@@ -0,0 +1,300 @@
+package com.iuh.printshop.printshop_be.service;
+
+import com.iuh.printshop.printshop_be.dto.email.EmailOutboxStatsResponse;
+import com.iuh.printshop.printshop_be.entity.EmailOutbox;
+import com.iuh.printshop.printshop_be.event.EmailQueuedEvent;
+import com.iuh.printshop.printshop_be.repository.EmailOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gửi email từ outbox.
+ * - Mỗi vòng giữ (claim) tối đa workers * messages-per-connection email bằng UPDATE có điều kiện,
+ *   chia thành các lô, mỗi lô gửi qua một kết nối SMTP (JavaMailSender.send(MimeMessage...)) trên một virtual thread.
+ * - Lỗi gửi: thử lại với backoff lũy thừa (có jitter) tới max-attempts, sau đó chuyển FAILED.
+ * - Được đánh thức ngay khi có email mới (sau commit) và quét định kỳ cho email cần thử lại.
+ * Đặt MAIL_HOST/MAIL_PORT tới một SMTP sink cục bộ (MailHog, smtp4dev...) khi phát triển/kiểm thử.
+ */
+@Slf4j
+@Service
+public class EmailOutboxWorker {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JavaMailSender mailSender;
+    private final String fromEmail;
+    private final int workers;
+    private final int messagesPerConnection;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Duration claimTimeout;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong smtpBatches = new AtomicLong();
+    private final LongAdder smtpBatchNanos = new LongAdder();
+    private final LongAdder deliveryLatencyMillis = new LongAdder();
+    private final AtomicLong maxDeliveryLatencyMillis = new AtomicLong();
+
+    public EmailOutboxWorker(
+            EmailOutboxRepository emailOutboxRepository,
+            JavaMailSender mailSender,
+            @Value("${app.email.from}") String fromEmail,
+            @Value("${app.email.outbox.workers:4}") int workers,
+            @Value("${app.email.outbox.messages-per-connection:20}") int messagesPerConnection,
+            @Value("${app.email.outbox.max-attempts:8}") int maxAttempts,
+            @Value("${app.email.outbox.base-backoff-seconds:30}") long baseBackoffSeconds,
+            @Value("${app.email.outbox.max-backoff-seconds:3600}") long maxBackoffSeconds,
+            @Value("${app.email.outbox.claim-timeout-seconds:300}") long claimTimeoutSeconds) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.mailSender = mailSender;
+        this.fromEmail = fromEmail;
+        this.workers = Math.max(1, workers);
+        this.messagesPerConnection = Math.max(1, messagesPerConnection);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoff = Duration.ofSeconds(baseBackoffSeconds);
+        this.maxBackoff = Duration.ofSeconds(maxBackoffSeconds);
+        this.claimTimeout = Duration.ofSeconds(claimTimeoutSeconds);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmailQueued(EmailQueuedEvent event) {
+        executor.execute(this::drain);
+    }
+
+    // Chỉ chuyển việc sang virtual thread: vòng gửi chờ SMTP không được chiếm luồng scheduler dùng chung
+    @Scheduled(fixedDelayString = "${app.email.outbox.poll-ms:5000}")
+    public void poll() {
+        executor.execute(this::drain);
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.outbox.cleanup-ms:86400000}",
+            initialDelayString = "${app.email.outbox.cleanup-ms:86400000}")
+    public void purgeSent() {
+        int deleted = emailOutboxRepository.deleteSentBefore(EmailOutbox.Status.SENT, LocalDateTime.now().minusDays(7));
+        log.debug("Purged {} sent emails from outbox", deleted);
+    }
+
+    /**
+     * Gửi hết email đến hạn. Chỉ một vòng gửi chạy trên mỗi instance; yêu cầu đến trong lúc đang gửi
+     * được ghi nhận và vòng gửi chạy lại thay vì bị bỏ qua.
+     */
+    public void drain() {
+        requested.set(true);
+        while (requested.get() && draining.compareAndSet(false, true)) {
+            try {
+                requested.set(false);
+                drainDue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Email outbox drain failed: {}", e.getMessage(), e);
+            } finally {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drainDue() throws InterruptedException {
+        emailOutboxRepository.releaseExpiredClaims(EmailOutbox.Status.PENDING, EmailOutbox.Status.SENDING,
+                LocalDateTime.now());
+
+        int batchSize = workers * messagesPerConnection;
+        while (true) {
+            List<Long> due = emailOutboxRepository.findDueIds(EmailOutbox.Status.PENDING, LocalDateTime.now(),
+                    Limit.of(batchSize));
+            if (due.isEmpty()) {
+                return;
+            }
+
+            LocalDateTime lockedUntil = LocalDateTime.now().plus(claimTimeout);
+            List<Long> claimed = new ArrayList<>(due.size());
+            for (Long id : due) {
+                if (emailOutboxRepository.claim(id, EmailOutbox.Status.PENDING, EmailOutbox.Status.SENDING,
+                        lockedUntil) == 1) {
+                    claimed.add(id);
+                }
+            }
+            if (claimed.isEmpty()) {
+                return;
+            }
+
+            List<EmailOutbox> emails = emailOutboxRepository.findByIdIn(claimed);
+            List<Future<?>> batches = new ArrayList<>();
+            for (int from = 0; from < emails.size(); from += messagesPerConnection) {
+                List<EmailOutbox> batch = emails.subList(from, Math.min(from + messagesPerConnection, emails.size()));
+                batches.add(executor.submit(() -> sendBatch(batch)));
+            }
+            for (Future<?> batch : batches) {
+                try {
+                    batch.get();
+                } catch (ExecutionException e) {
+                    log.error("Email batch failed: {}", e.getCause().getMessage(), e.getCause());
+                }
+            }
+
+            if (due.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private void sendBatch(List<EmailOutbox> batch) {
+        Map<MimeMessage, EmailOutbox> byMessage = new IdentityHashMap<>();
+        for (EmailOutbox email : batch) {
+            try {
+                byMessage.put(toMessage(email), email);
+            } catch (MessagingException | RuntimeException e) {
+                // Địa chỉ/nội dung không hợp lệ: thử lại cũng không thành công
+                deadLetter(email, e);
+            }
+        }
+        if (byMessage.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        long startedAt = System.nanoTime();
+        try {
+            // Một kết nối SMTP cho cả lô
+            mailSender.send(byMessage.keySet().toArray(MimeMessage[]::new));
+        } catch (MailSendException e) {
+            failures = e.getFailedMessages();
+            if (failures.isEmpty()) {
+                failures = failAll(byMessage, e);
+            }
+        } catch (MailException e) {
+            failures = failAll(byMessage, e);
+        }
+        smtpBatchNanos.add(System.nanoTime() - startedAt);
+        smtpBatches.incrementAndGet();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> sentIds = new ArrayList<>(byMessage.size());
+        for (Map.Entry<MimeMessage, EmailOutbox> entry : byMessage.entrySet()) {
+            EmailOutbox email = entry.getValue();
+            Exception failure = failures.get(entry.getKey());
+            if (failure == null) {
+                sentIds.add(email.getId());
+                recordDelivery(email, now);
+            } else {
+                retryLater(email, failure);
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            emailOutboxRepository.markSent(sentIds, EmailOutbox.Status.SENT, now);
+        }
+    }
+
+    private MimeMessage toMessage(EmailOutbox email) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom(fromEmail);
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody(), true); // true = HTML content
+        return message;
+    }
+
+    private void retryLater(EmailOutbox email, Exception failure) {
+        failedAttempts.incrementAndGet();
+        int attempt = email.getAttempts() + 1;
+        if (attempt >= maxAttempts) {
+            deadLetter(email, failure);
+            return;
+        }
+        // 30s, 1m, 2m, 4m... tối đa max-backoff, jitter ±20% để các email lỗi cùng lúc không thử lại cùng lúc
+        long backoff = Math.min(maxBackoff.toMillis(), baseBackoff.toMillis() << Math.min(attempt - 1, 20));
+        long jittered = (long) (backoff * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+        emailOutboxRepository.markAttemptFailed(email.getId(), EmailOutbox.Status.PENDING,
+                LocalDateTime.now().plusNanos(jittered * 1_000_000), truncate(failure.getMessage()));
+        log.warn("Email {} to {} failed (attempt {}), retrying in {} ms: {}",
+                email.getId(), email.getRecipient(), attempt, jittered, failure.getMessage());
+    }
+
+    private void deadLetter(EmailOutbox email, Exception failure) {
+        deadLettered.incrementAndGet();
+        emailOutboxRepository.markAttemptFailed(email.getId(), EmailOutbox.Status.FAILED,
+                LocalDateTime.now(), truncate(failure.getMessage()));
+        log.error("Email {} to {} failed permanently: {}", email.getId(), email.getRecipient(), failure.getMessage());
+    }
+
+    private void recordDelivery(EmailOutbox email, LocalDateTime now) {
+        sent.incrementAndGet();
+        long latency = Duration.between(email.getCreatedAt(), now).toMillis();
+        deliveryLatencyMillis.add(latency);
+        maxDeliveryLatencyMillis.accumulateAndGet(latency, Math::max);
+    }
+
+    public EmailOutboxStatsResponse stats() {
+        LocalDateTime oldestPending = emailOutboxRepository.findOldestCreatedAt(EmailOutbox.Status.PENDING);
+        long batches = smtpBatches.get();
+        long delivered = sent.get();
+        return EmailOutboxStatsResponse.builder()
+                .pending(emailOutboxRepository.countByStatus(EmailOutbox.Status.PENDING))
+                .sending(emailOutboxRepository.countByStatus(EmailOutbox.Status.SENDING))
+                .failed(emailOutboxRepository.countByStatus(EmailOutbox.Status.FAILED))
+                .oldestPendingAgeSeconds(oldestPending != null
+                        ? Duration.between(oldestPending, LocalDateTime.now()).toSeconds() : null)
+                .sent(delivered)
+                .failedAttempts(failedAttempts.get())
+                .deadLettered(deadLettered.get())
+                .smtpBatches(batches)
+                .averageSmtpBatchMillis(batches > 0 ? smtpBatchNanos.sum() / 1_000_000.0 / batches : 0)
+                .averageDeliveryLatencyMillis(delivered > 0 ? (double) deliveryLatencyMillis.sum() / delivered : 0)
+                .maxDeliveryLatencyMillis(maxDeliveryLatencyMillis.get())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static Map<Object, Exception> failAll(Map<MimeMessage, EmailOutbox> byMessage, Exception e) {
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        byMessage.keySet().forEach(message -> failures.put(message, e));
+        return failures;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
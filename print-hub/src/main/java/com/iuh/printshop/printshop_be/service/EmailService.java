@@ -1,98 +1,108 @@
 package com.iuh.printshop.printshop_be.service;
 
+import com.iuh.printshop.printshop_be.entity.EmailOutbox;
+import com.iuh.printshop.printshop_be.entity.Order;
+import com.iuh.printshop.printshop_be.entity.OrderItem;
+import com.iuh.printshop.printshop_be.event.EmailQueuedEvent;
+import com.iuh.printshop.printshop_be.repository.EmailOutboxRepository;
+import com.iuh.printshop.printshop_be.service.email.EmailTemplateEngine;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
+/**
+ * Soạn email và ghi vào outbox trong transaction của người gọi; EmailOutboxWorker gửi sau khi commit.
+ * Nội dung render từ template đã biên dịch sẵn (EmailTemplateEngine), không dựng lại HTML ở mỗi email.
+ */
 @Service
 @RequiredArgsConstructor
 public class EmailService {
+
+    private static final Locale VIETNAMESE = Locale.forLanguageTag("vi-VN");
+    private static final int OTP_EXPIRATION_MINUTES = 10;
     
-    private final JavaMailSender mailSender;
-    
-    @Value("${app.email.from}")
-    private String fromEmail;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EmailTemplateEngine templateEngine;
     
     public void sendVerificationEmail(String email, String otpCode) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            helper.setFrom(fromEmail);
-            helper.setTo(email);
-            helper.setSubject("Mã xác thực OTP - Print Shop");
-            helper.setText(buildVerificationEmailContent(otpCode), true); // true = HTML content
-            
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Không thể gửi email xác nhận: " + e.getMessage());
+        String body = templateEngine.render("verification", Map.of(
+                "headerTitle", "Xác thực địa chỉ email",
+                "otpCode", otpCode,
+                "expiresMinutes", OTP_EXPIRATION_MINUTES));
+        enqueue(email, "Mã xác thực OTP - Print Shop", body);
+    }
+
+    /**
+     * Xác nhận đơn hàng cho khách đã đăng nhập (đơn của khách vãng lai không có email).
+     */
+    public void sendOrderConfirmation(Order order, List<OrderItem> items) {
+        if (order.getUser() == null) {
+            return;
         }
+        Map<String, Object> model = orderModel(order, "Xác nhận đơn hàng");
+        model.put("subtotal", formatMoney(order.getSubtotal()));
+        model.put("shippingFee", formatMoney(order.getShippingFee()));
+        model.put("phone", order.getPhone());
+        model.put("shippingAddress", order.getShippingAddress());
+        model.put("paymentMethod", order.getPaymentMethod());
+        model.put("items", templateEngine.repeat("_order-item", items, item -> Map.of(
+                "productName", item.getProduct().getName(),
+                "quantity", item.getQuantity(),
+                "price", formatMoney(item.getPrice()),
+                "lineTotal", formatMoney(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()))))));
+        enqueue(order.getUser().getEmail(), "Xác nhận đơn hàng " + order.getCode() + " - Print Shop",
+                templateEngine.render("order-confirmation", model));
     }
-    
-    private String buildVerificationEmailContent(String otpCode) {
-        return """
-            <html>
-            <head>
-                <meta charset="UTF-8">
-                <style>
-                    body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }
-                    .container { max-width: 600px; margin: 0 auto; padding: 20px; }
-                    .header { background-color: #f8f9fa; padding: 20px; text-align: center; border-radius: 8px; }
-                    .otp-container { background-color: #e3f2fd; padding: 30px; margin: 20px 0; text-align: center; border-radius: 8px; border: 2px solid #2196f3; }
-                    .otp-code { font-size: 48px; font-weight: bold; color: #1976d2; letter-spacing: 8px; margin: 20px 0; font-family: 'Courier New', monospace; }
-                    .otp-label { font-size: 18px; color: #1976d2; font-weight: bold; margin-bottom: 10px; }
-                    .content { padding: 20px; }
-                    .footer { background-color: #f8f9fa; padding: 15px; text-align: center; border-radius: 8px; margin-top: 20px; font-size: 14px; color: #666; }
-                    .warning { background-color: #fff3cd; border: 1px solid #ffeaa7; padding: 15px; border-radius: 5px; margin: 15px 0; }
-                </style>
-            </head>
-            <body>
-                <div class="container">
-                    <div class="header">
-                        <h1 style="color: #1976d2; margin: 0;">Print Shop</h1>
-                        <p style="margin: 10px 0 0 0; color: #666;">Xác thực địa chỉ email</p>
-                    </div>
-                    
-                    <div class="content">
-                        <h2>Xin chào!</h2>
-                        <p>Cảm ơn bạn đã đăng ký tài khoản tại <strong>Print Shop</strong>.</p>
-                        
-                        <p>Để kích hoạt tài khoản của bạn, vui lòng sử dụng mã OTP bên dưới:</p>
-                        
-                        <div class="otp-container">
-                            <div class="otp-label">MÃ KÍCH HOẠT TÀI KHOẢN</div>
-                            <div class="otp-code">%s</div>
-                            <p style="margin: 0; color: #666; font-size: 14px;">Nhập mã này vào ứng dụng để kích hoạt tài khoản</p>
-                        </div>
-                        
-                        <div class="warning">
-                            <strong>⚠️ Lưu ý quan trọng:</strong>
-                            <ul style="margin: 10px 0; padding-left: 20px;">
-                                <li>Mã OTP này sẽ hết hạn sau <strong>10 phút</strong></li>
-                                <li>Mỗi mã chỉ có thể sử dụng <strong>một lần</strong></li>
-                                <li>Không chia sẻ mã này với bất kỳ ai</li>
-                            </ul>
-                        </div>
-                        
-                        <p>Sau khi nhập mã thành công, tài khoản của bạn sẽ được kích hoạt và bạn có thể đăng nhập.</p>
-                        
-                        <p>Nếu bạn không đăng ký tài khoản này, vui lòng bỏ qua email này.</p>
-                    </div>
-                    
-                    <div class="footer">
-                        <p><strong>Trân trọng,</strong><br>Đội ngũ Print Shop</p>
-                        <p style="font-size: 12px; color: #999;">Email này được gửi tự động, vui lòng không trả lời.</p>
-                    </div>
-                </div>
-            </body>
-            </html>
-            """.formatted(otpCode);
+
+    public void sendOrderStatusChanged(Order order) {
+        if (order.getUser() == null) {
+            return;
+        }
+        Map<String, Object> model = orderModel(order, "Cập nhật trạng thái đơn hàng");
+        model.put("statusLabel", statusLabel(order.getStatus()));
+        enqueue(order.getUser().getEmail(), "Đơn hàng " + order.getCode() + ": " + statusLabel(order.getStatus())
+                + " - Print Shop", templateEngine.render("order-status", model));
     }
-}
 
+    public void enqueue(String recipient, String subject, String htmlBody) {
+        EmailOutbox saved = emailOutboxRepository.save(EmailOutbox.builder()
+                .recipient(recipient)
+                .subject(subject)
+                .body(htmlBody)
+                .build());
+        eventPublisher.publishEvent(new EmailQueuedEvent(saved.getId()));
+    }
+
+    private Map<String, Object> orderModel(Order order, String headerTitle) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("headerTitle", headerTitle);
+        model.put("fullName", order.getFullName());
+        model.put("orderCode", order.getCode());
+        model.put("total", formatMoney(order.getTotal()));
+        return model;
+    }
 
+    private static String formatMoney(BigDecimal amount) {
+        BigDecimal value = amount != null ? amount : BigDecimal.ZERO;
+        return String.format(VIETNAMESE, "%,d ₫", value.setScale(0, RoundingMode.HALF_UP).longValueExact());
+    }
+
+    private static String statusLabel(Order.OrderStatus status) {
+        return switch (status) {
+            case PENDING -> "Chờ xác nhận";
+            case CONFIRMED -> "Đã xác nhận";
+            case PAID -> "Đã thanh toán";
+            case SHIPPING -> "Đang giao hàng";
+            case COMPLETED -> "Hoàn tất";
+            case CANCELLED -> "Đã hủy";
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package com.iuh.printshop.printshop_be.service;
+
+import com.iuh.printshop.printshop_be.entity.Order;
+import com.iuh.printshop.printshop_be.entity.OrderItem;
+import com.iuh.printshop.printshop_be.event.ProductChangedEvent;
+import com.iuh.printshop.printshop_be.repository.OrderItemRepository;
+import com.iuh.printshop.printshop_be.repository.OrderJdbcRepository;
+import com.iuh.printshop.printshop_be.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Giữ hàng cho đơn hàng theo vòng đời reserve -> commit / release.
+ * - reserve: trừ tồn kho bằng UPDATE có điều kiện stock_quantity >= qty (không đọc-rồi-ghi), nên không thể bán quá số lượng.
+ * - commit: đơn hoàn tất, giữ hàng trở thành xuất kho và không thể hoàn lại.
+ * - release: đơn bị hủy, hoàn tồn kho đúng một lần nhờ chuyển trạng thái có điều kiện trên orders.
+ * Các phương thức phải chạy trong transaction của đơn hàng để giữ hàng và đơn hàng cùng commit/rollback.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryService {
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final OrderJdbcRepository orderJdbcRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Trừ tồn kho cho toàn bộ đơn hàng trong một câu lệnh.
+     * Nên gọi ở cuối transaction: khóa dòng trên products chỉ được giữ từ đây tới lúc commit.
+     * Các dòng được khóa trước theo id tăng dần (SELECT ... ORDER BY id FOR UPDATE) để các checkout đồng thời
+     * khóa theo cùng thứ tự (tránh deadlock); bản thân UPDATE ... JOIN không đảm bảo thứ tự khóa.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Order order, Map<Integer, Integer> quantities) {
+        Map<Integer, Integer> ordered = new TreeMap<>(quantities);
+        orderJdbcRepository.lockProducts(ordered.keySet());
+        int reserved = orderJdbcRepository.decrementStock(ordered);
+        if (reserved != ordered.size()) {
+            throw new RuntimeException("Insufficient stock for one or more products");
+        }
+        order.setReservationStatus(Order.ReservationStatus.RESERVED);
+        eventPublisher.publishEvent(ProductChangedEvent.stockChanged(ordered.keySet()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean commit(Order order) {
+        if (orderRepository.transitionReservation(order.getId(),
+                Order.ReservationStatus.RESERVED, Order.ReservationStatus.COMMITTED) == 0) {
+            return false;
+        }
+        order.setReservationStatus(Order.ReservationStatus.COMMITTED);
+        return true;
+    }
+
+    /**
+     * Hoàn tồn kho của đơn hàng. Trả về false nếu đơn đã được hoàn trước đó hoặc đã xuất kho.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean release(Order order) {
+        if (orderRepository.transitionReservation(order.getId(),
+                Order.ReservationStatus.RESERVED, Order.ReservationStatus.RELEASED) == 0) {
+            log.debug("Reservation of order {} already released or committed", order.getId());
+            return false;
+        }
+        order.setReservationStatus(Order.ReservationStatus.RELEASED);
+
+        Map<Integer, Integer> quantities = orderItemRepository.findByOrderId(order.getId()).stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), OrderItem::getQuantity,
+                        Integer::sum, TreeMap::new));
+        orderJdbcRepository.lockProducts(quantities.keySet());
+        orderJdbcRepository.incrementStock(quantities);
+        eventPublisher.publishEvent(ProductChangedEvent.stockChanged(quantities.keySet()));
+        return true;
+    }
+}
@@ -1,30 +1,52 @@
 package com.iuh.printshop.printshop_be.service;
 
+import com.iuh.printshop.printshop_be.entity.User;
+import com.iuh.printshop.printshop_be.security.VerifiedToken;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_VERSION = "ver";
+
     @Value("${jwt.secret}")
     private String secretKey;
 
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
-    @Value("${jwt.refresh-token.expiration}")
-    private long refreshExpiration;
+    // Access token mang uid/roles/ver: filter dựng Authentication từ claims, không cần tải user
+    @Value("${jwt.claims.enabled:true}")
+    private boolean claimsEnabled;
+
+    // Khóa HMAC và parser dựng một lần (bất biến, thread-safe) thay vì decode base64 ở mỗi request
+    private SecretKey signInKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        parser = Jwts.parser().verifyWith(signInKey).build();
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -36,17 +58,19 @@ public class JwtService {
     }
 
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        if (claimsEnabled && userDetails instanceof User user && user.getId() != null) {
+            claims.put(CLAIM_USER_ID, user.getId());
+            claims.put(CLAIM_ROLES, user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+            claims.put(CLAIM_VERSION, user.getTokenVersion() != null ? user.getTokenVersion() : 0);
+        }
+        return generateToken(claims, userDetails);
     }
 
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
         return buildToken(extraClaims, userDetails, jwtExpiration);
     }
 
-    public String generateRefreshToken(UserDetails userDetails) {
-        return buildToken(new HashMap<>(), userDetails, refreshExpiration);
-    }
-
     private String buildToken(
             Map<String, Object> extraClaims,
             UserDetails userDetails,
@@ -75,17 +99,29 @@ public class JwtService {
         return extractClaim(token, Claims::getExpiration);
     }
 
+    /**
+     * Kiểm tra chữ ký và thời hạn; ném JwtException nếu token không hợp lệ.
+     */
+    public VerifiedToken verify(String token) {
+        Claims claims = extractAllClaims(token);
+        Integer userId = claims.get(CLAIM_USER_ID, Integer.class);
+        Integer version = claims.get(CLAIM_VERSION, Integer.class);
+        List<GrantedAuthority> authorities = null;
+        if (claims.get(CLAIM_ROLES) instanceof List<?> roles) {
+            authorities = roles.stream()
+                    .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(role)))
+                    .toList();
+        }
+        return new VerifiedToken(claims.getSubject(), claims.getExpiration().getTime(), userId, version, authorities);
+    }
+
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .verifyWith(getSignInKey())
-                .build()
+        return parser
                 .parseSignedClaims(token)
                 .getPayload();
     }
 
     private SecretKey getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signInKey;
     }
 }
@@ -0,0 +1,8 @@
+package com.iuh.printshop.printshop_be.service;
+
+public interface OrderCodeGenerator {
+    /**
+     * Sinh mã đơn hàng duy nhất (tối đa 20 ký tự, vừa cột orders.code) mà không cần truy vấn DB.
+     */
+    String nextCode();
+}
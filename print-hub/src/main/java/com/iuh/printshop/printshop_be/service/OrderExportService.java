@@ -0,0 +1,259 @@
+package com.iuh.printshop.printshop_be.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iuh.printshop.printshop_be.dto.order.OrderItemResponse;
+import com.iuh.printshop.printshop_be.dto.order.OrderResponse;
+import com.iuh.printshop.printshop_be.entity.Order;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Xuất đơn hàng ra CSV (mỗi dòng một sản phẩm trong đơn) hoặc NDJSON (mỗi dòng một đơn hàng).
+ * Đọc orders/order_items bằng cursor JDBC chỉ-tiến (fetch size) và ghi thẳng ra output stream,
+ * nên bộ nhớ dùng không phụ thuộc số đơn hàng.
+ * Thứ tự theo id tăng dần: client tải lại từ chỗ bị ngắt bằng afterId = id đơn hàng cuối cùng đã nhận đủ.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderExportService {
+
+    private static final int FETCH_SIZE = 500;
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private static final String CSV_HEADER = "order_id,order_code,created_at,status,payment_method,payment_status,"
+            + "user_id,full_name,phone,shipping_address,subtotal,shipping_fee,total,"
+            + "product_id,product_name,unit_price,quantity,line_total";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    public void export(OutputStream outputStream, Format format, LocalDate from, LocalDate to,
+                       Order.OrderStatus status, Long afterId) throws IOException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT o.id, o.code, o.created_at, o.status, o.payment_method, o.payment_status, o.user_id, "
+                        + "o.full_name, o.phone, o.shipping_address, o.subtotal, o.shipping_fee, o.total, "
+                        + "oi.product_id, p.name AS product_name, oi.price, oi.quantity "
+                        + "FROM orders o "
+                        + "LEFT JOIN order_items oi ON oi.order_id = o.id "
+                        + "LEFT JOIN products p ON p.id = oi.product_id "
+                        + "WHERE o.id > ?");
+        List<Object> params = new ArrayList<>();
+        params.add(afterId != null ? afterId : 0L);
+        if (from != null) {
+            sql.append(" AND o.created_at >= ?");
+            params.add(Timestamp.valueOf(from.atStartOfDay()));
+        }
+        if (to != null) {
+            sql.append(" AND o.created_at < ?");
+            params.add(Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+        if (status != null) {
+            sql.append(" AND o.status = ?");
+            params.add(status.name());
+        }
+        sql.append(" ORDER BY o.id, oi.product_id");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        ExportHandler handler = format == Format.CSV ? new CsvHandler(writer) : new NdjsonHandler(writer);
+        long startedAt = System.currentTimeMillis();
+        try {
+            jdbcTemplate.query(connection -> {
+                // Forward-only + fetch size: MariaDB driver trả kết quả theo lô thay vì nạp toàn bộ vào heap
+                var statement = connection.prepareStatement(sql.toString(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(FETCH_SIZE);
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 1, params.get(i));
+                }
+                return statement;
+            }, handler);
+            handler.finish();
+        } catch (UncheckedIOException e) {
+            // Client ngắt kết nối giữa chừng: dừng đọc cursor, có thể tải tiếp bằng afterId
+            log.info("Order export aborted by client after order {}: {}", handler.lastOrderId, e.getMessage());
+            return;
+        }
+        writer.flush();
+        log.info("Exported {} orders as {} in {} ms", handler.orderCount, format,
+                System.currentTimeMillis() - startedAt);
+    }
+
+    private abstract static class ExportHandler implements RowCallbackHandler {
+        protected final Writer writer;
+        protected Long lastOrderId;
+        protected long orderCount;
+        private long rowCount;
+
+        ExportHandler(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            try {
+                long orderId = rs.getLong("id");
+                if (lastOrderId == null || lastOrderId != orderId) {
+                    lastOrderId = orderId;
+                    orderCount++;
+                }
+                writeRow(rs);
+                if (++rowCount % FLUSH_EVERY_ROWS == 0) {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        abstract void writeRow(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException {
+        }
+    }
+
+    private static final class CsvHandler extends ExportHandler {
+
+        CsvHandler(Writer writer) throws IOException {
+            super(writer);
+            writer.write(CSV_HEADER);
+            writer.write("\r\n");
+        }
+
+        @Override
+        void writeRow(ResultSet rs) throws SQLException, IOException {
+            BigDecimal price = rs.getBigDecimal("price");
+            int quantity = rs.getInt("quantity");
+            boolean hasItem = !rs.wasNull();
+
+            StringJoiner line = new StringJoiner(",");
+            line.add(Long.toString(rs.getLong("id")));
+            line.add(csv(rs.getString("code")));
+            line.add(csv(rs.getTimestamp("created_at").toLocalDateTime().toString()));
+            line.add(csv(rs.getString("status")));
+            line.add(csv(rs.getString("payment_method")));
+            line.add(csv(rs.getString("payment_status")));
+            line.add(csv(rs.getString("user_id")));
+            line.add(csv(rs.getString("full_name")));
+            line.add(csv(rs.getString("phone")));
+            line.add(csv(rs.getString("shipping_address")));
+            line.add(plain(rs.getBigDecimal("subtotal")));
+            line.add(plain(rs.getBigDecimal("shipping_fee")));
+            line.add(plain(rs.getBigDecimal("total")));
+            line.add(csv(rs.getString("product_id")));
+            line.add(csv(rs.getString("product_name")));
+            line.add(plain(price));
+            line.add(hasItem ? Integer.toString(quantity) : "");
+            line.add(hasItem && price != null ? price.multiply(BigDecimal.valueOf(quantity)).toPlainString() : "");
+            writer.write(line.toString());
+            writer.write("\r\n");
+        }
+
+        private static String plain(BigDecimal value) {
+            return value != null ? value.toPlainString() : "";
+        }
+
+        // RFC 4180; thêm ' trước =,+,-,@ để Excel không hiểu dữ liệu khách nhập là công thức
+        private static String csv(String value) {
+            if (value == null || value.isEmpty()) {
+                return "";
+            }
+            char first = value.charAt(0);
+            if (first == '=' || first == '+' || first == '-' || first == '@') {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Các dòng của cùng một đơn hàng nằm liền nhau (ORDER BY o.id), nên chỉ giữ một đơn trong bộ nhớ.
+     */
+    private final class NdjsonHandler extends ExportHandler {
+        private OrderResponse current;
+
+        NdjsonHandler(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void writeRow(ResultSet rs) throws SQLException, IOException {
+            long orderId = rs.getLong("id");
+            if (current == null || current.getId() != orderId) {
+                writeCurrent();
+                long userId = rs.getLong("user_id");
+                current = OrderResponse.builder()
+                        .id(orderId)
+                        .code(rs.getString("code"))
+                        .userId(rs.wasNull() ? null : (int) userId)
+                        .fullName(rs.getString("full_name"))
+                        .phone(rs.getString("phone"))
+                        .shippingAddress(rs.getString("shipping_address"))
+                        .status(rs.getString("status"))
+                        .paymentMethod(rs.getString("payment_method"))
+                        .paymentStatus(rs.getString("payment_status"))
+                        .subtotal(rs.getBigDecimal("subtotal"))
+                        .shippingFee(rs.getBigDecimal("shipping_fee"))
+                        .total(rs.getBigDecimal("total"))
+                        .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                        .items(new ArrayList<>())
+                        .build();
+            }
+
+            int productId = rs.getInt("product_id");
+            if (!rs.wasNull()) {
+                BigDecimal price = rs.getBigDecimal("price");
+                int quantity = rs.getInt("quantity");
+                current.getItems().add(OrderItemResponse.builder()
+                        .productId(productId)
+                        .productName(rs.getString("product_name"))
+                        .price(price)
+                        .quantity(quantity)
+                        .total(price.multiply(BigDecimal.valueOf(quantity)))
+                        .build());
+            }
+        }
+
+        @Override
+        void finish() throws IOException {
+            writeCurrent();
+        }
+
+        private void writeCurrent() throws IOException {
+            if (current == null) {
+                return;
+            }
+            writer.write(objectMapper.writeValueAsString(current));
+            writer.write('\n');
+            current = null;
+        }
+    }
+}
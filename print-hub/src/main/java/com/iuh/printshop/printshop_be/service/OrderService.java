@@ -4,17 +4,27 @@ import com.iuh.printshop.printshop_be.dto.discount.DiscountApplyRequest;
 import com.iuh.printshop.printshop_be.dto.discount.DiscountApplyResponse;
 import com.iuh.printshop.printshop_be.dto.order.OrderItemRequest;
 import com.iuh.printshop.printshop_be.dto.order.OrderItemResponse;
+import com.iuh.printshop.printshop_be.dto.order.OrderPageResponse;
 import com.iuh.printshop.printshop_be.dto.order.OrderRequest;
 import com.iuh.printshop.printshop_be.dto.order.OrderResponse;
 import com.iuh.printshop.printshop_be.entity.*;
 import com.iuh.printshop.printshop_be.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -22,12 +32,18 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class OrderService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
     private final ProductRepository productRepository;
+    private final OrderJdbcRepository orderJdbcRepository;
+    private final InventoryService inventoryService;
+    private final OrderCodeGenerator orderCodeGenerator;
     private final UserService userService;
     private final DiscountService discountService;
     private final CartService cartService;
+    private final EmailService emailService;
 
     @Transactional
     public OrderResponse createOrder(OrderRequest request) {
@@ -39,21 +55,31 @@ public class OrderService {
             log.debug("User not authenticated, creating guest order");
         }
 
-        // Validate and get products
-        List<OrderItem> orderItems = request.getItems().stream()
-                .map(itemRequest -> {
-                    Product product = productRepository.findById(itemRequest.getProductId())
-                            .orElseThrow(() -> new RuntimeException("Product not found: " + itemRequest.getProductId()));
+        // Gộp các dòng trùng sản phẩm (order_items có khóa chính (order_id, product_id))
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItemRequest itemRequest : request.getItems()) {
+            quantities.merge(itemRequest.getProductId(), itemRequest.getQuantity(), Integer::sum);
+        }
+
+        // Validate and get products: một truy vấn IN cho toàn bộ đơn hàng
+        Map<Integer, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<OrderItem> orderItems = quantities.entrySet().stream()
+                .map(entry -> {
+                    Product product = products.get(entry.getKey());
+                    if (product == null) {
+                        throw new RuntimeException("Product not found: " + entry.getKey());
+                    }
 
                     // Check stock
-                    if (product.getStockQuantity() == null || product.getStockQuantity() < itemRequest.getQuantity()) {
+                    if (product.getStockQuantity() == null || product.getStockQuantity() < entry.getValue()) {
                         throw new RuntimeException("Insufficient stock for product: " + product.getName());
                     }
 
                     return OrderItem.builder()
                             .product(product)
                             .price(product.getPrice())
-                            .quantity(itemRequest.getQuantity())
+                            .quantity(entry.getValue())
                             .build();
                 })
                 .collect(Collectors.toList());
@@ -63,15 +89,16 @@ public class OrderService {
                 .map(item -> item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-        // Apply discount if provided
+        // Apply discount if provided: chỉ báo giá ở đây, lượt dùng được chiếm ở cuối transaction
         BigDecimal discountAmount = BigDecimal.ZERO;
+        DiscountApplyResponse discountQuote = null;
         if (request.getDiscountCode() != null && !request.getDiscountCode().trim().isEmpty()) {
             try {
                 DiscountApplyRequest discountRequest = DiscountApplyRequest.builder()
                         .code(request.getDiscountCode().toUpperCase())
                         .build();
-                DiscountApplyResponse discountResponse = discountService.applyDiscount(discountRequest, subtotal);
-                discountAmount = discountResponse.getDiscountAmount();
+                discountQuote = discountService.applyDiscount(discountRequest, subtotal);
+                discountAmount = discountQuote.getDiscountAmount();
             } catch (Exception e) {
                 log.warn("Failed to apply discount code: {}", e.getMessage());
                 // Continue without discount
@@ -95,6 +122,7 @@ public class OrderService {
         }
 
         Order order = Order.builder()
+                .code(orderCodeGenerator.nextCode())
                 .user(user)
                 .fullName(request.getFullName())
                 .phone(request.getPhone())
@@ -102,6 +130,7 @@ public class OrderService {
                 .paymentMethod(paymentMethod)
                 .paymentStatus(Order.PaymentStatus.UNPAID)
                 .status(Order.OrderStatus.PENDING)
+                .reservationStatus(Order.ReservationStatus.RESERVED)
                 .subtotal(subtotal)
                 .shippingFee(shippingFee)
                 .total(total)
@@ -109,16 +138,11 @@ public class OrderService {
 
         order = orderRepository.save(order);
 
-        // Save order items
+        // Save order items: một batch INSERT
         for (OrderItem item : orderItems) {
             item.setOrder(order);
-            orderItemRepository.save(item);
-
-            // Deduct stock
-            Product product = item.getProduct();
-            product.setStockQuantity(product.getStockQuantity() - item.getQuantity());
-            productRepository.save(product);
         }
+        orderJdbcRepository.insertItems(order.getId(), orderItems);
 
         // Clear cart if user is authenticated
         if (user != null) {
@@ -128,8 +152,23 @@ public class OrderService {
                 log.warn("Failed to clear cart: {}", e.getMessage());
             }
         }
+        if (request.getCartToken() != null) {
+            cartService.discardGuestCart(request.getCartToken());
+        }
 
-        return mapToResponse(order);
+        // Giữ hàng sau cùng để khóa dòng products được giữ ngắn nhất có thể
+        inventoryService.reserve(order, quantities);
+
+        // Dòng discounts là điểm nóng khi mã được dùng nhiều: khóa sau cùng và theo cùng thứ tự với tồn kho
+        if (discountQuote != null && !discountService.redeem(order, discountQuote)) {
+            // Mã hết lượt giữa lúc báo giá và lúc đặt: tiếp tục không giảm giá như khi mã không hợp lệ
+            order.setTotal(subtotal.add(shippingFee));
+        }
+
+        // Email xác nhận vào outbox cùng transaction: chỉ gửi khi đơn hàng thực sự được commit
+        emailService.sendOrderConfirmation(order, orderItems);
+
+        return mapToResponse(order, orderItems);
     }
 
     public OrderResponse getOrderById(Long id) {
@@ -146,73 +185,138 @@ public class OrderService {
 
     public List<OrderResponse> getMyOrders() {
         User user = userService.getCurrentUser();
-        return orderRepository.findByUserIdOrderByCreatedAtDesc(user.getId()).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(orderRepository.findByUserIdOrderByCreatedAtDesc(user.getId()));
+    }
+
+    public OrderPageResponse getMyOrders(int page, int size, LocalDate from, LocalDate to) {
+        User user = userService.getCurrentUser();
+        return searchOrders(user.getId(), page, size, from, to);
     }
 
     public List<OrderResponse> searchOrders(String code, String phone) {
-        return orderRepository.findByCodeOrPhone(code, phone).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(orderRepository.findByCodeOrPhone(code, phone));
+    }
+
+    /**
+     * Danh sách đơn hàng có phân trang và lọc theo ngày tạo [from, to] (bao gồm cả hai ngày).
+     * Tổng cộng 3 truy vấn: trang orders, COUNT, items + product của trang.
+     */
+    public OrderPageResponse searchOrders(Integer userId, int page, int size, LocalDate from, LocalDate to) {
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE),
+                Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id")));
+        Page<Order> orderPage = orderRepository.search(
+                userId,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                pageable);
+
+        return OrderPageResponse.builder()
+                .content(mapToResponses(orderPage.getContent()))
+                .page(orderPage.getNumber())
+                .size(orderPage.getSize())
+                .totalElements(orderPage.getTotalElements())
+                .totalPages(orderPage.getTotalPages())
+                .first(orderPage.isFirst())
+                .last(orderPage.isLast())
+                .build();
     }
 
     @Transactional
     public OrderResponse updateOrderStatus(Long id, String status) {
-        Order order = orderRepository.findById(id)
+        // Khóa dòng orders: trạng thái được kiểm tra trên dữ liệu mới nhất, không bị request đồng thời ghi đè
+        Order order = orderRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + id));
 
+        Order.OrderStatus newStatus;
         try {
-            Order.OrderStatus newStatus = Order.OrderStatus.valueOf(status.toUpperCase());
-            order.setStatus(newStatus);
-            
-            // If order is cancelled, restore stock
-            if (newStatus == Order.OrderStatus.CANCELLED) {
-                List<OrderItem> items = orderItemRepository.findByOrderId(id);
-                for (OrderItem item : items) {
-                    Product product = item.getProduct();
-                    product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-                    productRepository.save(product);
-                }
-            }
-            
-            order = orderRepository.save(order);
-            return mapToResponse(order);
+            newStatus = Order.OrderStatus.valueOf(status.toUpperCase());
         } catch (IllegalArgumentException e) {
             throw new RuntimeException("Invalid order status: " + status);
         }
+
+        // CANCELLED là trạng thái cuối: mở lại đơn sẽ bán lượng hàng đã được hoàn kho
+        if (order.getStatus() == Order.OrderStatus.CANCELLED && newStatus != Order.OrderStatus.CANCELLED) {
+            throw new RuntimeException("Cancelled order cannot be reopened: " + order.getCode());
+        }
+        if (order.getStatus() == Order.OrderStatus.COMPLETED && newStatus == Order.OrderStatus.CANCELLED) {
+            throw new RuntimeException("Completed order cannot be cancelled: " + order.getCode());
+        }
+        boolean statusChanged = order.getStatus() != newStatus;
+        order.setStatus(newStatus);
+
+        // If order is cancelled, restore stock và lượt dùng mã giảm giá (chỉ một lần); hoàn tất thì chốt xuất kho.
+        // Chuyển trạng thái giữ hàng thất bại nghĩa là đơn đã được hoàn kho/xuất kho: từ chối thay đổi
+        if (statusChanged && newStatus == Order.OrderStatus.CANCELLED) {
+            if (!inventoryService.release(order)) {
+                throw new RuntimeException("Order stock already released or committed: " + order.getCode());
+            }
+            discountService.releaseRedemption(order);
+        } else if (statusChanged && newStatus == Order.OrderStatus.COMPLETED) {
+            if (!inventoryService.commit(order)) {
+                throw new RuntimeException("Order stock already released or committed: " + order.getCode());
+            }
+        }
+
+        order = orderRepository.save(order);
+        if (statusChanged) {
+            emailService.sendOrderStatusChanged(order);
+        }
+        return mapToResponse(order);
     }
 
     @Transactional
     public OrderResponse updatePaymentStatus(Long id, String paymentStatus) {
-        Order order = orderRepository.findById(id)
+        Order order = orderRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + id));
 
         try {
             Order.PaymentStatus newStatus = Order.PaymentStatus.valueOf(paymentStatus.toUpperCase());
             order.setPaymentStatus(newStatus);
             
-            // If paid, update order status to PAID
-            if (newStatus == Order.PaymentStatus.PAID) {
+            // If paid, update order status to PAID (đơn đã hủy giữ nguyên trạng thái)
+            boolean becamePaid = false;
+            if (newStatus == Order.PaymentStatus.PAID && order.getStatus() != Order.OrderStatus.CANCELLED) {
+                becamePaid = order.getStatus() != Order.OrderStatus.PAID;
                 order.setStatus(Order.OrderStatus.PAID);
             }
             
             order = orderRepository.save(order);
+            if (becamePaid) {
+                emailService.sendOrderStatusChanged(order);
+            }
             return mapToResponse(order);
         } catch (IllegalArgumentException e) {
             throw new RuntimeException("Invalid payment status: " + paymentStatus);
         }
     }
 
-    public List<OrderResponse> getAllOrders() {
-        return orderRepository.findAllByOrderByCreatedAtDesc().stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    /**
+     * Tối đa limit đơn hàng mới nhất (không quá MAX_PAGE_SIZE): 2 truy vấn, IN (...) có giới hạn.
+     * Dùng searchOrders(...) để phân trang.
+     */
+    public List<OrderResponse> getAllOrders(int limit) {
+        return mapToResponses(orderRepository.findAllByOrderByCreatedAtDescIdDesc(
+                Limit.of(Math.min(Math.max(limit, 1), MAX_PAGE_SIZE))));
     }
 
     private OrderResponse mapToResponse(Order order) {
-        List<OrderItem> items = orderItemRepository.findByOrderId(order.getId());
-        
+        return mapToResponse(order, orderItemRepository.findWithProductByOrderIdIn(List.of(order.getId())));
+    }
+
+    // Nạp items của tất cả đơn hàng trong một truy vấn rồi nhóm theo order id
+    private List<OrderResponse> mapToResponses(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<OrderItem>> itemsByOrder = orderItemRepository
+                .findWithProductByOrderIdIn(orders.stream().map(Order::getId).toList()).stream()
+                .collect(Collectors.groupingBy(item -> item.getOrder().getId()));
+        return orders.stream()
+                .map(order -> mapToResponse(order, itemsByOrder.getOrDefault(order.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    private OrderResponse mapToResponse(Order order, List<OrderItem> items) {
         List<OrderItemResponse> itemResponses = items.stream()
                 .map(item -> OrderItemResponse.builder()
                         .productId(item.getProduct().getId())
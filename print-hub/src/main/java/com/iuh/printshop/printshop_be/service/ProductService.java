@@ -1,5 +1,6 @@
 package com.iuh.printshop.printshop_be.service;
 
+import com.iuh.printshop.printshop_be.cache.ProductCache;
 import com.iuh.printshop.printshop_be.dto.product.ProductPageResponse;
 import com.iuh.printshop.printshop_be.dto.product.ProductRequest;
 import com.iuh.printshop.printshop_be.dto.product.ProductResponse;
@@ -7,17 +8,23 @@ import com.iuh.printshop.printshop_be.dto.product.ProductSearchRequest;
 import com.iuh.printshop.printshop_be.entity.Brand;
 import com.iuh.printshop.printshop_be.entity.Category;
 import com.iuh.printshop.printshop_be.entity.Product;
+import com.iuh.printshop.printshop_be.entity.RatingStats;
+import com.iuh.printshop.printshop_be.event.ProductChangedEvent;
 import com.iuh.printshop.printshop_be.repository.BrandRepository;
 import com.iuh.printshop.printshop_be.repository.CategoryRepository;
 import com.iuh.printshop.printshop_be.repository.ProductRepository;
+import com.iuh.printshop.printshop_be.search.ProductSearchIndex;
+import com.iuh.printshop.printshop_be.specification.ProductCursor;
+import com.iuh.printshop.printshop_be.specification.ProductSortOption;
 import com.iuh.printshop.printshop_be.specification.ProductSpecification;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -26,16 +33,25 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final BrandRepository brandRepository;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${file.upload-dir}")
     private String uploadDir;
@@ -65,17 +81,13 @@ public class ProductService {
                 .category(category)
                 .brand(brand)
                 .build();
-        return convertToDto(productRepository.save(product));
-    }
-
-    public List<ProductResponse> getAllProducts() {
-        return productRepository.findAll().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.created(saved.getId()));
+        return convertToDto(saved);
     }
 
     public Optional<ProductResponse> getProductById(Integer id) {
-        return productRepository.findById(id).map(this::convertToDto);
+        return productCache.getById(id, key -> productRepository.findById(key).map(this::convertToDto));
     }
 
     public Optional<ProductResponse> updateProduct(Integer id, ProductRequest request) {
@@ -93,19 +105,57 @@ public class ProductService {
             product.setCategory(category);
             product.setBrand(brand);
 
-            return convertToDto(productRepository.save(product));
+            Product saved = productRepository.save(product);
+            eventPublisher.publishEvent(ProductChangedEvent.updated(saved.getId()));
+            return convertToDto(saved);
         });
     }
 
     public boolean deleteProduct(Integer id) {
         if (productRepository.existsById(id)) {
             productRepository.deleteById(id);
+            eventPublisher.publishEvent(ProductChangedEvent.deleted(id));
             return true;
         }
         return false;
     }
 
     public ProductPageResponse searchProducts(ProductSearchRequest request) {
+        return productCache.getSearch(request, () -> loadProductPage(request));
+    }
+
+    private ProductPageResponse loadProductPage(ProductSearchRequest request) {
+        int page = request.getPage() != null ? Math.max(request.getPage(), 0) : 0;
+        int size = request.getSize() != null ? Math.min(Math.max(request.getSize(), 1), MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+        boolean hasKeyword = request.getKeyword() != null && !request.getKeyword().trim().isEmpty();
+
+        ProductSortOption sort = ProductSortOption.from(request.getSortBy(),
+                hasKeyword ? ProductSortOption.RELEVANCE : ProductSortOption.NEWEST);
+        ProductCursor cursor = request.getCursor() != null && !request.getCursor().isEmpty()
+                ? ProductCursor.decode(request.getCursor())
+                : null;
+        if (cursor != null && cursor.sort() != sort) {
+            throw new RuntimeException("Cursor does not match sortBy " + sort.name().toLowerCase());
+        }
+        // Trang theo cursor không cần tổng số (client đã có từ trang đầu) -> mặc định bỏ COUNT(*)
+        boolean countTotal = request.getCountTotal() != null ? request.getCountTotal() : cursor == null;
+
+        // Keyword search: dùng chỉ mục trong bộ nhớ, truy vấn LIKE chỉ là phương án dự phòng
+        if (hasKeyword) {
+            Optional<ProductSearchIndex.SearchResult> result = productSearchIndex.search(
+                    request, sort, cursor, cursor != null ? 0 : page * size, size + 1);
+            if (result.isPresent()) {
+                return toPageResponse(result.get(), sort, cursor != null ? null : page, size, countTotal);
+            }
+        }
+
+        if (sort == ProductSortOption.RELEVANCE) {
+            if (cursor != null) {
+                throw new RuntimeException("Search index is not ready, please retry the search from the first page");
+            }
+            sort = ProductSortOption.NEWEST;
+        }
+
         // Build specification for filtering
         Specification<Product> spec = ProductSpecification.searchProducts(
             request.getKeyword(),
@@ -114,60 +164,88 @@ public class ProductService {
             request.getMinPrice(),
             request.getMaxPrice()
         );
+        Sort jpaSort = sort.toSort();
 
-        // Build sort
-        Sort sort = buildSort(request.getSortBy());
+        // Cursor: WHERE (sort, id) > (value, lastId) thay vì OFFSET; lấy thêm 1 dòng để biết còn trang sau
+        if (cursor != null) {
+            List<Product> rows = productRepository.findBy(spec.and(ProductSpecification.after(cursor)),
+                    query -> query.sortBy(jpaSort).limit(size + 1).all());
+            Long total = countTotal ? productRepository.count(spec) : null;
+            boolean hasNext = rows.size() > size;
+            return toPageResponse(hasNext ? rows.subList(0, size) : rows, hasNext, sort, null, size, total);
+        }
 
-        // Build pagination
-        Pageable pageable = PageRequest.of(
-            request.getPage() != null ? request.getPage() : 0,
-            request.getSize() != null ? request.getSize() : 20,
-            sort
-        );
+        if (countTotal) {
+            Page<Product> productPage = productRepository.findAll(spec, PageRequest.of(page, size, jpaSort));
+            return toPageResponse(productPage.getContent(), productPage.hasNext(), sort, page, size,
+                    productPage.getTotalElements());
+        }
 
-        // Execute query
-        Page<Product> productPage = productRepository.findAll(spec, pageable);
+        // Count-free: Slice lấy size + 1 dòng, không phát sinh COUNT(*)
+        Slice<Product> slice = productRepository.findBy(spec, query -> query.slice(PageRequest.of(page, size, jpaSort)));
+        return toPageResponse(slice.getContent(), slice.hasNext(), sort, page, size, null);
+    }
 
-        // Convert to DTO
-        List<ProductResponse> content = productPage.getContent().stream()
-            .map(this::convertToDto)
-            .collect(Collectors.toList());
+    // nextCursor luôn được trả về khi còn trang sau để client có thể chuyển sang phân trang keyset
+    private ProductPageResponse toPageResponse(List<Product> content, boolean hasNext, ProductSortOption sort,
+                                               Integer page, int size, Long total) {
+        String nextCursor = null;
+        if (hasNext && !content.isEmpty()) {
+            Product last = content.get(content.size() - 1);
+            nextCursor = new ProductCursor(sort, sort.valueOf(last), last.getId()).encode();
+        }
 
         return ProductPageResponse.builder()
-            .content(content)
-            .page(productPage.getNumber())
-            .size(productPage.getSize())
-            .totalElements(productPage.getTotalElements())
-            .totalPages(productPage.getTotalPages())
-            .first(productPage.isFirst())
-            .last(productPage.isLast())
+            .content(content.stream().map(this::convertToDto).collect(Collectors.toList()))
+            .page(page)
+            .size(size)
+            .totalElements(total)
+            .totalPages(total != null ? (int) ((total + size - 1) / size) : null)
+            .first(page != null && page == 0)
+            .last(!hasNext)
+            .nextCursor(nextCursor)
             .build();
     }
 
-    private Sort buildSort(String sortBy) {
-        if (sortBy == null || sortBy.isEmpty()) {
-            return Sort.by(Sort.Direction.DESC, "createdAt"); // Default: newest first
+    private ProductPageResponse toPageResponse(ProductSearchIndex.SearchResult result, ProductSortOption sort,
+                                               Integer page, int size, boolean countTotal) {
+        List<ProductSearchIndex.ScoredProduct> hits = result.products();
+        boolean hasNext = hits.size() > size;
+        if (hasNext) {
+            hits = hits.subList(0, size);
         }
 
-        switch (sortBy.toLowerCase()) {
-            case "price_asc":
-                return Sort.by(Sort.Direction.ASC, "price");
-            case "price_desc":
-                return Sort.by(Sort.Direction.DESC, "price");
-            case "name_asc":
-                return Sort.by(Sort.Direction.ASC, "name");
-            case "name_desc":
-                return Sort.by(Sort.Direction.DESC, "name");
-            case "newest":
-                return Sort.by(Sort.Direction.DESC, "createdAt");
-            case "oldest":
-                return Sort.by(Sort.Direction.ASC, "createdAt");
-            default:
-                return Sort.by(Sort.Direction.DESC, "createdAt");
+        // Giữ nguyên thứ tự trả về từ chỉ mục
+        List<Integer> ids = hits.stream().map(ProductSearchIndex.ScoredProduct::productId).collect(Collectors.toList());
+        Map<Integer, Product> productsById = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<ProductResponse> content = ids.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasNext && !hits.isEmpty()) {
+            ProductSearchIndex.ScoredProduct last = hits.get(hits.size() - 1);
+            nextCursor = new ProductCursor(sort, last.sortValue(), last.productId()).encode();
         }
+
+        Long total = countTotal ? result.totalElements() : null;
+        return ProductPageResponse.builder()
+            .content(content)
+            .page(page)
+            .size(size)
+            .totalElements(total)
+            .totalPages(total != null ? (int) ((total + size - 1) / size) : null)
+            .first(page != null && page == 0)
+            .last(!hasNext)
+            .nextCursor(nextCursor)
+            .build();
     }
 
     private ProductResponse convertToDto(Product product) {
+        RatingStats ratingStats = product.getRatingStats() != null ? product.getRatingStats() : new RatingStats();
         return ProductResponse.builder()
                 .id(product.getId())
                 .name(product.getName())
@@ -179,6 +257,9 @@ public class ProductService {
                 .categoryName(product.getCategory() != null ? product.getCategory().getName() : null)
                 .brandId(product.getBrand() != null ? product.getBrand().getId() : null)
                 .brandName(product.getBrand() != null ? product.getBrand().getName() : null)
+                .averageRating(ratingStats.getRatingAverage())
+                .reviewCount(ratingStats.getReviewCount())
+                .ratingDistribution(ratingStats.distribution())
                 .createdAt(product.getCreatedAt())
                 .updatedAt(product.getUpdatedAt())
                 .build();
@@ -1,25 +1,38 @@
 package com.iuh.printshop.printshop_be.service;
 
+import com.iuh.printshop.printshop_be.dto.order.OrderItemRequest;
+import com.iuh.printshop.printshop_be.dto.promotion.AppliedPromotionResponse;
 import com.iuh.printshop.printshop_be.dto.promotion.PromotionCalculateResponse;
+import com.iuh.printshop.printshop_be.dto.promotion.PromotionEvaluateRequest;
+import com.iuh.printshop.printshop_be.dto.promotion.PromotionEvaluateResponse;
+import com.iuh.printshop.printshop_be.dto.promotion.PromotionLineResponse;
 import com.iuh.printshop.printshop_be.dto.promotion.PromotionRequest;
 import com.iuh.printshop.printshop_be.dto.promotion.PromotionResponse;
 import com.iuh.printshop.printshop_be.entity.Category;
 import com.iuh.printshop.printshop_be.entity.Product;
 import com.iuh.printshop.printshop_be.entity.Promotion;
+import com.iuh.printshop.printshop_be.event.PromotionChangedEvent;
 import com.iuh.printshop.printshop_be.repository.CategoryRepository;
 import com.iuh.printshop.printshop_be.repository.ProductRepository;
 import com.iuh.printshop.printshop_be.repository.PromotionRepository;
+import com.iuh.printshop.printshop_be.service.promotion.CartLine;
+import com.iuh.printshop.printshop_be.service.promotion.CompiledPromotion;
+import com.iuh.printshop.printshop_be.service.promotion.PromotionEngine;
+import com.iuh.printshop.printshop_be.service.promotion.PromotionIndex;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +41,9 @@ public class PromotionService {
     private final PromotionRepository promotionRepository;
     private final CategoryRepository categoryRepository;
     private final ProductRepository productRepository;
+    private final PromotionIndex promotionIndex;
+    private final PromotionEngine promotionEngine;
+    private final ApplicationEventPublisher eventPublisher;
 
     public PromotionResponse createPromotion(PromotionRequest request) {
         Promotion promotion = Promotion.builder()
@@ -40,6 +56,8 @@ public class PromotionService {
                 .startDate(request.getStartDate())
                 .endDate(request.getEndDate())
                 .isActive(request.getIsActive() != null ? request.getIsActive() : true)
+                .exclusive(request.getExclusive() != null ? request.getExclusive() : false)
+                .stackGroup(request.getStackGroup())
                 .build();
 
         // Set applicable categories
@@ -64,7 +82,9 @@ public class PromotionService {
             promotion.setApplicableProducts(products);
         }
 
-        return convertToDto(promotionRepository.save(promotion));
+        Promotion saved = promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new PromotionChangedEvent(saved.getId()));
+        return convertToDto(saved);
     }
 
     public List<PromotionResponse> getAllPromotions() {
@@ -97,6 +117,13 @@ public class PromotionService {
             if (request.getIsActive() != null) {
                 promotion.setIsActive(request.getIsActive());
             }
+            if (request.getExclusive() != null) {
+                promotion.setExclusive(request.getExclusive());
+            }
+            // null = giữ nguyên nhóm; chuỗi rỗng = đưa về nhóm mặc định
+            if (request.getStackGroup() != null) {
+                promotion.setStackGroup(request.getStackGroup().isBlank() ? null : request.getStackGroup());
+            }
 
             // Update applicable categories
             if (request.getApplicableCategoryIds() != null) {
@@ -120,13 +147,16 @@ public class PromotionService {
                 promotion.setApplicableProducts(products);
             }
 
-            return convertToDto(promotionRepository.save(promotion));
+            Promotion saved = promotionRepository.save(promotion);
+            eventPublisher.publishEvent(new PromotionChangedEvent(saved.getId()));
+            return convertToDto(saved);
         });
     }
 
     public boolean deletePromotion(Integer id) {
         if (promotionRepository.existsById(id)) {
             promotionRepository.deleteById(id);
+            eventPublisher.publishEvent(new PromotionChangedEvent(id));
             return true;
         }
         return false;
@@ -137,65 +167,18 @@ public class PromotionService {
             List<Integer> productIds,
             List<Integer> categoryIds) {
 
-        LocalDateTime now = LocalDateTime.now();
-        List<Promotion> activePromotions = promotionRepository.findActivePromotions(now);
-
-        // Find applicable promotions
-        Promotion applicablePromotion = null;
-        BigDecimal maxDiscount = BigDecimal.ZERO;
-
-        for (Promotion promotion : activePromotions) {
-            if (!promotion.getIsActive()) {
-                continue;
-            }
-
-            // Check if promotion applies to this order
-            boolean isApplicable = false;
-
-            // Check category match
-            if (categoryIds != null && !categoryIds.isEmpty() &&
-                promotion.getApplicableCategories() != null && !promotion.getApplicableCategories().isEmpty()) {
-                Set<Integer> promotionCategoryIds = promotion.getApplicableCategories().stream()
-                        .map(Category::getId)
-                        .collect(Collectors.toSet());
-                if (categoryIds.stream().anyMatch(promotionCategoryIds::contains)) {
-                    isApplicable = true;
-                }
-            }
-
-            // Check product match
-            if (!isApplicable && productIds != null && !productIds.isEmpty() &&
-                promotion.getApplicableProducts() != null && !promotion.getApplicableProducts().isEmpty()) {
-                Set<Integer> promotionProductIds = promotion.getApplicableProducts().stream()
-                        .map(Product::getId)
-                        .collect(Collectors.toSet());
-                if (productIds.stream().anyMatch(promotionProductIds::contains)) {
-                    isApplicable = true;
-                }
-            }
-
-            // If no specific categories/products, promotion applies to all
-            if (!isApplicable &&
-                (promotion.getApplicableCategories() == null || promotion.getApplicableCategories().isEmpty()) &&
-                (promotion.getApplicableProducts() == null || promotion.getApplicableProducts().isEmpty())) {
-                isApplicable = true;
-            }
-
-            if (isApplicable) {
-                // Check minimum order value
-                if (promotion.getMinOrderValue() != null &&
-                    orderTotal.compareTo(promotion.getMinOrderValue()) < 0) {
-                    continue;
-                }
-
-                // Calculate discount amount
-                BigDecimal discountAmount = calculateDiscountAmount(promotion, orderTotal);
-
-                // Find the promotion with maximum discount
-                if (discountAmount.compareTo(maxDiscount) > 0) {
-                    maxDiscount = discountAmount;
-                    applicablePromotion = promotion;
-                }
+        // Khuyến mãi ứng viên lấy từ chỉ mục đã biên dịch: không truy vấn DB
+        List<CompiledPromotion> candidates = promotionIndex.findCandidates(productIds, categoryIds, LocalDateTime.now());
+        long total = CompiledPromotion.toMinor(orderTotal);
+
+        // Find the promotion with maximum discount
+        CompiledPromotion applicablePromotion = null;
+        long maxDiscount = 0;
+        for (CompiledPromotion promotion : candidates) {
+            long discountAmount = promotion.discountFor(total, total);
+            if (discountAmount > maxDiscount) {
+                maxDiscount = discountAmount;
+                applicablePromotion = promotion;
             }
         }
 
@@ -210,40 +193,78 @@ public class PromotionService {
                     .build();
         }
 
-        BigDecimal finalTotal = orderTotal.subtract(maxDiscount);
-
+        BigDecimal discount = CompiledPromotion.fromMinor(maxDiscount);
         return PromotionCalculateResponse.builder()
                 .originalTotal(orderTotal)
-                .discountAmount(maxDiscount)
-                .finalTotal(finalTotal)
-                .discountCode(applicablePromotion.getName())
-                .discountDescription(applicablePromotion.getDescription())
+                .discountAmount(discount)
+                .finalTotal(orderTotal.subtract(discount))
+                .discountCode(applicablePromotion.name())
+                .discountDescription(applicablePromotion.description())
                 .build();
     }
 
-    private BigDecimal calculateDiscountAmount(Promotion promotion, BigDecimal orderTotal) {
-        BigDecimal discountAmount;
-
-        if (promotion.getDiscountType() == Promotion.DiscountType.PERCENTAGE) {
-            // Calculate percentage discount
-            discountAmount = orderTotal.multiply(promotion.getDiscountValue())
-                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
-        } else {
-            // Fixed amount discount
-            discountAmount = promotion.getDiscountValue();
+    /**
+     * Tính khuyến mãi theo từng dòng giỏ hàng: giá và danh mục lấy từ DB (một truy vấn),
+     * khuyến mãi cộng dồn theo stackGroup, exclusive áp dụng một mình.
+     */
+    public PromotionEvaluateResponse evaluate(PromotionEvaluateRequest request) {
+        // Gộp các dòng trùng sản phẩm, giữ thứ tự client gửi
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItemRequest item : request.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
         }
-
-        // Apply max discount limit if exists
-        if (promotion.getMaxDiscount() != null && discountAmount.compareTo(promotion.getMaxDiscount()) > 0) {
-            discountAmount = promotion.getMaxDiscount();
+        Map<Integer, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<Product> lineProducts = new ArrayList<>(quantities.size());
+        List<CartLine> lines = new ArrayList<>(quantities.size());
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            Product product = products.get(entry.getKey());
+            if (product == null) {
+                throw new RuntimeException("Product not found: " + entry.getKey());
+            }
+            lineProducts.add(product);
+            lines.add(new CartLine(product.getId(),
+                    product.getCategory() != null ? product.getCategory().getId() : null,
+                    entry.getValue(),
+                    CompiledPromotion.toMinor(product.getPrice())));
         }
 
-        // Ensure discount doesn't exceed order total
-        if (discountAmount.compareTo(orderTotal) > 0) {
-            discountAmount = orderTotal;
+        PromotionEngine.Evaluation evaluation = promotionEngine.evaluate(lines, LocalDateTime.now());
+
+        List<PromotionLineResponse> lineResponses = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            CartLine line = lines.get(i);
+            long discount = evaluation.lineDiscounts()[i];
+            lineResponses.add(PromotionLineResponse.builder()
+                    .productId(line.productId())
+                    .productName(lineProducts.get(i).getName())
+                    .quantity(line.quantity())
+                    .unitPrice(CompiledPromotion.fromMinor(line.unitPrice()))
+                    .lineTotal(CompiledPromotion.fromMinor(line.amount()))
+                    .discountAmount(CompiledPromotion.fromMinor(discount))
+                    .finalTotal(CompiledPromotion.fromMinor(line.amount() - discount))
+                    .build());
         }
 
-        return discountAmount;
+        List<AppliedPromotionResponse> applied = evaluation.applied().stream()
+                .map(entry -> AppliedPromotionResponse.builder()
+                        .promotionId(entry.promotion().id())
+                        .name(entry.promotion().name())
+                        .description(entry.promotion().description())
+                        .stackGroup(entry.promotion().stackGroup().isEmpty() ? null : entry.promotion().stackGroup())
+                        .exclusive(entry.promotion().exclusive())
+                        .discountAmount(CompiledPromotion.fromMinor(entry.amount()))
+                        .build())
+                .collect(Collectors.toList());
+
+        return PromotionEvaluateResponse.builder()
+                .originalTotal(CompiledPromotion.fromMinor(evaluation.subtotal()))
+                .discountAmount(CompiledPromotion.fromMinor(evaluation.discount()))
+                .finalTotal(CompiledPromotion.fromMinor(evaluation.subtotal() - evaluation.discount()))
+                .appliedPromotions(applied)
+                .lines(lineResponses)
+                .build();
     }
 
     private PromotionResponse convertToDto(Promotion promotion) {
@@ -284,6 +305,8 @@ public class PromotionService {
                 .startDate(promotion.getStartDate())
                 .endDate(promotion.getEndDate())
                 .isActive(promotion.getIsActive())
+                .exclusive(Boolean.TRUE.equals(promotion.getExclusive()))
+                .stackGroup(promotion.getStackGroup())
                 .createdAt(promotion.getCreatedAt())
                 .updatedAt(promotion.getUpdatedAt())
                 .build();
@@ -0,0 +1,173 @@
+package com.iuh.printshop.printshop_be.service;
+
+import com.iuh.printshop.printshop_be.entity.RefreshToken;
+import com.iuh.printshop.printshop_be.entity.User;
+import com.iuh.printshop.printshop_be.repository.RefreshTokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cấp, xoay vòng (rotation) và thu hồi refresh token.
+ * - Token là chuỗi ngẫu nhiên 256 bit; DB chỉ lưu SHA-256 (cột unique) nên tra cứu là một lần tìm theo chỉ mục.
+ * - Mỗi lần refresh: token cũ chuyển ACTIVE -> ROTATED bằng UPDATE có điều kiện, token mới cùng family được cấp.
+ * - Token đã ROTATED/REVOKED được dùng lại: coi như bị lộ, thu hồi cả family.
+ * Các family đã thu hồi được giữ trong bộ nhớ tới khi hết hạn để từ chối ngay mà không ghi DB;
+ * DB vẫn là nguồn chính nên instance khác chưa biết thu hồi cũng từ chối nhờ UPDATE có điều kiện.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    @Value("${jwt.refresh-token.expiration}")
+    private long refreshExpiration;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // familyId -> hạn cuối cùng của family
+    private final Map<String, LocalDateTime> revokedFamilies = new ConcurrentHashMap<>();
+
+    public enum Result {
+        ROTATED,
+        INVALID,
+        EXPIRED,
+        REUSED
+    }
+
+    public record Rotation(Result result, User user, String refreshToken) {
+
+        static Rotation failed(Result result) {
+            return new Rotation(result, null, null);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        for (Object[] row : refreshTokenRepository.findRevokedFamilies(RefreshToken.Status.REVOKED, LocalDateTime.now())) {
+            revokedFamilies.put((String) row[0], (LocalDateTime) row[1]);
+        }
+        log.info("Loaded {} revoked refresh token families", revokedFamilies.size());
+    }
+
+    /**
+     * Cấp refresh token cho phiên đăng nhập mới (family mới).
+     */
+    @Transactional
+    public String issue(User user) {
+        return issue(user, UUID.randomUUID().toString());
+    }
+
+    @Transactional
+    public Rotation rotate(String rawToken) {
+        Optional<RefreshToken> found = refreshTokenRepository.findByTokenHashWithUser(hash(rawToken));
+        if (found.isEmpty()) {
+            return Rotation.failed(Result.INVALID);
+        }
+        RefreshToken current = found.get();
+        if (revokedFamilies.containsKey(current.getFamilyId())) {
+            return Rotation.failed(Result.REUSED);
+        }
+        if (current.getExpiresAt().isBefore(LocalDateTime.now())) {
+            return Rotation.failed(Result.EXPIRED);
+        }
+        if (refreshTokenRepository.markRotated(current.getId(), RefreshToken.Status.ACTIVE,
+                RefreshToken.Status.ROTATED, LocalDateTime.now()) == 0) {
+            log.warn("Refresh token reuse detected for user {}, revoking family {}",
+                    current.getUser().getId(), current.getFamilyId());
+            revokeFamily(current.getFamilyId(), current.getExpiresAt());
+            return Rotation.failed(Result.REUSED);
+        }
+
+        User user = current.getUser();
+        if (!Boolean.TRUE.equals(user.getIsActive())) {
+            revokeFamily(current.getFamilyId(), current.getExpiresAt());
+            return Rotation.failed(Result.INVALID);
+        }
+        return new Rotation(Result.ROTATED, user, issue(user, current.getFamilyId()));
+    }
+
+    /**
+     * Đăng xuất: thu hồi cả family của token. Token không tồn tại được bỏ qua.
+     */
+    @Transactional
+    public void revoke(String rawToken) {
+        refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .ifPresent(token -> revokeFamily(token.getFamilyId(), token.getExpiresAt()));
+    }
+
+    /**
+     * Thu hồi mọi phiên của user (đổi mật khẩu, khóa tài khoản).
+     */
+    @Transactional
+    public void revokeAll(Integer userId) {
+        LocalDateTime maxExpiry = LocalDateTime.now().plusNanos(refreshExpiration * 1_000_000);
+        List<String> families = refreshTokenRepository.findActiveFamilies(userId, RefreshToken.Status.ACTIVE);
+        families.forEach(familyId -> revokeFamily(familyId, maxExpiry));
+    }
+
+    @Transactional
+    public void deleteAll(Integer userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-token.cleanup-ms:3600000}",
+            initialDelayString = "${jwt.refresh-token.cleanup-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted = refreshTokenRepository.deleteExpired(now);
+        revokedFamilies.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+        log.debug("Purged {} expired refresh tokens", deleted);
+    }
+
+    private String issue(User user, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(hash(rawToken))
+                .familyId(familyId)
+                .user(user)
+                .expiresAt(LocalDateTime.now().plusNanos(refreshExpiration * 1_000_000))
+                .build());
+        return rawToken;
+    }
+
+    private void revokeFamily(String familyId, LocalDateTime expiresAt) {
+        refreshTokenRepository.revokeFamily(familyId, RefreshToken.Status.REVOKED, LocalDateTime.now());
+        revokedFamilies.merge(familyId, expiresAt, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawToken.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
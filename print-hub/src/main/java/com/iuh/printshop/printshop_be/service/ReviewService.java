@@ -1,35 +1,47 @@
 package com.iuh.printshop.printshop_be.service;
 
+import com.iuh.printshop.printshop_be.dto.review.ReviewCursor;
+import com.iuh.printshop.printshop_be.dto.review.ReviewPageResponse;
 import com.iuh.printshop.printshop_be.dto.review.ReviewRequest;
 import com.iuh.printshop.printshop_be.dto.review.ReviewResponse;
 import com.iuh.printshop.printshop_be.entity.Product;
 import com.iuh.printshop.printshop_be.entity.Review;
 import com.iuh.printshop.printshop_be.entity.User;
+import com.iuh.printshop.printshop_be.event.ProductChangedEvent;
 import com.iuh.printshop.printshop_be.repository.ProductRepository;
 import com.iuh.printshop.printshop_be.repository.ReviewRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ReviewService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ReviewRepository reviewRepository;
     private final ProductRepository productRepository;
     private final UserService userService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Lấy tất cả reviews của một sản phẩm
      */
     public List<ReviewResponse> getReviewsByProductId(Integer productId) {
-        List<Review> reviews = reviewRepository.findByProductId(productId);
-        return reviews.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return reviewRepository.findResponses(productId, null, null, null, null, null, Limit.unlimited());
+    }
+
+    /**
+     * Lấy reviews của một sản phẩm theo trang (keyset theo createdAt), có lọc theo số sao
+     */
+    public ReviewPageResponse getReviewsByProductId(Integer productId, Integer rating, Integer minRating,
+                                                    String cursor, int size) {
+        return findPage(productId, null, rating, minRating, cursor, size);
     }
 
     /**
@@ -59,7 +71,11 @@ public class ReviewService {
                 .build();
 
         review = reviewRepository.save(review);
-        return mapToResponse(review);
+        // Tạo response trước: applyRatingDelta xóa persistence context, các entity sau đó bị detach
+        ReviewResponse response = mapToResponse(review);
+        productRepository.applyRatingDelta(product.getId(), 1, review.getRating(), review.getRating(), 0);
+        eventPublisher.publishEvent(ProductChangedEvent.ratingChanged(product.getId()));
+        return response;
     }
 
     /**
@@ -79,12 +95,19 @@ public class ReviewService {
         }
 
         // Cập nhật
+        int oldRating = review.getRating();
         review.setRating(request.getRating());
         review.setTitle(request.getTitle());
         review.setContent(request.getContent());
 
         review = reviewRepository.save(review);
-        return mapToResponse(review);
+        ReviewResponse response = mapToResponse(review);
+        if (oldRating != review.getRating()) {
+            Integer productId = review.getProduct().getId();
+            productRepository.applyRatingDelta(productId, 0, review.getRating() - oldRating, review.getRating(), oldRating);
+            eventPublisher.publishEvent(ProductChangedEvent.ratingChanged(productId));
+        }
+        return response;
     }
 
     /**
@@ -107,7 +130,10 @@ public class ReviewService {
             throw new RuntimeException("You can only delete your own review");
         }
 
+        Integer productId = review.getProduct().getId();
         reviewRepository.delete(review);
+        productRepository.applyRatingDelta(productId, -1, -review.getRating(), 0, review.getRating());
+        eventPublisher.publishEvent(ProductChangedEvent.ratingChanged(productId));
     }
 
     /**
@@ -115,11 +141,41 @@ public class ReviewService {
      */
     public List<ReviewResponse> getMyReviews() {
         User user = userService.getCurrentUser();
+        return reviewRepository.findResponses(null, user.getId(), null, null, null, null, Limit.unlimited());
+    }
+
+    /**
+     * Lấy reviews của user hiện tại theo trang
+     */
+    public ReviewPageResponse getMyReviews(Integer rating, Integer minRating, String cursor, int size) {
+        User user = userService.getCurrentUser();
+        return findPage(null, user.getId(), rating, minRating, cursor, size);
+    }
 
-        List<Review> reviews = reviewRepository.findByUserId(user.getId());
-        return reviews.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    private ReviewPageResponse findPage(Integer productId, Integer userId, Integer rating, Integer minRating,
+                                        String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        ReviewCursor after = cursor != null && !cursor.isEmpty() ? ReviewCursor.decode(cursor) : null;
+
+        // Lấy thêm 1 dòng để biết còn trang sau
+        List<ReviewResponse> rows = reviewRepository.findResponses(productId, userId, rating, minRating,
+                after != null ? after.createdAt() : null,
+                after != null ? after.id() : null,
+                Limit.of(pageSize + 1));
+        boolean hasNext = rows.size() > pageSize;
+        List<ReviewResponse> content = hasNext ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            ReviewResponse last = content.get(content.size() - 1);
+            nextCursor = new ReviewCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return ReviewPageResponse.builder()
+                .content(content)
+                .size(pageSize)
+                .last(!hasNext)
+                .nextCursor(nextCursor)
+                .build();
     }
 
     /**
@@ -5,9 +5,11 @@ import com.iuh.printshop.printshop_be.dto.user.UpdateProfileRequest;
 import com.iuh.printshop.printshop_be.dto.user.UserResponse;
 import com.iuh.printshop.printshop_be.entity.Role;
 import com.iuh.printshop.printshop_be.entity.User;
+import com.iuh.printshop.printshop_be.event.UserChangedEvent;
 import com.iuh.printshop.printshop_be.repository.RoleRepository;
 import com.iuh.printshop.printshop_be.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -29,6 +31,8 @@ public class UserService implements UserDetailsService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RefreshTokenService refreshTokenService;
 
     @Override
     @Transactional(readOnly = true)
@@ -94,11 +98,16 @@ public class UserService implements UserDetailsService {
         if (userUpdate.getDefaultAddress() != null) {
             user.setDefaultAddress(userUpdate.getDefaultAddress());
         }
-        if (userUpdate.getIsActive() != null) {
+        if (userUpdate.getIsActive() != null && !userUpdate.getIsActive().equals(user.getIsActive())) {
             user.setIsActive(userUpdate.getIsActive());
+            user.bumpTokenVersion();
+            if (!user.getIsActive()) {
+                refreshTokenService.revokeAll(user.getId());
+            }
         }
 
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId(), savedUser.getEmail()));
         return convertToUserResponse(savedUser);
     }
 
@@ -116,17 +125,21 @@ public class UserService implements UserDetailsService {
                         .orElseThrow(() -> new RuntimeException("Role not found: " + roleName)))
                 .collect(Collectors.toSet());
         user.setRoles(roles);
+        // Token cũ mang roles cũ trong claims
+        user.bumpTokenVersion();
 
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId(), savedUser.getEmail()));
         return convertToUserResponse(savedUser);
     }
 
     @Transactional
     public void deleteUser(Integer id) {
-        if (!userRepository.existsById(id)) {
-            throw new RuntimeException("User not found with id: " + id);
-        }
-        userRepository.deleteById(id);
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+        refreshTokenService.deleteAll(user.getId());
+        userRepository.delete(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), user.getEmail()));
     }
 
     /**
@@ -172,6 +185,7 @@ public class UserService implements UserDetailsService {
         }
 
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId(), savedUser.getEmail()));
         return convertToUserResponse(savedUser);
     }
 
@@ -194,7 +208,11 @@ public class UserService implements UserDetailsService {
 
         // Cập nhật mật khẩu mới
         user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
+        // Đổi mật khẩu đăng xuất mọi phiên đang dùng token cũ
+        user.bumpTokenVersion();
         userRepository.save(user);
+        refreshTokenService.revokeAll(user.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), user.getEmail()));
     }
 
     private UserResponse convertToUserResponse(User user) {
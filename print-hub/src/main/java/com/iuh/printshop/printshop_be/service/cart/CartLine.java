@@ -0,0 +1,41 @@
+package com.iuh.printshop.printshop_be.service.cart;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Một dòng giỏ hàng trong working set (bất biến). Mỗi sản phẩm chỉ có một dòng nên productId là định danh dòng.
+ * Giá lưu dạng số nguyên đơn vị nhỏ nhất (1/100, khớp scale 2 của cột price_at_add) để cộng trừ tổng không cấp phát.
+ */
+public record CartLine(Integer productId, String productName, int quantity, long priceMinor) {
+
+    public static final int SCALE = 2;
+
+    public static CartLine of(Integer productId, String productName, int quantity, BigDecimal priceAtAdd) {
+        return new CartLine(productId, productName, quantity, toMinor(priceAtAdd));
+    }
+
+    public CartLine withQuantity(int newQuantity) {
+        return new CartLine(productId, productName, newQuantity, priceMinor);
+    }
+
+    public long subtotalMinor() {
+        return Math.multiplyExact(priceMinor, quantity);
+    }
+
+    public BigDecimal priceAtAdd() {
+        return toAmount(priceMinor);
+    }
+
+    public BigDecimal subtotal() {
+        return toAmount(subtotalMinor());
+    }
+
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toAmount(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+}
@@ -0,0 +1,111 @@
+package com.iuh.printshop.printshop_be.service.cart;
+
+import com.iuh.printshop.printshop_be.entity.Cart;
+import com.iuh.printshop.printshop_be.entity.CartItem;
+import com.iuh.printshop.printshop_be.entity.User;
+import com.iuh.printshop.printshop_be.repository.CartRepository;
+import com.iuh.printshop.printshop_be.repository.ProductRepository;
+import com.iuh.printshop.printshop_be.repository.UserRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Đọc/ghi giỏ hàng giữa CartState và bảng carts/cart_items, mỗi lần một transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class CartPersistence {
+
+    private final CartRepository cartRepository;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+
+    /**
+     * Một truy vấn fetch join carts + cart_items + products; giỏ chưa có trong DB thì trả về giỏ rỗng.
+     */
+    @Transactional(readOnly = true)
+    public CartState load(Integer userId) {
+        return cartRepository.findByUserIdWithItems(userId)
+                .map(cart -> new CartState(userId, cart.getId(), cart.getItems().stream()
+                        .map(item -> CartLine.of(item.getProduct().getId(), item.getProduct().getName(),
+                                item.getQuantity(), item.getPriceAtAdd()))
+                        .toList()))
+                .orElseGet(() -> {
+                    // Không tạo user giả cho id lạ: chỉ đọc, bảng carts chỉ được ghi khi giỏ có hàng
+                    if (!userRepository.existsById(userId)) {
+                        throw new EntityNotFoundException("User not found: " + userId);
+                    }
+                    return new CartState(userId, null, List.of());
+                });
+    }
+
+    /**
+     * Ghi đè nội dung giỏ trong DB bằng snapshot: cập nhật dòng đã có, thêm dòng mới, xóa dòng không còn.
+     * Luôn chạy trong transaction riêng: có thể được gọi từ afterCommit của transaction checkout.
+     * @return id của giỏ hàng trong bảng carts
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Integer save(CartState.Snapshot snapshot) {
+        Cart cart = cartRepository.findByUserIdWithItems(snapshot.userId()).orElse(null);
+        if (cart == null) {
+            if (snapshot.lines().isEmpty()) {
+                return null;
+            }
+            User user = userRepository.getReferenceById(snapshot.userId());
+            cart = Cart.builder().user(user).total(BigDecimal.ZERO).build();
+        }
+
+        Map<Integer, CartLine> wanted = new HashMap<>();
+        for (CartLine line : snapshot.lines()) {
+            wanted.put(line.productId(), line);
+        }
+        for (Iterator<CartItem> it = cart.getItems().iterator(); it.hasNext(); ) {
+            CartItem item = it.next();
+            CartLine line = wanted.remove(item.getProduct().getId());
+            if (line == null) {
+                it.remove(); // orphanRemoval = true → xóa dòng
+            } else {
+                item.setQuantity(line.quantity());
+                item.setPriceAtAdd(line.priceAtAdd());
+            }
+        }
+        for (CartLine line : snapshot.lines()) {
+            if (wanted.containsKey(line.productId())) {
+                cart.getItems().add(CartItem.builder()
+                        .cart(cart)
+                        .product(productRepository.getReferenceById(line.productId()))
+                        .quantity(line.quantity())
+                        .priceAtAdd(line.priceAtAdd())
+                        .build());
+            }
+        }
+        // Tổng đã được CartState duy trì tăng dần, không cộng lại từ các dòng
+        cart.setTotal(CartLine.toAmount(snapshot.totalMinor()));
+        return cartRepository.save(cart).getId();
+    }
+
+    public boolean userExists(Integer userId) {
+        return userRepository.existsById(userId);
+    }
+
+    /**
+     * Sản phẩm trong các dòng đã không còn trong bảng products (dòng giỏ không thể ghi).
+     */
+    public Set<Integer> findMissingProductIds(List<CartLine> lines) {
+        Set<Integer> missing = new HashSet<>();
+        lines.forEach(line -> missing.add(line.productId()));
+        productRepository.findAllById(missing).forEach(product -> missing.remove(product.getId()));
+        return missing;
+    }
+}
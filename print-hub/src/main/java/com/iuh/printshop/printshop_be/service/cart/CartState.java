@@ -0,0 +1,153 @@
+package com.iuh.printshop.printshop_be.service.cart;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Giỏ hàng trong bộ nhớ. Mọi thay đổi khóa trên chính đối tượng, tăng version và cập nhật tổng tiền
+ * theo chênh lệch của dòng thay đổi (O(1), không duyệt lại cả giỏ).
+ * Dữ liệu đã ghi xuống DB đến version persistedVersion, lớn hơn nghĩa là còn "dirty".
+ */
+public final class CartState {
+
+    // Khóa riêng cho việc ghi xuống DB: flush định kỳ và flush khi checkout không ghi cùng lúc,
+    // còn thay đổi giỏ (khóa trên this) không phải chờ I/O
+    final Object flushLock = new Object();
+
+    private final Integer userId;
+    private Integer cartId;
+    private final Map<Integer, CartLine> lines = new LinkedHashMap<>();
+    private long totalMinor;
+    private long version;
+    private long persistedVersion;
+    private int failedFlushes;
+
+    public CartState(Integer userId, Integer cartId, List<CartLine> lines) {
+        this.userId = userId;
+        this.cartId = cartId;
+        for (CartLine line : lines) {
+            this.lines.put(line.productId(), line);
+            totalMinor += line.subtotalMinor();
+        }
+    }
+
+    /**
+     * Thêm sản phẩm; đã có dòng cùng sản phẩm thì cộng số lượng và giữ giá lúc thêm cũ.
+     */
+    public synchronized void add(CartLine line, int maxLines) {
+        CartLine existing = lines.get(line.productId());
+        if (existing == null && lines.size() >= maxLines) {
+            throw new IllegalStateException("Cart is full: at most " + maxLines + " products");
+        }
+        replace(existing, existing == null ? line : existing.withQuantity(existing.quantity() + line.quantity()));
+    }
+
+    public synchronized void addAll(Collection<CartLine> added) {
+        for (CartLine line : added) {
+            add(line, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Đặt số lượng; quantity <= 0 thì xóa dòng.
+     */
+    public synchronized void setQuantity(Integer productId, int quantity) {
+        CartLine existing = requireLine(productId);
+        replace(existing, quantity <= 0 ? null : existing.withQuantity(quantity));
+    }
+
+    public synchronized void remove(Integer productId) {
+        replace(requireLine(productId), null);
+    }
+
+    /**
+     * Chạy nhiều thay đổi như một thao tác nguyên tử: nếu một thay đổi ném lỗi, giỏ trở về trạng thái trước đó.
+     */
+    public synchronized void atomically(Consumer<CartState> changes) {
+        Map<Integer, CartLine> savedLines = new LinkedHashMap<>(lines);
+        long savedTotal = totalMinor;
+        long savedVersion = version;
+        try {
+            changes.accept(this);
+        } catch (RuntimeException e) {
+            lines.clear();
+            lines.putAll(savedLines);
+            totalMinor = savedTotal;
+            version = savedVersion;
+            throw e;
+        }
+    }
+
+    /**
+     * Xóa các dòng của những sản phẩm đã cho nếu có (không lỗi khi dòng không tồn tại).
+     */
+    public synchronized void removeAll(Collection<Integer> productIds) {
+        for (Integer productId : productIds) {
+            CartLine line = lines.get(productId);
+            if (line != null) {
+                replace(line, null);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        lines.clear();
+        totalMinor = 0;
+        version++;
+    }
+
+    private CartLine requireLine(Integer productId) {
+        CartLine line = lines.get(productId);
+        if (line == null) {
+            throw new EntityNotFoundException("Cart item not found");
+        }
+        return line;
+    }
+
+    // Đổi một dòng và cộng chênh lệch thành tiền vào tổng
+    private void replace(CartLine oldLine, CartLine newLine) {
+        long delta = (newLine != null ? newLine.subtotalMinor() : 0) - (oldLine != null ? oldLine.subtotalMinor() : 0);
+        if (newLine != null) {
+            lines.put(newLine.productId(), newLine);
+        } else if (oldLine != null) {
+            lines.remove(oldLine.productId());
+        }
+        totalMinor = Math.addExact(totalMinor, delta);
+        version++;
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(userId, cartId, new ArrayList<>(lines.values()), totalMinor, version);
+    }
+
+    /**
+     * Ghi nhận lần flush thành công; true nếu không còn thay đổi nào chưa ghi.
+     */
+    synchronized boolean markPersisted(Snapshot snapshot, Integer savedCartId) {
+        cartId = savedCartId;
+        persistedVersion = Math.max(persistedVersion, snapshot.version());
+        failedFlushes = 0;
+        return persistedVersion == version;
+    }
+
+    synchronized int markFlushFailed() {
+        return ++failedFlushes;
+    }
+
+    public synchronized boolean isDirty() {
+        return version > persistedVersion;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public record Snapshot(Integer userId, Integer cartId, List<CartLine> lines, long totalMinor, long version) {
+    }
+}
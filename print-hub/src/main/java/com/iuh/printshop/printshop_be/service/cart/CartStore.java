@@ -0,0 +1,30 @@
+package com.iuh.printshop.printshop_be.service.cart;
+
+import java.util.function.Consumer;
+
+/**
+ * Working set giỏ hàng theo user. Thay đổi chỉ ghi vào bộ nhớ rồi được gộp và ghi xuống carts/cart_items
+ * sau (write-behind); {@link #flush} ghi ngay khi cần bền vững (checkout).
+ */
+public interface CartStore {
+
+    /**
+     * Giỏ hàng của user: từ bộ nhớ, hoặc tải từ DB ở lần truy cập đầu.
+     */
+    CartState get(Integer userId);
+
+    /**
+     * Áp dụng thay đổi lên giỏ đang nằm trong working set rồi đánh dấu cần ghi xuống DB.
+     * changes có thể được chạy lại trên một bản khác nếu giỏ bị evict và tải lại giữa chừng,
+     * nên chỉ được thay đổi CartState nhận vào.
+     * @return giỏ hàng đã được thay đổi
+     */
+    CartState update(Integer userId, Consumer<CartState> changes);
+
+    /**
+     * Ghi ngay các thay đổi đang chờ của user (đồng bộ).
+     */
+    void flush(Integer userId);
+
+    void flushAll();
+}
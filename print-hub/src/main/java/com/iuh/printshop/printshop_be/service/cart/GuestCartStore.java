@@ -0,0 +1,70 @@
+package com.iuh.printshop.printshop_be.service.cart;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Giỏ hàng khách vãng lai, khóa bằng cart token ngẫu nhiên (128 bit, không đoán được).
+ * Chỉ nằm trong bộ nhớ: giới hạn số giỏ, hết hạn khi không truy cập, không bao giờ ghi DB;
+ * nội dung chỉ được lưu khi khách đăng nhập (gộp vào giỏ của user) hoặc đặt hàng.
+ */
+@Component
+public class GuestCartStore {
+
+    private static final int TOKEN_BYTES = 16;
+
+    private final Cache<String, CartState> carts;
+    private final int maxLines;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public GuestCartStore(
+            @Value("${app.cart.guest.max-size:50000}") long maxSize,
+            @Value("${app.cart.guest.idle-seconds:86400}") long idleSeconds,
+            @Value("${app.cart.guest.max-lines:100}") int maxLines) {
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .build();
+        this.maxLines = maxLines;
+    }
+
+    /**
+     * Tạo giỏ rỗng và trả về token của giỏ.
+     */
+    public String create() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        carts.put(token, new CartState(null, null, List.of()));
+        return token;
+    }
+
+    public Optional<CartState> find(String token) {
+        return token == null ? Optional.empty() : Optional.ofNullable(carts.getIfPresent(token));
+    }
+
+    /**
+     * Lấy và xóa giỏ trong một thao tác nguyên tử: hai request gộp cùng token không gộp hai lần.
+     */
+    public Optional<CartState> take(String token) {
+        return token == null ? Optional.empty() : Optional.ofNullable(carts.asMap().remove(token));
+    }
+
+    public void remove(String token) {
+        if (token != null) {
+            carts.invalidate(token);
+        }
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+}
@@ -0,0 +1,164 @@
+package com.iuh.printshop.printshop_be.service.cart;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * CartStore trong bộ nhớ với ghi trễ (write-behind):
+ * - working: Caffeine userId -> CartState (giới hạn kích thước, hết hạn khi không truy cập).
+ * - dirty: giỏ có thay đổi chưa ghi; giữ tham chiếu riêng nên giỏ bị evict khỏi working vẫn không mất thay đổi.
+ * Mỗi chu kỳ app.cart.flush-ms, mỗi giỏ dirty được ghi một lần bất kể đã thay đổi bao nhiêu lần (gộp ghi).
+ * Thay đổi đi qua update(): giỏ bị evict rồi tải lại giữa chừng không tạo ra hai bản cùng được ghi.
+ * Một instance sở hữu working set: triển khai nhiều instance cần sticky session theo user.
+ */
+@Slf4j
+@Component
+public class InMemoryCartStore implements CartStore {
+
+    private static final int MAX_FAILED_FLUSHES = 5;
+
+    private final CartPersistence persistence;
+    private final Cache<Integer, CartState> working;
+    private final Map<Integer, CartState> dirty = new ConcurrentHashMap<>();
+
+    public InMemoryCartStore(
+            CartPersistence persistence,
+            @Value("${app.cart.max-size:100000}") long maxSize,
+            @Value("${app.cart.idle-seconds:1800}") long idleSeconds) {
+        this.persistence = persistence;
+        this.working = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .build();
+    }
+
+    @Override
+    public CartState get(Integer userId) {
+        return working.get(userId, id -> {
+            // Giỏ bị evict nhưng chưa ghi xong: dùng lại bản trong bộ nhớ thay vì đọc bản cũ từ DB
+            CartState pending = dirty.get(id);
+            return pending != null ? pending : persistence.load(id);
+        });
+    }
+
+    @Override
+    public CartState update(Integer userId, Consumer<CartState> changes) {
+        while (true) {
+            CartState state = get(userId);
+            changes.accept(state);
+            if (markDirty(state)) {
+                return state;
+            }
+            // Giỏ sạch bị evict trong lúc thay đổi và một request khác đã tải bản mới: làm lại trên bản đó
+            log.debug("Cart of user {} was reloaded concurrently, retrying update", userId);
+        }
+    }
+
+    /**
+     * Đưa giỏ vào dirty chỉ khi nó vẫn là bản trong working (hoặc working chưa có bản nào).
+     * Chạy trong compute của cùng khóa với loader của get(), nên get() không thể tải bản cũ từ DB xen giữa.
+     */
+    private boolean markDirty(CartState state) {
+        boolean[] accepted = new boolean[1];
+        working.asMap().compute(state.getUserId(), (id, current) -> {
+            if (current != null && current != state) {
+                return current;
+            }
+            dirty.put(id, state);
+            accepted[0] = true;
+            return state;
+        });
+        return accepted[0];
+    }
+
+    @Override
+    public void flush(Integer userId) {
+        CartState state = dirty.get(userId);
+        if (state != null) {
+            flush(state);
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.cart.flush-ms:2000}")
+    public void flushAll() {
+        for (CartState state : dirty.values()) {
+            flush(state);
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flushAll();
+        log.info("Flushed cart working set on shutdown ({} carts still dirty)", dirty.size());
+    }
+
+    private void flush(CartState state) {
+        synchronized (state.flushLock) {
+            if (state.isDirty()) {
+                doFlush(state);
+            } else {
+                dirty.remove(state.getUserId(), state);
+            }
+        }
+    }
+
+    private void doFlush(CartState state) {
+        CartState.Snapshot snapshot = state.snapshot();
+        try {
+            Integer cartId = persistence.save(snapshot);
+            if (state.markPersisted(snapshot, cartId)) {
+                // Có thể đã có thay đổi mới xen vào sau khi kiểm tra: markDirty sẽ đưa giỏ trở lại
+                dirty.remove(state.getUserId(), state);
+                if (state.isDirty()) {
+                    dirty.putIfAbsent(state.getUserId(), state);
+                }
+            }
+        } catch (RuntimeException e) {
+            int failures = state.markFlushFailed();
+            if (failures >= MAX_FAILED_FLUSHES) {
+                repair(state, failures, e);
+            } else {
+                log.warn("Failed to flush cart of user {} (attempt {}): {}",
+                        state.getUserId(), failures, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lỗi lặp lại: chỉ bỏ những dòng không thể ghi (sản phẩm đã bị xóa), phần còn lại của giỏ được ghi ở chu kỳ sau.
+     * User không còn tồn tại thì bỏ cả giỏ; lỗi khác (vd. DB không truy cập được) thì tiếp tục thử lại.
+     */
+    private void repair(CartState state, int failures, RuntimeException cause) {
+        try {
+            if (!persistence.userExists(state.getUserId())) {
+                dirty.remove(state.getUserId(), state);
+                working.asMap().remove(state.getUserId(), state);
+                log.error("Dropping cart of deleted user {} after {} failed flushes", state.getUserId(), failures);
+                return;
+            }
+            Set<Integer> missing = persistence.findMissingProductIds(state.snapshot().lines());
+            if (!missing.isEmpty()) {
+                state.removeAll(missing);
+                log.warn("Removed deleted products {} from cart of user {} after {} failed flushes",
+                        missing, state.getUserId(), failures);
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.debug("Could not inspect unflushable cart of user {}: {}", state.getUserId(), e.getMessage());
+        }
+        log.error("Failed to flush cart of user {} (attempt {}), will keep retrying: {}",
+                state.getUserId(), failures, cause.getMessage());
+    }
+}
@@ -0,0 +1,149 @@
+package com.iuh.printshop.printshop_be.service.email;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Template đã biên dịch: các đoạn tĩnh xen kẽ với biến, được phân tích một lần lúc khởi động.
+ * Cú pháp: {{name}} chèn giá trị đã escape HTML, {{{name}}} chèn nguyên văn (HTML đã dựng sẵn, Fragment).
+ * literals.length == names.length + 1: render = literals[0] + var[0] + literals[1] + ... + literals[n].
+ */
+public final class EmailTemplate {
+
+    /**
+     * Giá trị tự ghi vào buffer (vd. danh sách dòng hàng) thay vì tạo String trung gian.
+     */
+    @FunctionalInterface
+    public interface Fragment {
+        void writeTo(StringBuilder out);
+    }
+
+    private final String name;
+    private final String[] literals;
+    private final String[] names;
+    private final boolean[] raw;
+    private final int staticLength;
+
+    private EmailTemplate(String name, List<String> literals, List<String> names, List<Boolean> raw) {
+        this.name = name;
+        this.literals = literals.toArray(String[]::new);
+        this.names = names.toArray(String[]::new);
+        this.raw = new boolean[raw.size()];
+        for (int i = 0; i < this.raw.length; i++) {
+            this.raw[i] = raw.get(i);
+        }
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.staticLength = length;
+    }
+
+    public static EmailTemplate compile(String name, String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Boolean> raw = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = source.indexOf("{{", position);
+            if (open < 0) {
+                break;
+            }
+            boolean isRaw = source.startsWith("{{{", open);
+            String closing = isRaw ? "}}}" : "}}";
+            int start = open + (isRaw ? 3 : 2);
+            int close = source.indexOf(closing, start);
+            if (close < 0) {
+                throw new IllegalStateException("Template " + name + ": thiếu '" + closing + "' tại vị trí " + open);
+            }
+            String variable = source.substring(start, close).trim();
+            if (variable.isEmpty()) {
+                throw new IllegalStateException("Template " + name + ": tên biến rỗng tại vị trí " + open);
+            }
+            literals.add(source.substring(position, open));
+            names.add(variable);
+            raw.add(isRaw);
+            position = close + closing.length();
+        }
+        literals.add(source.substring(position));
+        return new EmailTemplate(name, literals, names, raw);
+    }
+
+    /**
+     * Ghép template con vào vị trí biến raw {{{slot}}} (vd. nội dung vào layout) thành một template phẳng.
+     */
+    public EmailTemplate inline(String slot, EmailTemplate body) {
+        List<String> mergedLiterals = new ArrayList<>();
+        List<String> mergedNames = new ArrayList<>();
+        List<Boolean> mergedRaw = new ArrayList<>();
+        StringBuilder pending = new StringBuilder(literals[0]);
+        boolean found = false;
+        for (int i = 0; i < names.length; i++) {
+            if (raw[i] && names[i].equals(slot)) {
+                found = true;
+                pending.append(body.literals[0]);
+                for (int j = 0; j < body.names.length; j++) {
+                    mergedLiterals.add(pending.toString());
+                    mergedNames.add(body.names[j]);
+                    mergedRaw.add(body.raw[j]);
+                    pending.setLength(0);
+                    pending.append(body.literals[j + 1]);
+                }
+            } else {
+                mergedLiterals.add(pending.toString());
+                mergedNames.add(names[i]);
+                mergedRaw.add(raw[i]);
+                pending.setLength(0);
+            }
+            pending.append(literals[i + 1]);
+        }
+        if (!found) {
+            throw new IllegalStateException("Template " + name + " không có {{{" + slot + "}}}");
+        }
+        mergedLiterals.add(pending.toString());
+        return new EmailTemplate(body.name, mergedLiterals, mergedNames, mergedRaw);
+    }
+
+    public void renderTo(StringBuilder out, Map<String, ?> model) {
+        out.append(literals[0]);
+        for (int i = 0; i < names.length; i++) {
+            Object value = model.get(names[i]);
+            if (value instanceof Fragment fragment) {
+                fragment.writeTo(out);
+            } else if (value != null) {
+                if (raw[i]) {
+                    out.append(value);
+                } else {
+                    escapeHtml(out, value.toString());
+                }
+            }
+            out.append(literals[i + 1]);
+        }
+    }
+
+    private static void escapeHtml(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '&' -> out.append("&amp;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Tổng độ dài phần tĩnh, dùng để cấp phát buffer đủ lớn ngay từ đầu.
+     */
+    public int getStaticLength() {
+        return staticLength;
+    }
+}
@@ -0,0 +1,101 @@
+package com.iuh.printshop.printshop_be.service.email;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Nạp và biên dịch template email một lần lúc khởi động (classpath:templates/email/*.html).
+ * - layout.html bọc mọi template qua {{{content}}}, được ghép sẵn nên lúc render không phải lồng chuỗi.
+ * - File bắt đầu bằng "_" là partial (vd. một dòng hàng), không bọc layout, dùng qua {@link #repeat}.
+ * Render dùng StringBuilder tái sử dụng theo thread, không phân tích lại template ở mỗi email.
+ */
+@Slf4j
+@Component
+public class EmailTemplateEngine {
+
+    private static final String LOCATION = "classpath:templates/email/";
+    private static final String LAYOUT = "layout";
+    private static final String CONTENT_SLOT = "content";
+    private static final String PARTIAL_PREFIX = "_";
+    // Buffer lớn hơn ngưỡng này (email bất thường) không giữ lại để tránh chiếm bộ nhớ lâu dài
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(8 * 1024));
+
+    // Chỉ ghi trong @PostConstruct, sau đó chỉ đọc
+    private Map<String, EmailTemplate> templates = Map.of();
+
+    @PostConstruct
+    void load() throws IOException {
+        Map<String, String> sources = new HashMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LOCATION + "*.html")) {
+            String filename = resource.getFilename();
+            if (filename == null) {
+                continue;
+            }
+            sources.put(filename.substring(0, filename.length() - ".html".length()),
+                    resource.getContentAsString(StandardCharsets.UTF_8));
+        }
+
+        String layoutSource = sources.remove(LAYOUT);
+        EmailTemplate layout = layoutSource != null ? EmailTemplate.compile(LAYOUT, layoutSource) : null;
+
+        Map<String, EmailTemplate> compiled = new HashMap<>();
+        sources.forEach((name, source) -> {
+            EmailTemplate template = EmailTemplate.compile(name, source);
+            if (layout != null && !name.startsWith(PARTIAL_PREFIX)) {
+                template = layout.inline(CONTENT_SLOT, template);
+            }
+            compiled.put(name, template);
+        });
+        templates = Map.copyOf(compiled);
+        log.info("Compiled {} email templates: {}", templates.size(), templates.keySet());
+    }
+
+    public String render(String name, Map<String, ?> model) {
+        EmailTemplate template = get(name);
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        buffer.ensureCapacity(template.getStaticLength() + 256);
+        try {
+            template.renderTo(buffer, model);
+            return buffer.toString();
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+                buffers.remove();
+            } else {
+                buffer.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Fragment render partial cho từng phần tử, ghi thẳng vào buffer của template cha.
+     */
+    public <T> EmailTemplate.Fragment repeat(String partial, List<T> items, Function<T, Map<String, ?>> model) {
+        EmailTemplate template = get(partial);
+        return out -> {
+            for (T item : items) {
+                template.renderTo(out, model.apply(item));
+            }
+        };
+    }
+
+    private EmailTemplate get(String name) {
+        EmailTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("Email template not found: " + name);
+        }
+        return template;
+    }
+}
@@ -1,163 +1,336 @@
 package com.iuh.printshop.printshop_be.service.impl;
 
 import com.iuh.printshop.printshop_be.dto.cart.AddToCartRequest;
+import com.iuh.printshop.printshop_be.dto.cart.CartBatchRequest;
 import com.iuh.printshop.printshop_be.dto.cart.CartItemResponse;
+import com.iuh.printshop.printshop_be.dto.cart.CartOperationRequest;
 import com.iuh.printshop.printshop_be.dto.cart.CartResponse;
 import com.iuh.printshop.printshop_be.dto.cart.UpdateCartItemRequest;
-import com.iuh.printshop.printshop_be.entity.*;
-import com.iuh.printshop.printshop_be.repository.*;
+import com.iuh.printshop.printshop_be.dto.product.ProductResponse;
+import com.iuh.printshop.printshop_be.entity.OrderItem;
+import com.iuh.printshop.printshop_be.entity.Product;
+import com.iuh.printshop.printshop_be.repository.OrderItemRepository;
+import com.iuh.printshop.printshop_be.repository.ProductRepository;
 import com.iuh.printshop.printshop_be.service.CartService;
+import com.iuh.printshop.printshop_be.service.ProductService;
+import com.iuh.printshop.printshop_be.service.UserService;
+import com.iuh.printshop.printshop_be.service.cart.CartLine;
+import com.iuh.printshop.printshop_be.service.cart.CartState;
+import com.iuh.printshop.printshop_be.service.cart.CartStore;
+import com.iuh.printshop.printshop_be.service.cart.GuestCartStore;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Giỏ hàng đọc/ghi trên working set trong bộ nhớ (CartStore); thay đổi được ghi xuống DB theo lô (write-behind).
+ * Sản phẩm lấy qua ProductService (có cache) nên thêm vào giỏ thường không chạm DB.
+ * itemId trong response là productId: mỗi sản phẩm chỉ có một dòng trong giỏ.
+ * Giỏ khách vãng lai (GuestCartStore) dùng cùng các thao tác nhưng không bao giờ ghi DB.
+ */
 @Service
 @RequiredArgsConstructor
-@Transactional
 public class CartServiceImpl implements CartService {
 
-    private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
-    private final UserRepository userRepository;
+    private final CartStore cartStore;
+    private final ProductService productService;
+    private final GuestCartStore guestCartStore;
     private final ProductRepository productRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final UserService userService;
 
-    // Lấy user theo ID (tạm thời hỗ trợ không đăng nhập)
-    private User getOrCreateUser(Integer userId) {
-        return userRepository.findById(userId)
-                .orElseGet(() -> {
-                    // Tạo user mặc định nếu không tồn tại
-                    User defaultUser = User.builder()
-                            .id(userId)
-                            .email("user" + userId + "@example.com")
-                            .fullName("User " + userId)
-                            .isActive(true)
-                            .build();
-                    return userRepository.save(defaultUser);
-                });
-    }
-
-    private Cart getOrCreateCart(User user) {
-        return cartRepository.findByUser(user).orElseGet(() -> {
-            Cart c = Cart.builder().user(user).total(BigDecimal.ZERO).build();
-            return cartRepository.save(c);
-        });
+    private CartResponse toResponse(CartState state) {
+        return toResponse(state, null);
     }
 
-    private CartResponse toResponse(Cart cart) {
-        List<CartItemResponse> items = cart.getItems().stream().map(ci -> {
-            // Đảm bảo product được load để tránh LazyInitializationException
-            Product product = ci.getProduct();
-            return CartItemResponse.builder()
-                    .itemId(ci.getId())
-                    .productId(product.getId())
-                    .productName(product.getName())
-                    .unitPrice(ci.getPriceAtAdd())
-                    .quantity(ci.getQuantity())
-                    .subtotal(ci.getSubtotal())
-                    .build();
-        }).toList();
-
-        // Tính lại total từ items hiện tại
-        BigDecimal calculatedTotal = items.stream()
-                .map(CartItemResponse::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    // Response từ bộ nhớ (sau thay đổi): tổng lấy từ giá trị CartState duy trì sẵn, không truy vấn
+    private CartResponse toResponse(CartState state, String cartToken) {
+        CartState.Snapshot snapshot = state.snapshot();
+        List<CartItemResponse> items = snapshot.lines().stream()
+                .map(line -> CartItemResponse.builder()
+                        .itemId(line.productId())
+                        .productId(line.productId())
+                        .productName(line.productName())
+                        .unitPrice(line.priceAtAdd())
+                        .quantity(line.quantity())
+                        .subtotal(line.subtotal())
+                        .build())
+                .toList();
 
         return CartResponse.builder()
-                .cartId(cart.getId())
+                .cartId(snapshot.cartId())
+                .cartToken(cartToken)
                 .items(items)
-                .total(calculatedTotal)
+                .total(CartLine.toAmount(snapshot.totalMinor()))
+                .build();
+    }
+
+    /**
+     * Read model cho trang giỏ hàng: dòng giỏ từ bộ nhớ + một truy vấn projection (id, giá, tồn kho hiện tại)
+     * cho mọi sản phẩm trong giỏ; đánh dấu dòng có giá hiện tại khác giá lúc thêm.
+     */
+    private CartResponse toDetailedResponse(CartState state, String cartToken) {
+        CartState.Snapshot snapshot = state.snapshot();
+        Map<Integer, Object[]> current = new HashMap<>();
+        if (!snapshot.lines().isEmpty()) {
+            List<Integer> productIds = snapshot.lines().stream().map(CartLine::productId).toList();
+            for (Object[] row : productRepository.findPriceAndStockByIdIn(productIds)) {
+                current.put((Integer) row[0], row);
+            }
+        }
+
+        long currentTotalMinor = 0;
+        boolean priceChanged = false;
+        boolean outOfStock = false;
+        List<CartItemResponse> items = new ArrayList<>(snapshot.lines().size());
+        for (CartLine line : snapshot.lines()) {
+            Object[] row = current.get(line.productId());
+            BigDecimal currentPrice = row != null ? (BigDecimal) row[1] : null;
+            Integer stock = row != null ? (Integer) row[2] : null;
+            long currentPriceMinor = currentPrice != null ? CartLine.toMinor(currentPrice) : line.priceMinor();
+            boolean lineChanged = currentPrice != null && currentPriceMinor != line.priceMinor();
+            boolean lineOutOfStock = stock == null || stock < line.quantity();
+
+            currentTotalMinor += currentPriceMinor * line.quantity();
+            priceChanged |= lineChanged;
+            outOfStock |= lineOutOfStock;
+            items.add(CartItemResponse.builder()
+                    .itemId(line.productId())
+                    .productId(line.productId())
+                    .productName(line.productName())
+                    .unitPrice(line.priceAtAdd())
+                    .quantity(line.quantity())
+                    .subtotal(line.subtotal())
+                    .currentPrice(currentPrice)
+                    .stockQuantity(stock)
+                    .priceChanged(lineChanged)
+                    .outOfStock(lineOutOfStock)
+                    .build());
+        }
+
+        return CartResponse.builder()
+                .cartId(snapshot.cartId())
+                .cartToken(cartToken)
+                .items(items)
+                .total(CartLine.toAmount(snapshot.totalMinor()))
+                .currentTotal(CartLine.toAmount(currentTotalMinor))
+                .priceChanged(priceChanged)
+                .outOfStock(outOfStock)
                 .build();
     }
 
     @Override
     public CartResponse getCart(Integer userId) {
-        User user = getOrCreateUser(userId);
-        Cart cart = getOrCreateCart(user);
-        return toResponse(cart);
+        return toDetailedResponse(cartStore.get(userId), null);
     }
 
     @Override
     public CartResponse addItem(Integer userId, AddToCartRequest req) {
-        User user = getOrCreateUser(userId);
-        Cart cart = getOrCreateCart(user);
+        ProductResponse product = findProduct(req.getProductId());
+        return toResponse(cartStore.update(userId,
+                state -> addLine(state, product, req.getQuantity(), Integer.MAX_VALUE)));
+    }
 
-        Product product = productRepository.findById(req.getProductId())
-                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+    @Override
+    public CartResponse updateItem(Integer userId, Integer itemId, UpdateCartItemRequest req) {
+        return toResponse(cartStore.update(userId, state -> updateLine(state, itemId, req)));
+    }
 
-        // Nếu đã có item cùng product → tăng số lượng
-        CartItem item = cart.getItems()
-                .stream()
-                .filter(ci -> ci.getProduct().getId().equals(product.getId()))
-                .findFirst()
-                .orElseGet(() -> {
-                    CartItem ci = CartItem.builder()
-                            .cart(cart)
-                            .product(product)
-                            .quantity(0)
-                            .priceAtAdd(product.getPrice())
-                            .build();
-                    cart.getItems().add(ci);
-                    return ci;
-                });
-
-        item.setQuantity(item.getQuantity() + req.getQuantity());
-        cart.recalcTotal();
-
-        Cart savedCart = cartRepository.save(cart);
-        return toResponse(savedCart);
+    @Override
+    public CartResponse removeItem(Integer userId, Integer itemId) {
+        return toResponse(cartStore.update(userId, state -> removeLine(state, itemId)));
     }
 
     @Override
-    public CartResponse updateItem(Integer userId, Integer itemId, UpdateCartItemRequest req) {
-        User user = getOrCreateUser(userId);
-        Cart cart = getOrCreateCart(user);
+    public CartResponse applyBatch(Integer userId, CartBatchRequest req) {
+        Map<Integer, Product> products = findAddedProducts(req.getOperations());
+        return toResponse(cartStore.update(userId,
+                state -> applyOperations(state, req.getOperations(), products, Integer.MAX_VALUE)));
+    }
 
-        CartItem item = cartItemRepository.findByIdAndCart_Id(itemId, cart.getId())
-                .orElseThrow(() -> new EntityNotFoundException("Cart item not found"));
+    @Override
+    public CartResponse reorder(Long orderId) {
+        // User lấy từ SecurityContext, không từ tham số request: không thể đọc đơn hàng của người khác
+        Integer userId = userService.getCurrentUser().getId();
 
-        if (req.getQuantity() <= 0) {
-            // Xóa item nếu quantity <= 0
-            cart.getItems().remove(item);
-            cartItemRepository.delete(item);
-        } else {
-            // Cập nhật quantity
-            item.setQuantity(req.getQuantity());
+        // Một truy vấn: items + product của đơn, chỉ khi đơn thuộc user
+        List<OrderItem> orderItems = orderItemRepository.findWithProductByOrderIdAndUserId(orderId, userId);
+        if (orderItems.isEmpty()) {
+            throw new EntityNotFoundException("Order not found: " + orderId);
         }
+        List<CartLine> lines = orderItems.stream()
+                .map(item -> {
+                    Product product = item.getProduct();
+                    return CartLine.of(product.getId(), product.getName(), item.getQuantity(), product.getPrice());
+                })
+                .toList();
 
-        cart.recalcTotal();
-        Cart savedCart = cartRepository.save(cart);
-        return toResponse(savedCart);
+        return toResponse(cartStore.update(userId, state -> state.addAll(lines)));
     }
 
+    /**
+     * Khi gọi trong transaction (checkout), giỏ chỉ bị xóa và ghi xuống DB sau khi đơn hàng commit,
+     * để đơn bị rollback không làm mất giỏ.
+     */
     @Override
-    public CartResponse removeItem(Integer userId, Integer itemId) {
-        User user = getOrCreateUser(userId);
-        Cart cart = getOrCreateCart(user);
+    public CartResponse clear(Integer userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            CartState state = cartStore.get(userId);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clearAndFlush(userId);
+                }
+            });
+            return CartResponse.builder().cartId(state.snapshot().cartId()).items(List.of()).total(BigDecimal.ZERO).build();
+        }
+        return toResponse(clearAndFlush(userId));
+    }
 
-        CartItem item = cartItemRepository.findByIdAndCart_Id(itemId, cart.getId())
-                .orElseThrow(() -> new EntityNotFoundException("Cart item not found"));
+    private CartState clearAndFlush(Integer userId) {
+        CartState state = cartStore.update(userId, CartState::clear);
+        cartStore.flush(userId);
+        return state;
+    }
 
-        cart.getItems().remove(item);
-        cartItemRepository.delete(item);
-        cart.recalcTotal();
+    @Override
+    public CartResponse createGuestCart() {
+        String token = guestCartStore.create();
+        return getGuestCart(token);
+    }
 
-        Cart savedCart = cartRepository.save(cart);
-        return toResponse(savedCart);
+    @Override
+    public CartResponse getGuestCart(String token) {
+        return toDetailedResponse(getGuestState(token), token);
     }
 
     @Override
-    public CartResponse clear(Integer userId) {
-        User user = getOrCreateUser(userId);
-        Cart cart = getOrCreateCart(user);
+    public CartResponse addGuestItem(String token, AddToCartRequest req) {
+        CartState state = getGuestState(token);
+        addLine(state, findProduct(req.getProductId()), req.getQuantity(), guestCartStore.getMaxLines());
+        return toResponse(state, token);
+    }
+
+    @Override
+    public CartResponse updateGuestItem(String token, Integer itemId, UpdateCartItemRequest req) {
+        CartState state = getGuestState(token);
+        updateLine(state, itemId, req);
+        return toResponse(state, token);
+    }
+
+    @Override
+    public CartResponse removeGuestItem(String token, Integer itemId) {
+        CartState state = getGuestState(token);
+        removeLine(state, itemId);
+        return toResponse(state, token);
+    }
+
+    @Override
+    public CartResponse applyGuestBatch(String token, CartBatchRequest req) {
+        CartState state = getGuestState(token);
+        applyOperations(state, req.getOperations(), findAddedProducts(req.getOperations()), guestCartStore.getMaxLines());
+        return toResponse(state, token);
+    }
+
+    /**
+     * Khi gọi trong transaction (checkout), giỏ khách chỉ bị bỏ sau khi đơn hàng commit.
+     */
+    @Override
+    public void discardGuestCart(String token) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guestCartStore.remove(token);
+                }
+            });
+        } else {
+            guestCartStore.remove(token);
+        }
+    }
+
+    @Override
+    public CartResponse mergeGuestCart(String token, Integer userId) {
+        CartState guest = guestCartStore.take(token).orElse(null);
+        List<CartLine> guestLines = guest != null ? guest.snapshot().lines() : List.of();
+        if (guestLines.isEmpty()) {
+            return toResponse(cartStore.get(userId));
+        }
+        // Sản phẩm đã có trong giỏ user giữ giá lúc thêm của user, chỉ cộng số lượng
+        return toResponse(cartStore.update(userId, state -> state.addAll(guestLines)));
+    }
+
+    private CartState getGuestState(String token) {
+        return guestCartStore.find(token)
+                .orElseThrow(() -> new EntityNotFoundException("Cart not found or expired"));
+    }
+
+    // Một truy vấn IN cho mọi sản phẩm được thêm trong lô, chạy trước khi thay đổi giỏ
+    private Map<Integer, Product> findAddedProducts(List<CartOperationRequest> operations) {
+        Set<Integer> addedIds = operations.stream()
+                .filter(op -> op.getType() == CartOperationRequest.Type.ADD)
+                .map(CartOperationRequest::getProductId)
+                .collect(Collectors.toSet());
+        return addedIds.isEmpty() ? Map.of()
+                : productRepository.findAllById(addedIds).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    private void applyOperations(CartState state, List<CartOperationRequest> operations,
+                                 Map<Integer, Product> products, int maxLines) {
+        state.atomically(cart -> {
+            for (CartOperationRequest op : operations) {
+                switch (op.getType()) {
+                    case ADD -> {
+                        Product product = products.get(op.getProductId());
+                        if (product == null) {
+                            throw new EntityNotFoundException("Product not found: " + op.getProductId());
+                        }
+                        int quantity = op.getQuantity() != null ? op.getQuantity() : 1;
+                        if (quantity < 1) {
+                            throw new IllegalArgumentException("Quantity must be at least 1 for ADD: " + op.getProductId());
+                        }
+                        cart.add(CartLine.of(product.getId(), product.getName(), quantity, product.getPrice()), maxLines);
+                    }
+                    case UPDATE -> {
+                        if (op.getQuantity() == null) {
+                            throw new IllegalArgumentException("Quantity is required for UPDATE: " + op.getProductId());
+                        }
+                        cart.setQuantity(op.getProductId(), op.getQuantity());
+                    }
+                    case REMOVE -> cart.remove(op.getProductId());
+                }
+            }
+        });
+    }
+
+    private ProductResponse findProduct(Integer productId) {
+        return productService.getProductById(productId)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+    }
+
+    private void addLine(CartState state, ProductResponse product, int quantity, int maxLines) {
+        // Nếu đã có item cùng product → tăng số lượng
+        state.add(CartLine.of(product.getId(), product.getName(), quantity, product.getPrice()), maxLines);
+    }
+
+    private void updateLine(CartState state, Integer itemId, UpdateCartItemRequest req) {
+        // Xóa item nếu quantity <= 0
+        state.setQuantity(itemId, req.getQuantity());
+    }
 
-        cart.getItems().clear(); // orphanRemoval = true → xóa item
-        cart.recalcTotal();
-        return toResponse(cartRepository.save(cart));
+    private void removeLine(CartState state, Integer itemId) {
+        state.remove(itemId);
     }
 }
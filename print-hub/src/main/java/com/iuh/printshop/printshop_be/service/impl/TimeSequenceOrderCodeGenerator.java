@@ -0,0 +1,165 @@
+package com.iuh.printshop.printshop_be.service.impl;
+
+import com.iuh.printshop.printshop_be.repository.OrderRepository;
+import com.iuh.printshop.printshop_be.service.OrderCodeGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Mã đơn hàng dạng PS-yyMMdd-XXXXXXXX (ngày theo UTC).
+ * Phần XXXXXXXX là 40 bit mã hóa Crockford base32 (không có I, L, O, U để dễ đọc qua điện thoại):
+ * 17 bit giây trong ngày | 8 bit node | 15 bit sequence
+ * -> tối đa 32768 mã/giây cho mỗi instance, không trùng giữa các instance có node-id khác nhau.
+ * Khi hết sequence trong một giây, bộ sinh mượn giây kế tiếp thay vì chờ; đồng hồ lùi cũng không làm trùng mã.
+ * Lúc khởi động, bộ sinh bắt đầu sau mã lớn nhất đã lưu, nên khởi động lại trong cùng giây (hoặc sau khi đồng hồ lùi)
+ * không sinh lại mã đã cấp trước đó.
+ */
+@Slf4j
+@Service
+public class TimeSequenceOrderCodeGenerator implements OrderCodeGenerator {
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int NODE_BITS = 8;
+    private static final int SEQUENCE_BITS = 15;
+    private static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final int MAX_SEQUENCE = (1 << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 8;
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyMMdd");
+    private static final String PREFIX = "PS-";
+    private static final int CODE_LENGTH = PREFIX.length() + 6 + 1 + ENCODED_LENGTH;
+
+    private final Clock clock;
+    private final int nodeId;
+
+    private long lastSecond = -1;
+    private int sequence;
+
+    @Autowired
+    public TimeSequenceOrderCodeGenerator(OrderRepository orderRepository,
+                                          @Value("${app.order-code.node-id:-1}") int nodeId,
+                                          @Value("${app.order-code.multi-instance:false}") boolean multiInstance) {
+        this(Clock.systemUTC(), resolveNodeId(nodeId, multiInstance));
+        orderRepository.findLatestCode().ifPresent(this::seed);
+    }
+
+    TimeSequenceOrderCodeGenerator(Clock clock, int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("app.order-code.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.clock = clock;
+        this.nodeId = nodeId;
+        log.info("Order code generator started with node id {}", nodeId);
+    }
+
+    /**
+     * Bắt đầu sau một mã đã cấp: nếu mã đó không cũ hơn đồng hồ hiện tại, mã tiếp theo dùng giây kế tiếp của nó.
+     * Mã lớn nhất có giây lớn nhất trên mọi node, nên mọi mã cũ của node này đều nằm trước điểm bắt đầu.
+     */
+    synchronized void seed(String lastCode) {
+        long second = decodeSecond(lastCode);
+        if (second < 0) {
+            log.warn("Ignoring unrecognized order code {} when seeding the generator", lastCode);
+            return;
+        }
+        if (second >= clock.instant().getEpochSecond() && second >= lastSecond) {
+            lastSecond = second;
+            sequence = MAX_SEQUENCE;
+            log.info("Order code generator continues after {}", lastCode);
+        }
+    }
+
+    @Override
+    public String nextCode() {
+        long second;
+        int seq;
+        synchronized (this) {
+            long now = clock.instant().getEpochSecond();
+            if (now > lastSecond) {
+                lastSecond = now;
+                sequence = 0;
+            } else if (++sequence > MAX_SEQUENCE) {
+                lastSecond++;
+                sequence = 0;
+            }
+            second = lastSecond;
+            seq = sequence;
+        }
+
+        LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+        long value = ((long) time.toLocalTime().toSecondOfDay() << (NODE_BITS + SEQUENCE_BITS))
+                | ((long) nodeId << SEQUENCE_BITS)
+                | seq;
+        return "PS-" + time.format(DAY_FORMAT) + "-" + encode(value);
+    }
+
+    // Chữ số có nghĩa lớn nhất đứng trước -> mã trong cùng một ngày sắp xếp theo thời gian
+    private static String encode(long value) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    // Epoch second trong mã PS-yyMMdd-XXXXXXXX; -1 nếu không đúng định dạng
+    static long decodeSecond(String code) {
+        if (code == null || code.length() != CODE_LENGTH || !code.startsWith(PREFIX)
+                || code.charAt(PREFIX.length() + 6) != '-') {
+            return -1;
+        }
+        try {
+            LocalDate day = LocalDate.parse(code.substring(PREFIX.length(), PREFIX.length() + 6), DAY_FORMAT);
+            long value = 0;
+            for (char c : code.substring(CODE_LENGTH - ENCODED_LENGTH).toCharArray()) {
+                int digit = Arrays.binarySearch(ALPHABET, c);
+                if (digit < 0) {
+                    return -1;
+                }
+                value = (value << 5) | digit;
+            }
+            int secondOfDay = (int) (value >>> (NODE_BITS + SEQUENCE_BITS));
+            if (secondOfDay >= 86_400) {
+                return -1;
+            }
+            return day.atTime(LocalTime.ofSecondOfDay(secondOfDay)).toEpochSecond(ZoneOffset.UTC);
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static int resolveNodeId(int nodeId, boolean multiInstance) {
+        if (nodeId >= 0) {
+            return nodeId;
+        }
+        if (multiInstance) {
+            // Node id lấy từ hostname có thể trùng giữa các máy -> mã trùng; bắt buộc cấu hình rõ ràng
+            throw new IllegalStateException("app.order-code.node-id must be set when app.order-code.multi-instance is true");
+        }
+        return deriveNodeId();
+    }
+
+    // Không cấu hình node-id: lấy từ hostname. Có thể trùng giữa các máy, nên đặt app.order-code.node-id khi chạy nhiều instance
+    private static int deriveNodeId() {
+        try {
+            String host = InetAddress.getLocalHost().getHostName();
+            int derived = (host.hashCode() & Integer.MAX_VALUE) % (MAX_NODE_ID + 1);
+            log.warn("app.order-code.node-id is not set, using {} derived from host name {}", derived, host);
+            return derived;
+        } catch (Exception e) {
+            log.warn("app.order-code.node-id is not set and host name is unavailable, using node id 0");
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.iuh.printshop.printshop_be.service.otp;
+
+import com.iuh.printshop.printshop_be.entity.OtpVerification;
+import com.iuh.printshop.printshop_be.repository.OtpVerificationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * OTP trong bảng otp_verifications, dùng khi chạy nhiều instance.
+ * Mã cũ của email bị xóa thay vì đánh dấu is_used, mã đã dùng/hết hạn được OtpPurger dọn định kỳ,
+ * nên mỗi email giữ tối đa một dòng.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "database")
+public class DatabaseOtpStore implements OtpStore {
+
+    private final OtpVerificationRepository otpVerificationRepository;
+
+    @Override
+    @Transactional
+    public void save(String email, String otpCode, LocalDateTime expiresAt) {
+        otpVerificationRepository.deleteByEmail(email);
+        otpVerificationRepository.save(OtpVerification.builder()
+                .email(email)
+                .otpCode(otpCode)
+                .expiresAt(expiresAt)
+                .isUsed(false)
+                .build());
+    }
+
+    @Override
+    public Optional<OtpEntry> find(String email) {
+        return otpVerificationRepository.findLatestUnusedOtp(email, Limit.of(1))
+                .stream()
+                .findFirst()
+                .map(otp -> new OtpEntry(otp.getId(), otp.getEmail(), otp.getOtpCode(), otp.getExpiresAt()));
+    }
+
+    @Override
+    @Transactional
+    public boolean consume(OtpEntry entry) {
+        return otpVerificationRepository.markUsed(entry.id()) == 1;
+    }
+
+    @Override
+    @Transactional
+    public int purgeExpired(LocalDateTime now) {
+        return otpVerificationRepository.deleteExpiredOrUsed(now);
+    }
+}
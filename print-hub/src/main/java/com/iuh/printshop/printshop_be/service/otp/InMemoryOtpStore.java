@@ -0,0 +1,81 @@
+package com.iuh.printshop.printshop_be.service.otp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * OTP trong bộ nhớ: email -> mã, mỗi entry tự hết hạn đúng expiresAt, tổng số entry có giới hạn
+ * nên đợt đăng ký ồ ạt không làm phình bảng otp_verifications. Mã mất khi khởi động lại
+ * (người dùng yêu cầu gửi lại); triển khai nhiều instance cần app.otp.store=database.
+ */
+@Component
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+
+    private final Cache<String, OtpEntry> entries;
+
+    public InMemoryOtpStore(@Value("${app.otp.max-entries:100000}") long maxEntries) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new UntilOtpExpiry())
+                .build();
+    }
+
+    @Override
+    public void save(String email, String otpCode, LocalDateTime expiresAt) {
+        entries.put(email, new OtpEntry(null, email, otpCode, expiresAt));
+    }
+
+    @Override
+    public Optional<OtpEntry> find(String email) {
+        return Optional.ofNullable(entries.getIfPresent(email));
+    }
+
+    @Override
+    public boolean consume(OtpEntry entry) {
+        // So sánh theo định danh (không dùng equals của record): mã đã được thay bằng mã mới,
+        // kể cả trùng giá trị, thì không còn dùng được
+        boolean[] removed = {false};
+        entries.asMap().computeIfPresent(entry.email(), (email, current) -> {
+            if (current != entry) {
+                return current;
+            }
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public int purgeExpired(LocalDateTime now) {
+        long before = entries.estimatedSize();
+        entries.cleanUp();
+        return (int) Math.max(0, before - entries.estimatedSize());
+    }
+
+    private static final class UntilOtpExpiry implements Expiry<String, OtpEntry> {
+
+        @Override
+        public long expireAfterCreate(String key, OtpEntry value, long currentTime) {
+            return Math.max(0, Duration.between(LocalDateTime.now(), value.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, OtpEntry value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, OtpEntry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.iuh.printshop.printshop_be.service.otp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mã OTP đang hiệu lực của một email. id chỉ có với DatabaseOtpStore (khóa dòng otp_verifications).
+ */
+public record OtpEntry(Integer id, String email, String otpCode, LocalDateTime expiresAt) {
+
+    public boolean isExpired(LocalDateTime now) {
+        return now.isAfter(expiresAt);
+    }
+}
@@ -0,0 +1,27 @@
+package com.iuh.printshop.printshop_be.service.otp;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dọn mã OTP hết hạn/đã dùng định kỳ (trước đây deleteExpiredOtps không được gọi nên bảng chỉ tăng).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OtpPurger {
+
+    private final OtpStore otpStore;
+
+    @Scheduled(fixedDelayString = "${app.otp.purge-ms:600000}", initialDelayString = "${app.otp.purge-ms:600000}")
+    public void purge() {
+        int purged = otpStore.purgeExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.info("Purged {} expired OTP codes", purged);
+        }
+    }
+}
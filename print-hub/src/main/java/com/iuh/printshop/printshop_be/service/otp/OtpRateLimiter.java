@@ -0,0 +1,61 @@
+package com.iuh.printshop.printshop_be.service.otp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Giới hạn số lần thử OTP theo email và theo IP, và số lần gửi mã theo email, trong cửa sổ cố định.
+ * Bộ đếm nằm trong bộ nhớ (Caffeine, hết hạn sau cửa sổ kể từ lần đầu) nên giới hạn tính theo từng instance.
+ */
+@Component
+public class OtpRateLimiter {
+
+    private final Cache<String, AtomicInteger> counters;
+    private final int verifyAttemptsPerEmail;
+    private final int verifyAttemptsPerIp;
+    private final int sendsPerEmail;
+
+    public OtpRateLimiter(
+            @Value("${app.otp.verify-attempts-per-email:5}") int verifyAttemptsPerEmail,
+            @Value("${app.otp.verify-attempts-per-ip:30}") int verifyAttemptsPerIp,
+            @Value("${app.otp.sends-per-email:3}") int sendsPerEmail,
+            @Value("${app.otp.rate-window-seconds:900}") long windowSeconds,
+            @Value("${app.otp.max-entries:100000}") long maxEntries) {
+        this.verifyAttemptsPerEmail = verifyAttemptsPerEmail;
+        this.verifyAttemptsPerIp = verifyAttemptsPerIp;
+        this.sendsPerEmail = sendsPerEmail;
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(windowSeconds))
+                .build();
+    }
+
+    /**
+     * Ghi nhận một lần thử xác thực; false nếu email hoặc IP đã vượt giới hạn.
+     */
+    public boolean tryVerify(String email, String ip) {
+        boolean emailAllowed = acquire("verify:email:" + email, verifyAttemptsPerEmail);
+        boolean ipAllowed = ip == null || acquire("verify:ip:" + ip, verifyAttemptsPerIp);
+        return emailAllowed && ipAllowed;
+    }
+
+    public boolean trySend(String email) {
+        return acquire("send:email:" + email, sendsPerEmail);
+    }
+
+    /**
+     * Xác thực thành công: bỏ bộ đếm của email (bộ đếm IP giữ nguyên).
+     */
+    public void reset(String email) {
+        counters.invalidate("verify:email:" + email);
+    }
+
+    private boolean acquire(String key, int limit) {
+        return counters.get(key, k -> new AtomicInteger()).incrementAndGet() <= limit;
+    }
+}
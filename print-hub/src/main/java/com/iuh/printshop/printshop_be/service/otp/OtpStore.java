@@ -0,0 +1,28 @@
+package com.iuh.printshop.printshop_be.service.otp;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Nơi lưu mã OTP xác thực email. Mỗi email chỉ có một mã hiệu lực: lưu mã mới thay thế mã cũ.
+ * Chọn bằng app.otp.store: memory (mặc định, không ghi DB) hoặc database (dùng chung giữa nhiều instance).
+ */
+public interface OtpStore {
+
+    void save(String email, String otpCode, LocalDateTime expiresAt);
+
+    /**
+     * Mã hiệu lực mới nhất của email (có thể đã hết hạn nhưng chưa bị dọn).
+     */
+    Optional<OtpEntry> find(String email);
+
+    /**
+     * Đánh dấu mã đã dùng; false nếu mã đã bị dùng hoặc bị thay thế trong lúc đó (chỉ một request thắng).
+     */
+    boolean consume(OtpEntry entry);
+
+    /**
+     * Xóa mã đã hết hạn hoặc đã dùng; trả về số mã bị xóa.
+     */
+    int purgeExpired(LocalDateTime now);
+}
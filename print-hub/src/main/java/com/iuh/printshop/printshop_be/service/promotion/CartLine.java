@@ -0,0 +1,11 @@
+package com.iuh.printshop.printshop_be.service.promotion;
+
+/**
+ * Một dòng giỏ hàng đưa vào PromotionEngine; unitPrice tính bằng đơn vị nhỏ nhất (1/100).
+ */
+public record CartLine(int productId, Integer categoryId, int quantity, long unitPrice) {
+
+    public long amount() {
+        return unitPrice * quantity;
+    }
+}
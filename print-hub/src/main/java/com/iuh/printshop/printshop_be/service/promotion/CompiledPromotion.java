@@ -0,0 +1,91 @@
+package com.iuh.printshop.printshop_be.service.promotion;
+
+import com.iuh.printshop.printshop_be.entity.Promotion;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Khuyến mãi đã biên dịch: bất biến, tiền tính bằng đơn vị nhỏ nhất (1/100) kiểu long,
+ * phần trăm tính bằng basis point (1% = 100), thời gian tính bằng giây.
+ * Giá trị tiền không giới hạn (minOrderValue, maxDiscount) được lưu là -1.
+ * productIds/categoryIds đã sắp xếp; cả hai rỗng nghĩa là áp dụng cho mọi sản phẩm.
+ */
+public record CompiledPromotion(
+        Integer id,
+        String name,
+        String description,
+        Promotion.DiscountType discountType,
+        long discountValue,
+        long minOrderValue,
+        long maxDiscount,
+        long startSeconds,
+        long endSeconds,
+        boolean exclusive,
+        String stackGroup,
+        int[] productIds,
+        int[] categoryIds) {
+
+    public static final long NONE = -1;
+    public static final String DEFAULT_STACK_GROUP = "";
+
+    public static CompiledPromotion of(Promotion promotion, int[] productIds, int[] categoryIds) {
+        return new CompiledPromotion(
+                promotion.getId(),
+                promotion.getName(),
+                promotion.getDescription(),
+                promotion.getDiscountType(),
+                toMinor(promotion.getDiscountValue()),
+                promotion.getMinOrderValue() != null ? toMinor(promotion.getMinOrderValue()) : NONE,
+                promotion.getMaxDiscount() != null ? toMinor(promotion.getMaxDiscount()) : NONE,
+                toSeconds(promotion.getStartDate()),
+                toSeconds(promotion.getEndDate()),
+                Boolean.TRUE.equals(promotion.getExclusive()),
+                promotion.getStackGroup() != null ? promotion.getStackGroup() : DEFAULT_STACK_GROUP,
+                productIds,
+                categoryIds);
+    }
+
+    public boolean appliesTo(int productId, Integer categoryId) {
+        if (productIds.length == 0 && categoryIds.length == 0) {
+            return true;
+        }
+        return Arrays.binarySearch(productIds, productId) >= 0
+                || (categoryId != null && Arrays.binarySearch(categoryIds, categoryId) >= 0);
+    }
+
+    public boolean isActiveAt(long nowSeconds) {
+        return startSeconds <= nowSeconds && nowSeconds <= endSeconds;
+    }
+
+    /**
+     * Số tiền giảm cho phần giá trị amount (đơn vị nhỏ nhất); 0 nếu chưa đạt giá trị đơn tối thiểu.
+     */
+    public long discountFor(long amount, long orderTotal) {
+        if (minOrderValue != NONE && orderTotal < minOrderValue) {
+            return 0;
+        }
+        long discount = discountType == Promotion.DiscountType.PERCENTAGE
+                ? (amount * discountValue + 5_000) / 10_000 // làm tròn HALF_UP tới 0.01
+                : discountValue;
+        if (maxDiscount != NONE && discount > maxDiscount) {
+            discount = maxDiscount;
+        }
+        return Math.min(discount, amount);
+    }
+
+    public static long toMinor(BigDecimal value) {
+        return value.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static BigDecimal fromMinor(long value) {
+        return BigDecimal.valueOf(value, 2);
+    }
+
+    static long toSeconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,230 @@
+package com.iuh.printshop.printshop_be.service.promotion;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Đánh giá khuyến mãi theo từng dòng giỏ hàng và chọn tổ hợp có lợi nhất.
+ * Quy tắc cộng dồn:
+ * - Khuyến mãi exclusive chỉ được áp dụng một mình.
+ * - Mỗi stackGroup áp dụng tối đa một khuyến mãi; các nhóm khác nhau cộng dồn với nhau.
+ * - Tổng giảm trên một dòng không vượt quá giá trị dòng đó.
+ * Tổ hợp tốt nhất được tìm bằng nhánh cận (branch and bound) theo nhóm thay vì duyệt mọi tập con.
+ */
+@Component
+@RequiredArgsConstructor
+public class PromotionEngine {
+
+    // Giới hạn số nút duyệt; khi vượt quá trả về tổ hợp tốt nhất đã tìm được (nhánh đầu tiên là lời giải tham lam)
+    private static final int MAX_SEARCH_NODES = 200_000;
+
+    private final PromotionIndex promotionIndex;
+
+    public Evaluation evaluate(List<CartLine> lines, LocalDateTime now) {
+        Set<Integer> productIds = new HashSet<>();
+        Set<Integer> categoryIds = new HashSet<>();
+        for (CartLine line : lines) {
+            productIds.add(line.productId());
+            if (line.categoryId() != null) {
+                categoryIds.add(line.categoryId());
+            }
+        }
+        return evaluate(lines, promotionIndex.findCandidates(productIds, categoryIds, now));
+    }
+
+    static Evaluation evaluate(List<CartLine> lines, List<CompiledPromotion> candidates) {
+        long[] amounts = new long[lines.size()];
+        long subtotal = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = lines.get(i).amount();
+            subtotal += amounts[i];
+        }
+
+        Option bestExclusive = null;
+        Map<String, List<Option>> groups = new LinkedHashMap<>();
+        for (CompiledPromotion promotion : candidates) {
+            Option option = toOption(promotion, lines, amounts, subtotal);
+            if (option == null) {
+                continue;
+            }
+            if (promotion.exclusive()) {
+                if (bestExclusive == null || option.total > bestExclusive.total) {
+                    bestExclusive = option;
+                }
+            } else {
+                groups.computeIfAbsent(promotion.stackGroup(), key -> new ArrayList<>()).add(option);
+            }
+        }
+
+        Search search = new Search(groups.values(), amounts, subtotal);
+        search.run();
+
+        Option[] chosen = search.bestChosen;
+        if (bestExclusive != null && bestExclusive.total > search.bestValue) {
+            chosen = new Option[]{bestExclusive};
+        }
+        return Evaluation.of(chosen, amounts, subtotal);
+    }
+
+    // Số tiền giảm của một khuyến mãi trên các dòng đủ điều kiện, phân bổ theo tỉ lệ giá trị dòng
+    private static Option toOption(CompiledPromotion promotion, List<CartLine> lines, long[] amounts, long subtotal) {
+        int[] eligible = new int[lines.size()];
+        int count = 0;
+        long eligibleAmount = 0;
+        for (int i = 0; i < eligible.length; i++) {
+            CartLine line = lines.get(i);
+            if (promotion.appliesTo(line.productId(), line.categoryId())) {
+                eligible[count++] = i;
+                eligibleAmount += amounts[i];
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        long discount = promotion.discountFor(eligibleAmount, subtotal);
+        if (discount <= 0) {
+            return null;
+        }
+
+        int[] lineIndexes = Arrays.copyOf(eligible, count);
+        long[] shares = new long[count];
+        long allocated = 0;
+        for (int i = 0; i < count; i++) {
+            long amount = amounts[lineIndexes[i]];
+            shares[i] = Math.min(amount, (long) Math.floor((double) discount * amount / eligibleAmount));
+            allocated += shares[i];
+        }
+        // Phần dư do làm tròn được chia lần lượt cho các dòng còn chỗ
+        for (int i = 0; allocated < discount && i < count; i++) {
+            long room = Math.min(amounts[lineIndexes[i]] - shares[i], discount - allocated);
+            shares[i] += room;
+            allocated += room;
+        }
+        return new Option(promotion, lineIndexes, shares, allocated);
+    }
+
+    private record Option(CompiledPromotion promotion, int[] lineIndexes, long[] shares, long total) {
+    }
+
+    private static final class Search {
+        private final Option[][] groups;
+        private final long[] suffixBest;
+        private final long[] remaining;
+        private final long cap;
+        private final Option[] chosen;
+        private final long[][] taken;
+
+        private Option[] bestChosen = new Option[0];
+        private long bestValue;
+        private int nodes;
+
+        Search(java.util.Collection<List<Option>> optionGroups, long[] amounts, long cap) {
+            // Nhóm có khuyến mãi lớn nhất đứng trước, trong nhóm sắp giảm dần -> cận chặt sớm
+            this.groups = optionGroups.stream()
+                    .map(options -> options.stream()
+                            .sorted(Comparator.comparingLong(Option::total).reversed())
+                            .toArray(Option[]::new))
+                    .sorted(Comparator.comparingLong((Option[] options) -> options[0].total).reversed())
+                    .toArray(Option[][]::new);
+            this.suffixBest = new long[groups.length + 1];
+            for (int g = groups.length - 1; g >= 0; g--) {
+                suffixBest[g] = suffixBest[g + 1] + groups[g][0].total;
+            }
+            this.remaining = amounts.clone();
+            this.cap = cap;
+            this.chosen = new Option[groups.length];
+            this.taken = new long[groups.length][];
+        }
+
+        void run() {
+            search(0, 0, 0);
+        }
+
+        private void search(int group, int depth, long value) {
+            if (value > bestValue) {
+                bestValue = value;
+                bestChosen = Arrays.copyOf(chosen, depth);
+            }
+            if (group == groups.length || bestValue >= cap || ++nodes > MAX_SEARCH_NODES) {
+                return;
+            }
+            if (value + suffixBest[group] <= bestValue) {
+                return;
+            }
+
+            for (Option option : groups[group]) {
+                // Các lựa chọn sau trong nhóm chỉ nhỏ hơn -> dừng khi cận trên không vượt được kết quả tốt nhất
+                if (value + option.total + suffixBest[group + 1] <= bestValue) {
+                    break;
+                }
+                long gained = apply(option, depth);
+                chosen[depth] = option;
+                search(group + 1, depth + 1, value + gained);
+                undo(option, depth);
+            }
+            // Không chọn khuyến mãi nào trong nhóm này
+            search(group + 1, depth, value);
+        }
+
+        private long apply(Option option, int depth) {
+            long[] takes = new long[option.lineIndexes.length];
+            long gained = 0;
+            for (int i = 0; i < takes.length; i++) {
+                int line = option.lineIndexes[i];
+                takes[i] = Math.min(option.shares[i], remaining[line]);
+                remaining[line] -= takes[i];
+                gained += takes[i];
+            }
+            taken[depth] = takes;
+            return gained;
+        }
+
+        private void undo(Option option, int depth) {
+            long[] takes = taken[depth];
+            for (int i = 0; i < takes.length; i++) {
+                remaining[option.lineIndexes[i]] += takes[i];
+            }
+        }
+    }
+
+    /**
+     * Kết quả: các khuyến mãi được áp dụng (theo thứ tự áp dụng) và số tiền giảm trên từng dòng.
+     */
+    public record Evaluation(long subtotal, long discount, List<AppliedPromotion> applied, long[] lineDiscounts) {
+
+        static Evaluation of(Option[] chosen, long[] amounts, long subtotal) {
+            long[] remaining = amounts.clone();
+            long[] lineDiscounts = new long[amounts.length];
+            List<AppliedPromotion> applied = new ArrayList<>(chosen.length);
+            long discount = 0;
+            for (Option option : chosen) {
+                long amount = 0;
+                for (int i = 0; i < option.lineIndexes.length; i++) {
+                    int line = option.lineIndexes[i];
+                    long take = Math.min(option.shares[i], remaining[line]);
+                    remaining[line] -= take;
+                    lineDiscounts[line] += take;
+                    amount += take;
+                }
+                if (amount > 0) {
+                    applied.add(new AppliedPromotion(option.promotion, amount));
+                    discount += amount;
+                }
+            }
+            return new Evaluation(subtotal, discount, applied, lineDiscounts);
+        }
+    }
+
+    public record AppliedPromotion(CompiledPromotion promotion, long amount) {
+    }
+}
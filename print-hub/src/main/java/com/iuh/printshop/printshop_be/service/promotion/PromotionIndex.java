@@ -0,0 +1,174 @@
+package com.iuh.printshop.printshop_be.service.promotion;
+
+import com.iuh.printshop.printshop_be.entity.Promotion;
+import com.iuh.printshop.printshop_be.event.PromotionChangedEvent;
+import com.iuh.printshop.printshop_be.repository.PromotionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bản biên dịch trong bộ nhớ của các khuyến mãi chưa hết hạn.
+ * productId/categoryId -> BitSet chỉ số khuyến mãi, nên tìm khuyến mãi ứng viên cho giỏ hàng không cần truy vấn DB.
+ * Thời gian hiệu lực được kiểm tra lúc đánh giá (khuyến mãi sắp bắt đầu đã có sẵn trong chỉ mục);
+ * chỉ mục được dựng lại khi khuyến mãi thay đổi và định kỳ để loại bỏ khuyến mãi đã hết hạn.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PromotionIndex {
+
+    private final PromotionRepository promotionRepository;
+
+    private volatile Snapshot snapshot;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPromotionChanged(PromotionChangedEvent event) {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${app.promotion.index-refresh-ms:300000}",
+            initialDelayString = "${app.promotion.index-refresh-ms:300000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        List<Promotion> promotions = promotionRepository.findUnexpiredPromotions(now);
+
+        List<Object[]> categoryLinks = promotionRepository.findUnexpiredCategoryLinks(now);
+        List<Object[]> productLinks = promotionRepository.findUnexpiredProductLinks(now);
+        Map<Integer, List<Integer>> categoriesByPromotion = group(categoryLinks);
+        Map<Integer, List<Integer>> productsByPromotion = group(productLinks);
+
+        CompiledPromotion[] compiled = new CompiledPromotion[promotions.size()];
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < compiled.length; i++) {
+            Promotion promotion = promotions.get(i);
+            compiled[i] = CompiledPromotion.of(promotion,
+                    toSortedArray(productsByPromotion.get(promotion.getId())),
+                    toSortedArray(categoriesByPromotion.get(promotion.getId())));
+            positions.put(compiled[i].id(), i);
+        }
+
+        Map<Integer, BitSet> byCategory = link(categoryLinks, positions);
+        Map<Integer, BitSet> byProduct = link(productLinks, positions);
+
+        // Khuyến mãi không giới hạn danh mục/sản phẩm áp dụng cho mọi đơn hàng
+        BitSet targeted = new BitSet(compiled.length);
+        byCategory.values().forEach(targeted::or);
+        byProduct.values().forEach(targeted::or);
+        BitSet global = new BitSet(compiled.length);
+        global.set(0, compiled.length);
+        global.andNot(targeted);
+
+        snapshot = new Snapshot(compiled, byProduct, byCategory, global);
+        log.info("Promotion index built: {} promotions in {} ms", compiled.length, System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Các khuyến mãi đang hiệu lực tại thời điểm now và áp dụng cho ít nhất một sản phẩm/danh mục đã cho.
+     */
+    public List<CompiledPromotion> findCandidates(Collection<Integer> productIds, Collection<Integer> categoryIds,
+                                                  LocalDateTime now) {
+        Snapshot current = current();
+        BitSet candidates = (BitSet) current.global().clone();
+        if (productIds != null) {
+            for (Integer productId : productIds) {
+                BitSet matches = current.byProduct().get(productId);
+                if (matches != null) {
+                    candidates.or(matches);
+                }
+            }
+        }
+        if (categoryIds != null) {
+            for (Integer categoryId : categoryIds) {
+                BitSet matches = current.byCategory().get(categoryId);
+                if (matches != null) {
+                    candidates.or(matches);
+                }
+            }
+        }
+        return current.collectActive(candidates, now);
+    }
+
+    public int size() {
+        return current().promotions().length;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            rebuild();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    private static Map<Integer, List<Integer>> group(List<Object[]> rows) {
+        Map<Integer, List<Integer>> grouped = new HashMap<>();
+        for (Object[] row : rows) {
+            grouped.computeIfAbsent((Integer) row[0], key -> new ArrayList<>()).add((Integer) row[1]);
+        }
+        return grouped;
+    }
+
+    private static int[] toSortedArray(List<Integer> ids) {
+        if (ids == null) {
+            return new int[0];
+        }
+        int[] array = ids.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(array);
+        return array;
+    }
+
+    private static Map<Integer, BitSet> link(List<Object[]> rows, Map<Integer, Integer> positions) {
+        Map<Integer, BitSet> index = new HashMap<>();
+        for (Object[] row : rows) {
+            Integer position = positions.get((Integer) row[0]);
+            if (position != null) {
+                index.computeIfAbsent((Integer) row[1], key -> new BitSet()).set(position);
+            }
+        }
+        return index;
+    }
+
+    private record Snapshot(
+            CompiledPromotion[] promotions,
+            Map<Integer, BitSet> byProduct,
+            Map<Integer, BitSet> byCategory,
+            BitSet global) {
+
+        List<CompiledPromotion> collectActive(BitSet candidates, LocalDateTime now) {
+            long nowSeconds = CompiledPromotion.toSeconds(now);
+            CompiledPromotion[] active = new CompiledPromotion[candidates.cardinality()];
+            int count = 0;
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (promotions[i].isActiveAt(nowSeconds)) {
+                    active[count++] = promotions[i];
+                }
+            }
+            return Arrays.asList(active).subList(0, count);
+        }
+    }
+}
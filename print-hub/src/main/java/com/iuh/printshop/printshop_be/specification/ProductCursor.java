@@ -0,0 +1,29 @@
+package com.iuh.printshop.printshop_be.specification;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Vị trí phân trang keyset: (kiểu sắp xếp, giá trị khóa sắp xếp, id) của phần tử cuối trang trước.
+ * Được mã hóa base64url để client truyền lại nguyên vẹn qua tham số cursor.
+ */
+public record ProductCursor(ProductSortOption sort, String value, Integer id) {
+
+    public String encode() {
+        String raw = sort.name() + "|" + id + "|" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            ProductCursor decoded = new ProductCursor(
+                    ProductSortOption.valueOf(parts[0]), parts[2], Integer.valueOf(parts[1]));
+            decoded.sort().parseValue(decoded.value());
+            return decoded;
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
+    }
+}
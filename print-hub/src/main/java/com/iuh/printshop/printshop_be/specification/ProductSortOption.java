@@ -0,0 +1,105 @@
+package com.iuh.printshop.printshop_be.specification;
+
+import com.iuh.printshop.printshop_be.entity.Product;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Các kiểu sắp xếp sản phẩm được hỗ trợ (tham số sortBy).
+ * Luôn kèm id làm khóa phụ để thứ tự ổn định cho phân trang theo cursor.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ProductSortOption {
+    PRICE_ASC("price", Sort.Direction.ASC),
+    PRICE_DESC("price", Sort.Direction.DESC),
+    NAME_ASC("name", Sort.Direction.ASC),
+    NAME_DESC("name", Sort.Direction.DESC),
+    NEWEST("createdAt", Sort.Direction.DESC),
+    OLDEST("createdAt", Sort.Direction.ASC),
+    RATING_DESC("ratingStats.ratingAverage", Sort.Direction.DESC),
+    RELEVANCE(null, Sort.Direction.DESC); // Chỉ dùng được với chỉ mục tìm kiếm
+
+    private final String property;
+    private final Sort.Direction direction;
+
+    public static ProductSortOption from(String sortBy, ProductSortOption defaultOption) {
+        if (sortBy == null || sortBy.isEmpty()) {
+            return defaultOption;
+        }
+
+        switch (sortBy.toLowerCase()) {
+            case "price_asc":
+                return PRICE_ASC;
+            case "price_desc":
+                return PRICE_DESC;
+            case "name_asc":
+                return NAME_ASC;
+            case "name_desc":
+                return NAME_DESC;
+            case "newest":
+                return NEWEST;
+            case "oldest":
+                return OLDEST;
+            case "rating_desc":
+                return RATING_DESC;
+            case "relevance":
+                return RELEVANCE;
+            default:
+                return defaultOption;
+        }
+    }
+
+    public Sort toSort() {
+        if (property == null) {
+            return NEWEST.toSort();
+        }
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+
+    /**
+     * Giá trị khóa sắp xếp của sản phẩm, dùng để tạo cursor.
+     */
+    public String valueOf(Product product) {
+        switch (this) {
+            case PRICE_ASC:
+            case PRICE_DESC:
+                return product.getPrice().toPlainString();
+            case NAME_ASC:
+            case NAME_DESC:
+                return product.getName();
+            case RATING_DESC:
+                return String.valueOf(ratingOf(product));
+            default:
+                return product.getCreatedAt().toString();
+        }
+    }
+
+    public static double ratingOf(Product product) {
+        if (product.getRatingStats() == null || product.getRatingStats().getRatingAverage() == null) {
+            return 0.0;
+        }
+        return product.getRatingStats().getRatingAverage();
+    }
+
+    public Comparable<?> parseValue(String value) {
+        switch (this) {
+            case PRICE_ASC:
+            case PRICE_DESC:
+                return new BigDecimal(value);
+            case NAME_ASC:
+            case NAME_DESC:
+                return value;
+            case RELEVANCE:
+                return Float.valueOf(value);
+            case RATING_DESC:
+                return Double.valueOf(value);
+            default:
+                return LocalDateTime.parse(value);
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.iuh.printshop.printshop_be.specification;
 
 import com.iuh.printshop.printshop_be.entity.Product;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -62,5 +66,55 @@ public class ProductSpecification {
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
     }
-}
 
+    /**
+     * Điều kiện keyset: các sản phẩm đứng sau cursor theo (khóa sắp xếp, id), thay cho OFFSET.
+     */
+    public static Specification<Product> after(ProductCursor cursor) {
+        return (root, query, criteriaBuilder) -> {
+            ProductSortOption sort = cursor.sort();
+            boolean ascending = sort.getDirection() == Sort.Direction.ASC;
+            Path<Integer> idPath = root.get("id");
+
+            switch (sort) {
+                case PRICE_ASC:
+                case PRICE_DESC:
+                    return after(criteriaBuilder, root.<BigDecimal>get("price"),
+                            (BigDecimal) sort.parseValue(cursor.value()), idPath, cursor.id(), ascending);
+                case NAME_ASC:
+                case NAME_DESC:
+                    return after(criteriaBuilder, root.<String>get("name"),
+                            cursor.value(), idPath, cursor.id(), ascending);
+                case NEWEST:
+                case OLDEST:
+                    return after(criteriaBuilder, root.<LocalDateTime>get("createdAt"),
+                            (LocalDateTime) sort.parseValue(cursor.value()), idPath, cursor.id(), ascending);
+                case RATING_DESC:
+                    return after(criteriaBuilder, root.get("ratingStats").<Double>get("ratingAverage"),
+                            (Double) sort.parseValue(cursor.value()), idPath, cursor.id(), ascending);
+                default:
+                    throw new RuntimeException("Cursor pagination is not supported for sort: " + sort);
+            }
+        };
+    }
+
+    private static <Y extends Comparable<? super Y>> Predicate after(
+            CriteriaBuilder criteriaBuilder,
+            Path<Y> sortPath,
+            Y value,
+            Path<Integer> idPath,
+            Integer id,
+            boolean ascending
+    ) {
+        if (ascending) {
+            return criteriaBuilder.or(
+                criteriaBuilder.greaterThan(sortPath, value),
+                criteriaBuilder.and(criteriaBuilder.equal(sortPath, value), criteriaBuilder.greaterThan(idPath, id))
+            );
+        }
+        return criteriaBuilder.or(
+            criteriaBuilder.lessThan(sortPath, value),
+            criteriaBuilder.and(criteriaBuilder.equal(sortPath, value), criteriaBuilder.lessThan(idPath, id))
+        );
+    }
+}
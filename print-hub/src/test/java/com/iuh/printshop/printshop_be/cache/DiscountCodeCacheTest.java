@@ -0,0 +1,81 @@
+package com.iuh.printshop.printshop_be.cache;
+
+import com.iuh.printshop.printshop_be.entity.Discount;
+import com.iuh.printshop.printshop_be.repository.DiscountRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DiscountCodeCacheTest {
+
+    private final DiscountRepository discountRepository = mock(DiscountRepository.class);
+
+    @Test
+    void codeCreatedElsewhereIsFoundAfterSync() {
+        when(discountRepository.findAllCodes()).thenReturn(List.of("SALE10"));
+        DiscountCodeCache cache = cache(60_000);
+        cache.rebuildBloomFilter();
+
+        assertTrue(cache.findByCode("new50").isEmpty());
+        verify(discountRepository, never()).findByCode(anyString());
+
+        // Instance khác tạo mã NEW50 sau lần dựng bloom filter
+        when(discountRepository.findCodesChangedSince(any(LocalDateTime.class))).thenReturn(List.of("NEW50"));
+        when(discountRepository.findByCode("NEW50")).thenReturn(Optional.of(discount("NEW50")));
+        cache.syncBloomFilter();
+
+        assertEquals("NEW50", cache.findByCode(" new50 ").orElseThrow().getCode());
+    }
+
+    @Test
+    void syncClearsNegativeCacheForNewCodes() {
+        when(discountRepository.findAllCodes()).thenReturn(List.of());
+        DiscountCodeCache cache = cache(60_000);
+        // Chưa dựng bloom filter: tra DB và ghi nhận mã không tồn tại vào negative cache
+        assertTrue(cache.findByCode("LATE").isEmpty());
+        cache.rebuildBloomFilter();
+
+        when(discountRepository.findCodesChangedSince(any(LocalDateTime.class))).thenReturn(List.of("LATE"));
+        when(discountRepository.findByCode("LATE")).thenReturn(Optional.of(discount("LATE")));
+        cache.syncBloomFilter();
+
+        assertTrue(cache.findByCode("LATE").isPresent());
+    }
+
+    @Test
+    void staleBloomFilterFallsThroughToDatabase() throws InterruptedException {
+        when(discountRepository.findAllCodes()).thenReturn(List.of("SALE10"));
+        when(discountRepository.findByCode("NEW50")).thenReturn(Optional.of(discount("NEW50")));
+        DiscountCodeCache cache = cache(1);
+        cache.rebuildBloomFilter();
+
+        // Không đồng bộ được trong 3 chu kỳ (DB lỗi): không tin bloom filter nữa
+        Thread.sleep(10);
+
+        assertTrue(cache.findByCode("NEW50").isPresent());
+    }
+
+    private DiscountCodeCache cache(long bloomSyncMs) {
+        return new DiscountCodeCache(discountRepository, 100, 60, 100, 300, bloomSyncMs);
+    }
+
+    private static Discount discount(String code) {
+        return Discount.builder()
+                .id(1)
+                .code(code)
+                .startDate(LocalDateTime.now().minusDays(1))
+                .endDate(LocalDateTime.now().plusDays(1))
+                .build();
+    }
+}
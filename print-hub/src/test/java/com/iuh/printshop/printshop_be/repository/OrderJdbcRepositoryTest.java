@@ -0,0 +1,218 @@
+package com.iuh.printshop.printshop_be.repository;
+
+import com.iuh.printshop.printshop_be.entity.OrderItem;
+import com.iuh.printshop.printshop_be.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đếm số round-trip tới DB của luồng đặt hàng theo lô so với cách cũ (mỗi dòng: SELECT sản phẩm, INSERT dòng, UPDATE tồn kho).
+ * DataSource giả đếm câu lệnh gửi tới DB, nên không cần DB thật.
+ */
+class OrderJdbcRepositoryTest {
+
+    @Test
+    void checkoutStatementsDoNotGrowWithOrderSize() {
+        for (int lines : new int[]{1, 20, 100}) {
+            RoundTrips result = checkout(lines);
+
+            // SELECT ... IN, một batch INSERT, một SELECT ... FOR UPDATE, một UPDATE ... JOIN: không phụ thuộc số dòng
+            assertEquals(4, result.batched());
+            assertEquals(lines, result.batchedRows());
+            assertEquals(3 * lines, result.perRow());
+        }
+    }
+
+    @Test
+    void decrementStockIsOneConditionalStatement() {
+        CountingDataSource dataSource = new CountingDataSource();
+        OrderJdbcRepository repository = new OrderJdbcRepository(new JdbcTemplate(dataSource.proxy()));
+
+        repository.decrementStock(quantities(items(5)));
+
+        assertEquals(1, dataSource.roundTrips.get());
+        String sql = dataSource.statements.get(0);
+        assertEquals(4, sql.split("UNION ALL", -1).length - 1);
+        assertTrue(sql.contains("p.stock_quantity >= d.qty"));
+    }
+
+    @Test
+    void locksProductsInIdOrder() {
+        CountingDataSource dataSource = new CountingDataSource();
+        OrderJdbcRepository repository = new OrderJdbcRepository(new JdbcTemplate(dataSource.proxy()));
+
+        repository.lockProducts(quantities(items(5)).keySet());
+
+        assertEquals(1, dataSource.roundTrips.get());
+        assertTrue(dataSource.statements.get(0).endsWith("ORDER BY id FOR UPDATE"));
+    }
+
+    private static RoundTrips checkout(int lines) {
+        CountingDataSource dataSource = new CountingDataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource.proxy());
+        OrderJdbcRepository repository = new OrderJdbcRepository(jdbcTemplate);
+        List<OrderItem> items = items(lines);
+        Map<Integer, Integer> quantities = quantities(items);
+
+        selectProducts(jdbcTemplate, quantities.keySet());
+        repository.insertItems(1L, items);
+        repository.lockProducts(quantities.keySet());
+        repository.decrementStock(quantities);
+        int batched = dataSource.roundTrips.getAndSet(0);
+        int batchedRows = dataSource.batchedRows.getAndSet(0);
+
+        // Cách cũ: mỗi dòng một SELECT sản phẩm, một INSERT order_items và một UPDATE tồn kho
+        for (OrderItem item : items) {
+            jdbcTemplate.query("SELECT * FROM products WHERE id = ?", (RowCallbackHandler) rs -> {
+            }, item.getProduct().getId());
+            jdbcTemplate.update("INSERT INTO order_items (order_id, product_id, price, quantity) VALUES (?, ?, ?, ?)",
+                    1L, item.getProduct().getId(), item.getPrice(), item.getQuantity());
+            jdbcTemplate.update("UPDATE products SET stock_quantity = stock_quantity - ? WHERE id = ?",
+                    item.getQuantity(), item.getProduct().getId());
+        }
+        return new RoundTrips(batched, batchedRows, dataSource.roundTrips.get());
+    }
+
+    private static void selectProducts(JdbcTemplate jdbcTemplate, Iterable<Integer> ids) {
+        StringJoiner placeholders = new StringJoiner(", ");
+        List<Object> params = new ArrayList<>();
+        for (Integer id : ids) {
+            placeholders.add("?");
+            params.add(id);
+        }
+        jdbcTemplate.query("SELECT * FROM products WHERE id IN (" + placeholders + ")", (RowCallbackHandler) rs -> {
+        }, params.toArray());
+    }
+
+    private static List<OrderItem> items(int count) {
+        List<OrderItem> items = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            items.add(OrderItem.builder()
+                    .product(Product.builder().id(i).build())
+                    .price(BigDecimal.valueOf(100_000L * i))
+                    .quantity(1 + i % 3)
+                    .build());
+        }
+        return items;
+    }
+
+    private static Map<Integer, Integer> quantities(List<OrderItem> items) {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        items.forEach(item -> quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum));
+        return quantities;
+    }
+
+    /**
+     * DataSource/Connection/PreparedStatement giả qua java.lang.reflect.Proxy:
+     * mỗi executeQuery/executeUpdate/executeBatch là một round-trip.
+     */
+    private static final class CountingDataSource {
+        private final AtomicInteger roundTrips = new AtomicInteger();
+        private final AtomicInteger batchedRows = new AtomicInteger();
+        private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+        DataSource proxy() {
+            return proxy(DataSource.class, (method, args) ->
+                    method.equals("getConnection") ? connection() : null);
+        }
+
+        private Connection connection() {
+            DatabaseMetaData metaData = proxy(DatabaseMetaData.class, (method, args) ->
+                    method.equals("supportsBatchUpdates") ? true : null);
+            Connection[] connection = new Connection[1];
+            connection[0] = proxy(Connection.class, (method, args) -> switch (method) {
+                case "prepareStatement" -> statement(connection[0], (String) args[0]);
+                case "getMetaData" -> metaData;
+                default -> null;
+            });
+            return connection[0];
+        }
+
+        private PreparedStatement statement(Connection connection, String sql) {
+            AtomicInteger pending = new AtomicInteger();
+            return proxy(PreparedStatement.class, (method, args) -> switch (method) {
+                case "getConnection" -> connection;
+                case "addBatch" -> {
+                    pending.incrementAndGet();
+                    yield null;
+                }
+                case "executeBatch" -> {
+                    roundTrip(sql);
+                    batchedRows.addAndGet(pending.get());
+                    int[] counts = new int[pending.getAndSet(0)];
+                    Arrays.fill(counts, 1);
+                    yield counts;
+                }
+                case "executeUpdate" -> {
+                    roundTrip(sql);
+                    yield 1;
+                }
+                case "executeQuery" -> {
+                    roundTrip(sql);
+                    yield proxy(ResultSet.class, (m, a) -> null);
+                }
+                default -> null;
+            });
+        }
+
+        private void roundTrip(String sql) {
+            roundTrips.incrementAndGet();
+            statements.add(sql);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Handler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+                if (method.getName().equals("unwrap") || method.getName().equals("isWrapperFor")) {
+                    return method.getReturnType() == boolean.class ? false : null;
+                }
+                Object result = handler.handle(method.getName(), args);
+                if (result == null && method.getReturnType().isPrimitive()) {
+                    return defaultValue(method.getReturnType());
+                }
+                return result;
+            });
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) {
+                return false;
+            }
+            if (type == void.class) {
+                return null;
+            }
+            if (type == long.class) {
+                return 0L;
+            }
+            return 0;
+        }
+    }
+
+    private record RoundTrips(int batched, int batchedRows, int perRow) {
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(String method, Object[] args) throws Exception;
+    }
+}
@@ -0,0 +1,78 @@
+package com.iuh.printshop.printshop_be.security;
+
+import com.iuh.printshop.printshop_be.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenVersionRegistryTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final TokenVersionRegistry registry = new TokenVersionRegistry(userRepository, 1000, 3600);
+
+    @Test
+    void loadsLazilyAndSyncsOnlyChangedCachedUsers() {
+        when(userRepository.findTokenState(1)).thenReturn(rows(1, 3, true));
+        when(userRepository.findExistingIds(anyCollection()))
+                .thenAnswer(invocation -> new ArrayList<>(invocation.<Collection<Integer>>getArgument(0)));
+        assertTrue(registry.isCurrent(1, 3));
+
+        // Instance khác đổi mật khẩu user 1 (version 4); user 2 đổi nhưng chưa từng gửi request tới instance này
+        List<Object[]> changed = new ArrayList<>(rows(1, 4, true));
+        changed.addAll(rows(2, 9, true));
+        when(userRepository.findTokenStatesUpdatedSince(any(LocalDateTime.class))).thenReturn(changed);
+        registry.refresh();
+
+        assertFalse(registry.isCurrent(1, 3));
+        assertTrue(registry.isCurrent(1, 4));
+        verify(userRepository, times(1)).findTokenState(1);
+        verify(userRepository, never()).findTokenState(2);
+    }
+
+    @Test
+    void syncNeverMovesVersionBackwards() {
+        when(userRepository.findTokenState(1)).thenReturn(rows(1, 5, true));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(1));
+        assertTrue(registry.isCurrent(1, 5));
+
+        // Dòng đọc trước khi thay đổi cục bộ được commit
+        when(userRepository.findTokenStatesUpdatedSince(any(LocalDateTime.class))).thenReturn(rows(1, 4, true));
+        registry.refresh();
+
+        assertTrue(registry.isCurrent(1, 5));
+    }
+
+    @Test
+    void deletedUsersAreRevokedOnRefresh() {
+        when(userRepository.findTokenState(1)).thenReturn(rows(1, 0, true));
+        when(userRepository.findTokenState(2)).thenReturn(rows(2, 0, true));
+        assertTrue(registry.isCurrent(1, 0));
+        assertTrue(registry.isCurrent(2, 0));
+
+        when(userRepository.findTokenStatesUpdatedSince(any(LocalDateTime.class))).thenReturn(List.of());
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(1));
+        registry.refresh();
+
+        assertTrue(registry.isCurrent(1, 0));
+        assertFalse(registry.isCurrent(2, 0));
+    }
+
+    private static List<Object[]> rows(int userId, int version, boolean active) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{userId, version, active});
+        return rows;
+    }
+}
@@ -0,0 +1,221 @@
+package com.iuh.printshop.printshop_be.service;
+
+import com.iuh.printshop.printshop_be.dto.ai.ChatResponse;
+import com.iuh.printshop.printshop_be.entity.Brand;
+import com.iuh.printshop.printshop_be.entity.Category;
+import com.iuh.printshop.printshop_be.entity.Product;
+import com.iuh.printshop.printshop_be.repository.ProductRepository;
+import com.iuh.printshop.printshop_be.search.ProductSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Truy xuất top-k và độ dài prompt chat AI theo kích thước catalog (chỉ mục dựng từ repository giả, không cần DB).
+ */
+@Slf4j
+class AiServiceRetrievalTest {
+
+    private static final int CONTEXT_PRODUCTS = 8;
+    private static final Pattern FIRST_PRODUCT_ID = Pattern.compile("\\nID: (\\d+)\\n");
+    private static final String[] BRANDS = {"HP", "Canon", "Epson", "Brother", "Ricoh", "Xerox"};
+    private static final String[] CATEGORIES = {"Máy in laser", "Máy in phun", "Máy scan", "Máy in đa năng", "Mực in"};
+    private static final String[] FEATURES = {"in hai mặt", "wifi", "in màu", "tốc độ cao", "khổ A3",
+            "tiết kiệm mực", "văn phòng nhỏ", "scan tài liệu", "in ảnh", "kết nối USB"};
+    private static final List<String> QUESTIONS = List.of(
+            "Tư vấn máy in laser HP in hai mặt cho văn phòng nhỏ",
+            "máy scan tài liệu tốc độ cao",
+            "Epson in màu wifi giá rẻ",
+            "mực in Canon",
+            "máy in đa năng khổ A3 có kết nối USB không?");
+
+    @Test
+    void promptStaysBoundedWhileWholeCatalogDoesNot() {
+        List<Product> catalog = catalog(1_000);
+        Map<Integer, Product> byId = catalog.stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+        ProductSearchIndex index = new ProductSearchIndex(repositoryOf(catalog));
+        index.rebuild();
+
+        for (String question : QUESTIONS) {
+            List<Integer> ids = index.retrieve(question, CONTEXT_PRODUCTS);
+            assertEquals(CONTEXT_PRODUCTS, ids.size());
+            String prompt = AiService.buildPrompt(question, ids.stream().map(byId::get).toList());
+            // Prompt chỉ chứa k sản phẩm, mô tả bị cắt -> có cận trên không phụ thuộc catalog
+            assertTrue(prompt.length() < 6_000, "prompt length " + prompt.length());
+        }
+        assertTrue(AiService.buildPrompt(QUESTIONS.get(0), catalog).length() > 100_000);
+    }
+
+    @Test
+    void processUserInputSendsOnlyTopProductsToModel() {
+        List<Product> catalog = catalog(1_000);
+        List<String> prompts = new ArrayList<>();
+        AiService aiService = aiService(catalog, prompts);
+
+        ChatResponse response = aiService.processUserInput(QUESTIONS.get(1));
+
+        assertEquals(1, prompts.size());
+        assertEquals(CONTEXT_PRODUCTS, prompts.get(0).split("\nID: ", -1).length - 1);
+        assertEquals(1, response.getRecommendedProductIds().size());
+        assertTrue(prompts.get(0).contains("ID: " + response.getRecommendedProductIds().get(0) + "\n"));
+    }
+
+    /**
+     * Thời gian dựng chỉ mục, truy xuất top-k và toàn bộ processUserInput (ChatClient giả trả lời ngay,
+     * nên không gồm thời gian của mô hình) theo kích thước catalog. Chạy bằng mvn test -Pbenchmark.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkRetrievalAndPromptAsCatalogGrows() {
+        for (int size : new int[]{1_000, 10_000, 50_000}) {
+            List<Product> catalog = catalog(size);
+            ProductSearchIndex index = new ProductSearchIndex(repositoryOf(catalog));
+
+            long buildStartedAt = System.nanoTime();
+            index.rebuild();
+            long buildMs = (System.nanoTime() - buildStartedAt) / 1_000_000;
+
+            List<String> prompts = new ArrayList<>();
+            AiService aiService = aiService(catalog, index, prompts);
+
+            // Khởi động JIT trước khi đo
+            QUESTIONS.forEach(aiService::processUserInput);
+            int runs = 20;
+            long retrievalNanos = 0;
+            long endToEndNanos = 0;
+            for (int i = 0; i < runs; i++) {
+                for (String question : QUESTIONS) {
+                    long startedAt = System.nanoTime();
+                    index.retrieve(question, CONTEXT_PRODUCTS);
+                    retrievalNanos += System.nanoTime() - startedAt;
+
+                    startedAt = System.nanoTime();
+                    aiService.processUserInput(question);
+                    endToEndNanos += System.nanoTime() - startedAt;
+                }
+            }
+            int maxPromptLength = prompts.stream().mapToInt(String::length).max().orElse(0);
+            int fullCatalogPromptLength = AiService.buildPrompt(QUESTIONS.get(0), catalog).length();
+            int questions = runs * QUESTIONS.size();
+
+            log.info("AI chat: {} products -> build {} ms, retrieval {} ms/question, end-to-end without model {} ms/question, "
+                            + "prompt {} chars (top-{}) vs {} chars (whole catalog)",
+                    size, buildMs, String.format("%.3f", retrievalNanos / 1e6 / questions),
+                    String.format("%.3f", endToEndNanos / 1e6 / questions),
+                    maxPromptLength, CONTEXT_PRODUCTS, fullCatalogPromptLength);
+            assertTrue(maxPromptLength < 6_000, "prompt length " + maxPromptLength);
+        }
+    }
+
+    @Test
+    void ranksMatchingBrandAndCategoryFirst() {
+        List<Product> catalog = catalog(2_000);
+        Map<Integer, Product> byId = catalog.stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+        ProductSearchIndex index = new ProductSearchIndex(repositoryOf(catalog));
+        index.rebuild();
+
+        Product top = byId.get(index.retrieve("máy scan Epson", CONTEXT_PRODUCTS).get(0));
+
+        assertEquals("Epson", top.getBrand().getName());
+        assertEquals("Máy scan", top.getCategory().getName());
+    }
+
+    private static List<Product> catalog(int size) {
+        Random random = new Random(size);
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            categories.add(Category.builder().id(i + 1).name(CATEGORIES[i]).build());
+        }
+        List<Brand> brands = new ArrayList<>();
+        for (int i = 0; i < BRANDS.length; i++) {
+            brands.add(Brand.builder().id(i + 1).name(BRANDS[i]).build());
+        }
+
+        List<Product> products = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            Category category = categories.get(random.nextInt(categories.size()));
+            Brand brand = brands.get(random.nextInt(brands.size()));
+            StringBuilder description = new StringBuilder(category.getName()).append(" ").append(brand.getName());
+            for (int i = 0; i < 6; i++) {
+                description.append(", ").append(FEATURES[random.nextInt(FEATURES.length)]);
+            }
+            products.add(Product.builder()
+                    .id(id)
+                    .name(brand.getName() + " " + category.getName() + " model " + id)
+                    .description(description.append(". Bảo hành chính hãng 12 tháng, giao hàng toàn quốc.").toString())
+                    .price(BigDecimal.valueOf(1_000_000L + random.nextInt(20_000_000)))
+                    .stockQuantity(random.nextInt(100))
+                    .category(category)
+                    .brand(brand)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        return products;
+    }
+
+    private static AiService aiService(List<Product> catalog, List<String> prompts) {
+        ProductSearchIndex index = new ProductSearchIndex(repositoryOf(catalog));
+        index.rebuild();
+        return aiService(catalog, index, prompts);
+    }
+
+    /**
+     * AiService với ChatClient giả: ghi lại prompt và trả lời ngay, gợi ý sản phẩm đầu tiên trong prompt.
+     */
+    private static AiService aiService(List<Product> catalog, ProductSearchIndex index, List<String> prompts) {
+        ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        when(chatClient.prompt().user(anyString())).thenAnswer(invocation -> {
+            String prompt = invocation.getArgument(0);
+            prompts.add(prompt);
+            Matcher firstId = FIRST_PRODUCT_ID.matcher(prompt);
+            String reply = firstId.find() ? "Gợi ý [PRODUCT_ID:" + firstId.group(1) + "]" : "Không có sản phẩm";
+            ChatClient.ChatClientRequestSpec request = mock(ChatClient.ChatClientRequestSpec.class, RETURNS_DEEP_STUBS);
+            when(request.call().content()).thenReturn(reply);
+            return request;
+        });
+        ProductRepository repository = repositoryOf(catalog);
+        when(repository.findWithCategoryAndBrandByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> catalog.get(id - 1)).toList();
+        });
+
+        AiService aiService = new AiService(chatClient, repository, index);
+        ReflectionTestUtils.setField(aiService, "contextProducts", CONTEXT_PRODUCTS);
+        return aiService;
+    }
+
+    private static ProductRepository repositoryOf(List<Product> catalog) {
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.findByIdGreaterThanOrderByIdAsc(anyInt(), any(Limit.class))).thenAnswer(invocation -> {
+            int lastId = invocation.getArgument(0);
+            Limit limit = invocation.getArgument(1);
+            int from = Math.min(lastId, catalog.size());
+            return catalog.subList(from, Math.min(from + limit.max(), catalog.size()));
+        });
+        return repository;
+    }
+}
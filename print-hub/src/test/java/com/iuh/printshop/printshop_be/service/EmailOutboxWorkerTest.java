@@ -0,0 +1,248 @@
+package com.iuh.printshop.printshop_be.service;
+
+import com.iuh.printshop.printshop_be.entity.EmailOutbox;
+import com.iuh.printshop.printshop_be.repository.EmailOutboxRepository;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chạy drain() với outbox trong bộ nhớ và một SMTP sink giả (JavaMailSender ghi lại email thay vì gửi).
+ */
+class EmailOutboxWorkerTest {
+
+    private final Map<Long, EmailOutbox> outbox = new ConcurrentHashMap<>();
+    private final FakeSmtpSink sink = new FakeSmtpSink();
+    private EmailOutboxWorker worker;
+
+    @AfterEach
+    void shutdown() {
+        if (worker != null) {
+            worker.shutdown();
+        }
+    }
+
+    @Test
+    void sentBatchesAreMarkedSent() {
+        worker = worker(30, 8);
+        for (long id = 1; id <= 5; id++) {
+            queue(id, "user" + id + "@example.com");
+        }
+
+        worker.drain();
+
+        assertEquals(5, sink.delivered.size());
+        // 2 email mỗi kết nối SMTP -> 3 lô cho 5 email
+        assertEquals(3, sink.connections.size());
+        for (EmailOutbox email : outbox.values()) {
+            assertEquals(EmailOutbox.Status.SENT, email.getStatus());
+            assertEquals(1, email.getAttempts());
+            assertTrue(email.getSentAt() != null);
+        }
+        assertEquals(5, worker.stats().getSent());
+    }
+
+    @Test
+    void partialFailureRetriesOnlyFailedMessagesWithBackoff() {
+        worker = worker(30, 8);
+        queue(1, "ok1@example.com");
+        queue(2, "bounce@example.com");
+        queue(3, "ok2@example.com");
+        sink.rejected.add("bounce@example.com");
+
+        LocalDateTime before = LocalDateTime.now();
+        worker.drain();
+
+        assertEquals(EmailOutbox.Status.SENT, outbox.get(1L).getStatus());
+        assertEquals(EmailOutbox.Status.SENT, outbox.get(3L).getStatus());
+        EmailOutbox failed = outbox.get(2L);
+        assertEquals(EmailOutbox.Status.PENDING, failed.getStatus());
+        assertEquals(1, failed.getAttempts());
+        assertTrue(failed.getLastError().contains("bounce@example.com"));
+        // Lần thử đầu: 30 s ± 20% jitter
+        Duration backoff = Duration.between(before, failed.getNextAttemptAt());
+        assertTrue(backoff.compareTo(Duration.ofSeconds(23)) > 0 && backoff.compareTo(Duration.ofSeconds(37)) < 0,
+                backoff.toString());
+
+        // Chưa tới hạn thử lại: vòng gửi tiếp theo không gửi lại email nào
+        int deliveredBefore = sink.delivered.size();
+        worker.drain();
+        assertEquals(deliveredBefore, sink.delivered.size());
+
+        // Tới hạn và người nhận đã nhận thư: chỉ email lỗi được gửi lại
+        sink.rejected.clear();
+        failed.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        worker.drain();
+        assertEquals(3, sink.delivered.size());
+        assertEquals("bounce@example.com", sink.delivered.get(2));
+        assertEquals(EmailOutbox.Status.SENT, failed.getStatus());
+        assertEquals(2, failed.getAttempts());
+        assertNull(failed.getLastError());
+    }
+
+    @Test
+    void deadLettersAfterMaxAttempts() {
+        worker = worker(0, 3);
+        queue(1, "bounce@example.com");
+        sink.rejected.add("bounce@example.com");
+
+        for (int i = 0; i < 5; i++) {
+            worker.drain();
+        }
+
+        EmailOutbox email = outbox.get(1L);
+        assertEquals(EmailOutbox.Status.FAILED, email.getStatus());
+        assertEquals(3, email.getAttempts());
+        assertEquals(3, sink.connections.size());
+        assertEquals(1, worker.stats().getDeadLettered());
+        assertEquals(3, worker.stats().getFailedAttempts());
+    }
+
+    private EmailOutboxWorker worker(long baseBackoffSeconds, int maxAttempts) {
+        return new EmailOutboxWorker(repository(), sink, "shop@example.com",
+                4, 2, maxAttempts, baseBackoffSeconds, 3600, 300);
+    }
+
+    private void queue(long id, String recipient) {
+        LocalDateTime now = LocalDateTime.now();
+        outbox.put(id, EmailOutbox.builder()
+                .id(id)
+                .recipient(recipient)
+                .subject("Đơn hàng " + id)
+                .body("<p>Xin chào</p>")
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+    }
+
+    /**
+     * EmailOutboxRepository trong bộ nhớ: các UPDATE có điều kiện được mô phỏng trên map outbox.
+     */
+    private EmailOutboxRepository repository() {
+        EmailOutboxRepository repository = mock(EmailOutboxRepository.class);
+        when(repository.findDueIds(any(), any(), any())).thenAnswer(invocation -> {
+            EmailOutbox.Status status = invocation.getArgument(0);
+            LocalDateTime now = invocation.getArgument(1);
+            Limit limit = invocation.getArgument(2);
+            return outbox.values().stream()
+                    .filter(email -> email.getStatus() == status && !email.getNextAttemptAt().isAfter(now))
+                    .map(EmailOutbox::getId)
+                    .sorted()
+                    .limit(limit.max())
+                    .toList();
+        });
+        when(repository.claim(anyLong(), any(), any(), any())).thenAnswer(invocation -> {
+            EmailOutbox email = outbox.get(invocation.<Long>getArgument(0));
+            if (email.getStatus() != invocation.getArgument(1)) {
+                return 0;
+            }
+            email.setStatus(invocation.getArgument(2));
+            email.setLockedUntil(invocation.getArgument(3));
+            return 1;
+        });
+        when(repository.findByIdIn(any())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).stream().map(outbox::get).toList());
+        when(repository.markSent(any(), any(), any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            for (Long id : ids) {
+                EmailOutbox email = outbox.get(id);
+                email.setStatus(invocation.getArgument(1));
+                email.setSentAt(invocation.getArgument(2));
+                email.setAttempts(email.getAttempts() + 1);
+                email.setLockedUntil(null);
+                email.setLastError(null);
+            }
+            return ids.size();
+        });
+        when(repository.markAttemptFailed(anyLong(), any(), any(), any())).thenAnswer(invocation -> {
+            EmailOutbox email = outbox.get(invocation.<Long>getArgument(0));
+            email.setStatus(invocation.getArgument(1));
+            email.setAttempts(email.getAttempts() + 1);
+            email.setNextAttemptAt(invocation.getArgument(2));
+            email.setLockedUntil(null);
+            email.setLastError(invocation.getArgument(3));
+            return 1;
+        });
+        return repository;
+    }
+
+    /**
+     * SMTP sink giả: mỗi lần send(MimeMessage...) là một kết nối; người nhận trong rejected bị từ chối
+     * như khi máy chủ trả lỗi cho từng thư (MailSendException chứa các thư lỗi).
+     */
+    private static final class FakeSmtpSink implements JavaMailSender {
+        private final Session session = Session.getInstance(new Properties());
+        private final List<Integer> connections = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public MimeMessage createMimeMessage() {
+            return new MimeMessage(session);
+        }
+
+        @Override
+        public MimeMessage createMimeMessage(InputStream contentStream) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void send(MimeMessage... mimeMessages) {
+            connections.add(mimeMessages.length);
+            Map<Object, Exception> failures = new LinkedHashMap<>();
+            for (MimeMessage message : mimeMessages) {
+                String recipient = recipient(message);
+                if (rejected.contains(recipient)) {
+                    failures.put(message, new MessagingException("550 mailbox unavailable: " + recipient));
+                } else {
+                    delivered.add(recipient);
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw new MailSendException(failures);
+            }
+        }
+
+        @Override
+        public void send(SimpleMailMessage... simpleMessages) {
+            throw new UnsupportedOperationException();
+        }
+
+        private static String recipient(MimeMessage message) {
+            try {
+                Address[] to = message.getAllRecipients();
+                return to[0].toString();
+            } catch (MessagingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
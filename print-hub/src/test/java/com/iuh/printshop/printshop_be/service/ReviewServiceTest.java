@@ -0,0 +1,126 @@
+package com.iuh.printshop.printshop_be.service;
+
+import com.iuh.printshop.printshop_be.dto.review.ReviewRequest;
+import com.iuh.printshop.printshop_be.dto.review.ReviewResponse;
+import com.iuh.printshop.printshop_be.entity.Product;
+import com.iuh.printshop.printshop_be.entity.Review;
+import com.iuh.printshop.printshop_be.entity.User;
+import com.iuh.printshop.printshop_be.event.ProductChangedEvent;
+import com.iuh.printshop.printshop_be.repository.ProductRepository;
+import com.iuh.printshop.printshop_be.repository.ReviewRepository;
+import org.hibernate.LazyInitializationException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.repository.Modifying;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Thống kê đánh giá được cập nhật bằng câu UPDATE native: Product đang được quản lý phải bị bỏ khỏi
+ * persistence context, nếu không listener RATING_CHANGED (cùng EntityManager khi open-in-view) đọc lại giá trị cũ.
+ */
+class ReviewServiceTest {
+
+    private final ReviewRepository reviewRepository = mock(ReviewRepository.class);
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final UserService userService = mock(UserService.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final ReviewService reviewService =
+            new ReviewService(reviewRepository, productRepository, userService, eventPublisher);
+
+    // applyRatingDelta xóa persistence context: mọi entity tải trước đó trở thành detached
+    private final AtomicBoolean detached = new AtomicBoolean();
+
+    @Test
+    void ratingDeltaFlushesAndClearsPersistenceContext() throws NoSuchMethodException {
+        Modifying modifying = ProductRepository.class
+                .getMethod("applyRatingDelta", Integer.class, int.class, int.class, int.class, int.class)
+                .getAnnotation(Modifying.class);
+
+        assertTrue(modifying.clearAutomatically(), "managed Product would keep stale rating stats");
+        assertTrue(modifying.flushAutomatically(), "pending review changes would be lost by the clear");
+    }
+
+    @Test
+    void updateReviewMapsResponseBeforeProductIsDetached() {
+        User user = User.builder().id(3).fullName("Khách").email("a@b.c").build();
+        Review review = Review.builder().id(11L).product(lazyProduct(5)).user(user).rating(2).build();
+        when(reviewRepository.findById(11L)).thenReturn(Optional.of(review));
+        when(reviewRepository.save(review)).thenReturn(review);
+        when(userService.getCurrentUser()).thenReturn(user);
+        detachOnRatingDelta();
+
+        ReviewResponse response = reviewService.updateReview(11L, request(5, 5));
+
+        assertEquals("Máy in 5", response.getProductName());
+        assertEquals(5, response.getRating());
+        assertRatingChangedAfterDelta(5, 0, 3, 5, 2);
+    }
+
+    @Test
+    void createReviewPublishesRatingChangedAfterDelta() {
+        User user = User.builder().id(3).fullName("Khách").email("a@b.c").build();
+        Product product = lazyProduct(7);
+        when(productRepository.findById(7)).thenReturn(Optional.of(product));
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(reviewRepository.save(any(Review.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        detachOnRatingDelta();
+
+        ReviewResponse response = reviewService.createReview(request(7, 4));
+
+        assertEquals("Máy in 7", response.getProductName());
+        assertRatingChangedAfterDelta(7, 1, 4, 4, 0);
+    }
+
+    /**
+     * Product giả lập proxy lazy: đọc thuộc tính sau khi persistence context bị xóa sẽ ném LazyInitializationException.
+     */
+    private Product lazyProduct(int id) {
+        Product product = spy(Product.builder().id(id).name("Máy in " + id).build());
+        doAnswer(invocation -> {
+            if (detached.get()) {
+                throw new LazyInitializationException("could not initialize proxy - no Session");
+            }
+            return invocation.callRealMethod();
+        }).when(product).getName();
+        return product;
+    }
+
+    private void detachOnRatingDelta() {
+        doAnswer(invocation -> {
+            detached.set(true);
+            return 1;
+        }).when(productRepository).applyRatingDelta(anyInt(), anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    private void assertRatingChangedAfterDelta(int productId, int countDelta, int sumDelta, int added, int removed) {
+        InOrder order = inOrder(productRepository, eventPublisher);
+        order.verify(productRepository).applyRatingDelta(eq(productId), eq(countDelta), eq(sumDelta), eq(added), eq(removed));
+        ArgumentCaptor<ProductChangedEvent> event = ArgumentCaptor.forClass(ProductChangedEvent.class);
+        order.verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(ProductChangedEvent.Type.RATING_CHANGED, event.getValue().getType());
+        assertEquals(List.of(productId), List.copyOf(event.getValue().getProductIds()));
+    }
+
+    private static ReviewRequest request(int productId, int rating) {
+        ReviewRequest request = new ReviewRequest();
+        request.setProductId(productId);
+        request.setRating(rating);
+        return request;
+    }
+}
@@ -0,0 +1,116 @@
+package com.iuh.printshop.printshop_be.service.cart;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartStateTest {
+
+    @Test
+    void keepsRunningTotalAcrossChanges() {
+        CartState state = new CartState(1, null, List.of(line(1, 2, "10.50")));
+        assertEquals(2100, state.snapshot().totalMinor());
+
+        state.add(line(2, 1, "5.25"), 10);
+        state.add(line(1, 1, "99.00"), 10); // cộng số lượng, giữ giá lúc thêm cũ
+        assertEquals(3 * 1050 + 525, state.snapshot().totalMinor());
+
+        state.setQuantity(2, 4);
+        assertEquals(3 * 1050 + 4 * 525, state.snapshot().totalMinor());
+
+        state.setQuantity(1, 0);
+        assertEquals(List.of(2), productIds(state));
+        assertEquals(4 * 525, state.snapshot().totalMinor());
+
+        state.remove(2);
+        assertEquals(0, state.snapshot().totalMinor());
+        assertTrue(state.snapshot().lines().isEmpty());
+    }
+
+    @Test
+    void rejectsLinesBeyondLimitButAllowsExistingProducts() {
+        CartState state = new CartState(1, null, List.of(line(1, 1, "1.00")));
+
+        assertThrows(IllegalStateException.class, () -> state.add(line(2, 1, "1.00"), 1));
+        state.add(line(1, 2, "1.00"), 1);
+
+        assertEquals(3, state.snapshot().lines().get(0).quantity());
+    }
+
+    @Test
+    void atomicallyRollsBackAllChangesOnFailure() {
+        CartState state = new CartState(1, null, List.of(line(1, 1, "10.00")));
+        CartState.Snapshot before = state.snapshot();
+
+        assertThrows(EntityNotFoundException.class, () -> state.atomically(cart -> {
+            cart.add(line(2, 3, "2.00"), 10);
+            cart.setQuantity(1, 5);
+            cart.remove(42);
+        }));
+
+        CartState.Snapshot after = state.snapshot();
+        assertEquals(before.lines(), after.lines());
+        assertEquals(before.totalMinor(), after.totalMinor());
+        assertEquals(before.version(), after.version());
+        assertFalse(state.isDirty());
+    }
+
+    @Test
+    void tracksPersistedVersion() {
+        CartState state = new CartState(7, null, List.of());
+        assertFalse(state.isDirty());
+
+        state.add(line(1, 1, "1.00"), 10);
+        CartState.Snapshot first = state.snapshot();
+        state.add(line(2, 1, "1.00"), 10);
+        assertTrue(state.isDirty());
+
+        // Snapshot cũ đã ghi nhưng còn thay đổi sau đó -> vẫn dirty
+        assertFalse(state.markPersisted(first, 100));
+        assertTrue(state.isDirty());
+        assertEquals(100, state.snapshot().cartId());
+
+        assertTrue(state.markPersisted(state.snapshot(), 100));
+        assertFalse(state.isDirty());
+
+        // Flush chậm của snapshot cũ không kéo lùi version đã ghi
+        state.markPersisted(first, 100);
+        assertFalse(state.isDirty());
+    }
+
+    @Test
+    void countsFailedFlushesUntilPersisted() {
+        CartState state = new CartState(7, null, List.of());
+        state.add(line(1, 1, "1.00"), 10);
+
+        assertEquals(1, state.markFlushFailed());
+        assertEquals(2, state.markFlushFailed());
+        state.markPersisted(state.snapshot(), 1);
+        assertEquals(1, state.markFlushFailed());
+    }
+
+    @Test
+    void removeAllIgnoresMissingLines() {
+        CartState state = new CartState(1, null, List.of(line(1, 1, "1.00"), line(2, 2, "2.00")));
+
+        state.removeAll(List.of(2, 3));
+
+        assertEquals(List.of(1), productIds(state));
+        assertEquals(100, state.snapshot().totalMinor());
+    }
+
+    private static CartLine line(int productId, int quantity, String price) {
+        return CartLine.of(productId, "p" + productId, quantity, new BigDecimal(price));
+    }
+
+    private static List<Integer> productIds(CartState state) {
+        return state.snapshot().lines().stream().map(CartLine::productId).toList();
+    }
+}
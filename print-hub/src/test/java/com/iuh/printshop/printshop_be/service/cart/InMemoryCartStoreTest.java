@@ -0,0 +1,74 @@
+package com.iuh.printshop.printshop_be.service.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InMemoryCartStoreTest {
+
+    @Test
+    void removesOnlyUnflushableLinesAfterRepeatedFailures() {
+        CartPersistence persistence = mock(CartPersistence.class);
+        when(persistence.load(1)).thenReturn(new CartState(1, null, List.of()));
+        when(persistence.save(any())).thenAnswer(invocation -> {
+            CartState.Snapshot snapshot = invocation.getArgument(0);
+            if (snapshot.lines().stream().anyMatch(line -> line.productId() == 2)) {
+                throw new IllegalStateException("FK violation: product 2");
+            }
+            return 10;
+        });
+        when(persistence.userExists(1)).thenReturn(true);
+        when(persistence.findMissingProductIds(any())).thenReturn(Set.of(2));
+        InMemoryCartStore store = new InMemoryCartStore(persistence, 100, 3600);
+
+        store.update(1, state -> {
+            state.add(line(1), 10);
+            state.add(line(2), 10);
+        });
+        for (int i = 0; i < 5; i++) {
+            store.flushAll();
+        }
+        CartState state = store.get(1);
+        assertEquals(List.of(1), state.snapshot().lines().stream().map(CartLine::productId).toList());
+
+        store.flushAll();
+        verify(persistence, times(6)).save(any());
+        assertFalse(state.isDirty());
+        assertEquals(10, state.snapshot().cartId());
+    }
+
+    @Test
+    void keepsCartWhenFailureIsNotCausedByItsLines() {
+        CartPersistence persistence = mock(CartPersistence.class);
+        when(persistence.load(1)).thenReturn(new CartState(1, null, List.of()));
+        when(persistence.save(any())).thenThrow(new IllegalStateException("connection refused"));
+        when(persistence.userExists(1)).thenReturn(true);
+        when(persistence.findMissingProductIds(any())).thenReturn(Set.of());
+        InMemoryCartStore store = new InMemoryCartStore(persistence, 100, 3600);
+
+        CartState updated = store.update(1, state -> state.add(line(1), 10));
+        for (int i = 0; i < 10; i++) {
+            store.flushAll();
+        }
+
+        assertSame(updated, store.get(1));
+        assertEquals(1, updated.snapshot().lines().size());
+        assertTrue(updated.isDirty());
+    }
+
+    private static CartLine line(int productId) {
+        return CartLine.of(productId, "p" + productId, 1, BigDecimal.TEN);
+    }
+}
@@ -0,0 +1,165 @@
+package com.iuh.printshop.printshop_be.service.impl;
+
+import com.iuh.printshop.printshop_be.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TimeSequenceOrderCodeGeneratorTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-18T09:30:15Z");
+
+    @Test
+    void codesHaveFixedFormatAndSortByTime() {
+        MutableClock clock = new MutableClock(NOW);
+        TimeSequenceOrderCodeGenerator generator = new TimeSequenceOrderCodeGenerator(clock, 3);
+
+        String first = generator.nextCode();
+        String second = generator.nextCode();
+        clock.advance(1);
+        String third = generator.nextCode();
+
+        assertTrue(first.matches("PS-261018-[0-9A-HJKMNP-TV-Z]{8}"), first);
+        assertEquals(18, first.length());
+        assertTrue(first.compareTo(second) < 0);
+        assertTrue(second.compareTo(third) < 0);
+        assertEquals(NOW.getEpochSecond(), TimeSequenceOrderCodeGenerator.decodeSecond(first));
+        assertEquals(NOW.getEpochSecond() + 1, TimeSequenceOrderCodeGenerator.decodeSecond(third));
+    }
+
+    @Test
+    void borrowsNextSecondWhenSequenceIsExhausted() {
+        TimeSequenceOrderCodeGenerator generator = new TimeSequenceOrderCodeGenerator(new MutableClock(NOW), 0);
+
+        Set<String> codes = new HashSet<>();
+        String last = null;
+        for (int i = 0; i < 40_000; i++) {
+            last = generator.nextCode();
+            assertTrue(codes.add(last), "duplicate " + last);
+        }
+        assertEquals(NOW.getEpochSecond() + 1, TimeSequenceOrderCodeGenerator.decodeSecond(last));
+    }
+
+    @Test
+    void clockGoingBackwardsDoesNotRepeatCodes() {
+        MutableClock clock = new MutableClock(NOW);
+        TimeSequenceOrderCodeGenerator generator = new TimeSequenceOrderCodeGenerator(clock, 1);
+
+        String before = generator.nextCode();
+        clock.advance(-5);
+        String after = generator.nextCode();
+
+        assertTrue(before.compareTo(after) < 0);
+    }
+
+    @Test
+    void differentNodesNeverCollideInTheSameSecond() {
+        TimeSequenceOrderCodeGenerator a = new TimeSequenceOrderCodeGenerator(new MutableClock(NOW), 1);
+        TimeSequenceOrderCodeGenerator b = new TimeSequenceOrderCodeGenerator(new MutableClock(NOW), 2);
+
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(codes.add(a.nextCode()));
+            assertTrue(codes.add(b.nextCode()));
+        }
+    }
+
+    @Test
+    void restartInTheSameSecondContinuesAfterLastPersistedCode() {
+        MutableClock clock = new MutableClock(NOW);
+        TimeSequenceOrderCodeGenerator before = new TimeSequenceOrderCodeGenerator(clock, 7);
+        List<String> issued = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            issued.add(before.nextCode());
+        }
+
+        // Khởi động lại cùng node id, cùng giây (hoặc đồng hồ lùi): tiếp tục sau mã lớn nhất đã lưu
+        clock.advance(-2);
+        TimeSequenceOrderCodeGenerator restarted = new TimeSequenceOrderCodeGenerator(clock, 7);
+        restarted.seed(issued.get(issued.size() - 1));
+        String next = restarted.nextCode();
+
+        assertTrue(issued.stream().noneMatch(next::equals));
+        assertTrue(next.compareTo(issued.get(issued.size() - 1)) > 0);
+        assertEquals(NOW.getEpochSecond() + 1, TimeSequenceOrderCodeGenerator.decodeSecond(next));
+    }
+
+    @Test
+    void seedFromOlderCodeKeepsCurrentTime() {
+        MutableClock clock = new MutableClock(NOW);
+        TimeSequenceOrderCodeGenerator generator = new TimeSequenceOrderCodeGenerator(clock, 7);
+        String old = new TimeSequenceOrderCodeGenerator(new MutableClock(NOW.minusSeconds(3600)), 7).nextCode();
+
+        generator.seed(old);
+        generator.seed("ORD-12345");
+
+        assertEquals(NOW.getEpochSecond(), TimeSequenceOrderCodeGenerator.decodeSecond(generator.nextCode()));
+    }
+
+    @Test
+    void decodeRejectsForeignCodes() {
+        assertEquals(-1, TimeSequenceOrderCodeGenerator.decodeSecond(null));
+        assertEquals(-1, TimeSequenceOrderCodeGenerator.decodeSecond("ORD-1"));
+        assertEquals(-1, TimeSequenceOrderCodeGenerator.decodeSecond("PS-261018-0000000I"));
+        assertEquals(-1, TimeSequenceOrderCodeGenerator.decodeSecond("PS-261399-00000000"));
+        assertNotEquals(-1, TimeSequenceOrderCodeGenerator.decodeSecond("PS-261018-00000000"));
+    }
+
+    @Test
+    void rejectsOutOfRangeNodeIds() {
+        assertThrows(IllegalArgumentException.class, () -> new TimeSequenceOrderCodeGenerator(new MutableClock(NOW), 256));
+        assertThrows(IllegalArgumentException.class, () -> new TimeSequenceOrderCodeGenerator(new MutableClock(NOW), -1));
+    }
+
+    @Test
+    void multiInstanceModeRequiresExplicitNodeId() {
+        OrderRepository orderRepository = mock(OrderRepository.class);
+        when(orderRepository.findLatestCode()).thenReturn(Optional.empty());
+
+        assertThrows(IllegalStateException.class, () -> new TimeSequenceOrderCodeGenerator(orderRepository, -1, true));
+        new TimeSequenceOrderCodeGenerator(orderRepository, 12, true).nextCode();
+        new TimeSequenceOrderCodeGenerator(orderRepository, -1, false).nextCode();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(long seconds) {
+            instant = instant.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.iuh.printshop.printshop_be.service.promotion;
+
+import com.iuh.printshop.printshop_be.entity.Promotion;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+class PromotionEngineTest {
+
+    @Test
+    void stacksOnePromotionPerGroup() {
+        List<CartLine> lines = List.of(new CartLine(1, 10, 1, 100_00));
+        List<CompiledPromotion> candidates = List.of(
+                percentage(1, 10, "a", false),
+                percentage(2, 20, "a", false),
+                percentage(3, 5, "b", false));
+
+        PromotionEngine.Evaluation evaluation = PromotionEngine.evaluate(lines, candidates);
+
+        // Nhóm "a" chỉ lấy 20%, cộng dồn với 5% của nhóm "b"
+        assertEquals(25_00, evaluation.discount());
+        assertEquals(Set.of(2, 3), appliedIds(evaluation));
+    }
+
+    @Test
+    void exclusiveWinsOnlyWhenLarger() {
+        List<CartLine> lines = List.of(new CartLine(1, 10, 2, 50_00));
+        List<CompiledPromotion> stacked = List.of(
+                percentage(1, 10, "a", false),
+                percentage(2, 10, "b", false),
+                percentage(3, 15, "x", true));
+        assertEquals(Set.of(1, 2), appliedIds(PromotionEngine.evaluate(lines, stacked)));
+
+        List<CompiledPromotion> exclusive = List.of(
+                percentage(1, 10, "a", false),
+                percentage(2, 10, "b", false),
+                percentage(3, 30, "x", true));
+        PromotionEngine.Evaluation evaluation = PromotionEngine.evaluate(lines, exclusive);
+        assertEquals(Set.of(3), appliedIds(evaluation));
+        assertEquals(30_00, evaluation.discount());
+    }
+
+    @Test
+    void lineDiscountNeverExceedsLineAmount() {
+        List<CartLine> lines = List.of(new CartLine(1, 10, 1, 30_00), new CartLine(2, 20, 1, 70_00));
+        List<CompiledPromotion> candidates = List.of(
+                fixed(1, 80_00, "a", new int[]{1}, new int[0]),
+                fixed(2, 80_00, "b", new int[0], new int[0]));
+
+        PromotionEngine.Evaluation evaluation = PromotionEngine.evaluate(lines, candidates);
+
+        // "b" chia 80 theo tỉ lệ 24/56; "a" chỉ còn 6 trên dòng 1 trước khi chạm giá trị dòng
+        assertEquals(86_00, evaluation.discount());
+        assertEquals(30_00, evaluation.lineDiscounts()[0]);
+        assertEquals(56_00, evaluation.lineDiscounts()[1]);
+    }
+
+    @Test
+    void largeCartAgainstManyPromotionsKeepsInvariants() {
+        List<CartLine> lines = largeCart();
+        PromotionEngine.Evaluation evaluation = PromotionEngine.evaluate(lines, manyPromotions());
+
+        assertTrue(evaluation.discount() <= evaluation.subtotal());
+        Set<String> groups = new HashSet<>();
+        for (PromotionEngine.AppliedPromotion applied : evaluation.applied()) {
+            assertTrue(groups.add(applied.promotion().stackGroup()), "one promotion per stack group");
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            assertTrue(evaluation.lineDiscounts()[i] <= lines.get(i).amount());
+        }
+    }
+
+    /**
+     * Đo thời gian đánh giá giỏ 100+ dòng với 500 khuyến mãi ứng viên (không cần DB). Chạy bằng mvn test -Pbenchmark.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkLargeCartAgainstManyPromotions() {
+        List<CartLine> lines = largeCart();
+        List<CompiledPromotion> candidates = manyPromotions();
+
+        // Khởi động JIT trước khi đo
+        for (int i = 0; i < 20; i++) {
+            PromotionEngine.evaluate(lines, candidates);
+        }
+        int runs = 200;
+        long startedAt = System.nanoTime();
+        PromotionEngine.Evaluation evaluation = null;
+        for (int i = 0; i < runs; i++) {
+            evaluation = PromotionEngine.evaluate(lines, candidates);
+        }
+        double micros = (System.nanoTime() - startedAt) / 1_000.0 / runs;
+        log.info("PromotionEngine: {} lines x {} promotions -> {} us/evaluation, {} applied",
+                lines.size(), candidates.size(), String.format("%.1f", micros), evaluation.applied().size());
+    }
+
+    private static List<CartLine> largeCart() {
+        Random random = new Random(42);
+        List<CartLine> lines = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            lines.add(new CartLine(i + 1, 1 + random.nextInt(20), 1 + random.nextInt(5),
+                    (10 + random.nextInt(990)) * 100L));
+        }
+        return lines;
+    }
+
+    private static List<CompiledPromotion> manyPromotions() {
+        Random random = new Random(7);
+        List<CompiledPromotion> candidates = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int[] products = random.nextInt(3) == 0 ? sortedIds(random, 1 + random.nextInt(10), 120) : new int[0];
+            int[] categories = products.length == 0 ? sortedIds(random, 1 + random.nextInt(3), 20) : new int[0];
+            String group = "g" + random.nextInt(25);
+            boolean exclusive = random.nextInt(50) == 0;
+            candidates.add(random.nextBoolean()
+                    ? new CompiledPromotion(i + 1, "p" + i, null, Promotion.DiscountType.PERCENTAGE,
+                    (1 + random.nextInt(15)) * 100L, CompiledPromotion.NONE, 500_00,
+                    0, Long.MAX_VALUE, exclusive, group, products, categories)
+                    : fixed(i + 1, (1 + random.nextInt(50)) * 100L, group, products, categories));
+        }
+        return candidates;
+    }
+
+    private static CompiledPromotion percentage(int id, int percent, String group, boolean exclusive) {
+        return new CompiledPromotion(id, "p" + id, null, Promotion.DiscountType.PERCENTAGE, percent * 100L,
+                CompiledPromotion.NONE, CompiledPromotion.NONE, 0, Long.MAX_VALUE, exclusive, group,
+                new int[0], new int[0]);
+    }
+
+    private static CompiledPromotion fixed(int id, long amount, String group, int[] productIds, int[] categoryIds) {
+        return new CompiledPromotion(id, "p" + id, null, Promotion.DiscountType.FIXED_AMOUNT, amount,
+                CompiledPromotion.NONE, CompiledPromotion.NONE, 0, Long.MAX_VALUE, false, group,
+                productIds, categoryIds);
+    }
+
+    private static int[] sortedIds(Random random, int count, int bound) {
+        return random.ints(count, 1, bound + 1).distinct().sorted().toArray();
+    }
+
+    private static Set<Integer> appliedIds(PromotionEngine.Evaluation evaluation) {
+        Set<Integer> ids = new HashSet<>();
+        evaluation.applied().forEach(applied -> ids.add(applied.promotion().id()));
+        return ids;
+    }
+}